@@ -1,12 +1,10 @@
 package com.bethena.ffbuilderdemo;
 
 import android.Manifest;
-import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -26,18 +24,37 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.arthenica.ffmpegkit.FFmpegKit;
+import com.arthenica.ffmpegkit.FFmpegKitConfig;
 import com.arthenica.ffmpegkit.FFmpegSession;
+import com.arthenica.ffmpegkit.ReturnCode;
+import com.bethena.ffmpegcmdbuilder.EncodingProfile;
 import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+import com.bethena.ffmpegcmdbuilder.InputSource;
+import com.bethena.ffmpegcmdbuilder.StreamCopyDecision;
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.MetricsRegistry;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.progress.ProgressDispatcher;
+import com.bethena.ffmpegcmdbuilder.progress.ProgressEvent;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int PERMISSION_REQUEST_CODE = 1001;
+    /**
+     * 进程内所有转码任务的耗时统计
+     */
+    private static final MetricsRegistry METRICS = new MetricsRegistry();
+    /**
+     * 探测视频信息的后台线程，FFprobe 和媒体库查询都不能放在主线程
+     */
+    private final ExecutorService prober = Executors.newSingleThreadExecutor();
     private TextView tvResult;
     private Button btnPickVideo;
     private Button btnConvert;
@@ -75,6 +92,11 @@ public class MainActivity extends AppCompatActivity {
         btnPickVideo.setOnClickListener(v -> checkPermissionAndPickVideo());
         btnConvert.setOnClickListener(v -> convertVideo());
         btnConvert.setEnabled(false);
+        // 长按结果区域查看本进程内的转码耗时统计，只在需要时才序列化
+        tvResult.setOnLongClickListener(v -> {
+            tvResult.setText(METRICS.toJson());
+            return true;
+        });
     }
 
     private void checkPermissionAndPickVideo() {
@@ -122,42 +144,61 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // 将视频文件复制到缓存目录
-        File cacheDir = getCacheDir();
-        String fileName = "input_" + System.currentTimeMillis() + ".mp4";
-        File cacheFile = new File(cacheDir, fileName);
-        try {
-            ContentResolver contentResolver = getContentResolver();
-            Uri videoUri = Uri.parse(selectedVideoPath);
-            InputStream inputStream = contentResolver.openInputStream(videoUri);
-            FileOutputStream fos = new FileOutputStream(cacheFile);
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buffer)) > 0) {
-                fos.write(buffer, 0, length);
+        Uri videoUri = Uri.parse(selectedVideoPath);
+        btnConvert.setEnabled(false);
+        // 在后台线程探测源文件的编码格式、分辨率和码率，同一视频再次转码时直接读缓存
+        prober.execute(() -> {
+            long probeStarted = System.nanoTime();
+            try {
+                MediaInfo mediaInfo = MediaInfoStore.get(this, videoUri);
+                long probeNanos = System.nanoTime() - probeStarted;
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        btnConvert.setEnabled(true);
+                        startConversion(videoUri, mediaInfo, probeNanos);
+                    }
+                });
+            } catch (IOException e) {
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        btnConvert.setEnabled(true);
+                        Toast.makeText(this, "读取视频信息失败：" + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
+                });
             }
-            inputStream.close();
-            fos.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "复制文件失败：" + e.getMessage(), Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    private void startConversion(Uri videoUri, MediaInfo mediaInfo, long probeNanos) {
+        // FFmpeg 通过 SAF 文件描述符直接读取原视频，不再复制到缓存目录
+        String outputPath = new File(getCacheDir(), "output_" + System.currentTimeMillis() + ".mp4").getAbsolutePath();
+
+        String safInput = FFmpegKitConfig.getSafParameterForRead(this, videoUri);
+        if (safInput == null) {
+            Toast.makeText(this, "无法打开视频文件", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        String outputPath = new File(cacheDir, "output_" + System.currentTimeMillis() + ".mp4").getAbsolutePath();
-
         // 使用构建者模式创建FFmpeg命令
-        String command = FFmpegCommandBuilder.create()
-                .input(cacheFile.getAbsolutePath())
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input(InputSource.url(safInput))
                 .videoCodec("h264")  // 使用基础的 h264 编码器
                 .audioCodec("aac")
                 .videoBitRate("1M")
                 .audioBitRate("128k")
                 .resolution(640, 360)
                 .frameRate(30)
-                .output(outputPath)
-                .build();
-        Log.d("FFmpeg", command);
+                .profile(EncodingProfile.MAX_THROUGHPUT, 1) // 只有一个转码任务，占满所有核心
+                .output(outputPath);
+        // 已满足目标的流直接复制，不再重新编码
+        StreamCopyDecision decision = StreamCopyDecision.decide(builder, mediaInfo);
+        decision.applyTo(builder);
+        Log.d("FFmpeg", decision.toString());
+        String[] args = builder.buildArgs();
+        Log.d("FFmpeg", builder.build());
+        JobMetrics metrics = JobMetrics.of(builder);
+        metrics.recordProbe(probeNanos);
+        metrics.recordSource(mediaInfo);
         // 创建并显示进度对话框
         progressDialog = new ProgressDialog(this);
         progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
@@ -166,29 +207,39 @@ public class MainActivity extends AppCompatActivity {
         progressDialog.setCancelable(false);
         progressDialog.show();
 
-        // 获取视频时长
-        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-        retriever.setDataSource(cacheFile.getAbsolutePath());
-        String durationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-        long totalDuration = Long.parseLong(durationStr);
-        try {
-            retriever.release();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        // 视频时长（毫秒）
+        long totalDuration = (long) (mediaInfo.getDuration() * 1000);
 
-        // 执行FFmpeg命令
-        FFmpegKit.executeAsync(command, session -> {
+        // 统计回调非常频繁，按固定频率刷新进度条，避免每次都切到主线程
+        ProgressEvent progressEvent = new ProgressEvent();
+        ProgressDispatcher progressDispatcher = new ProgressDispatcher(200, TimeUnit.MILLISECONDS)
+                .addListener(event -> {
+                    int progress = event.percent(totalDuration * 1000);
+                    if (progress < 0) {
+                        return;
+                    }
+                    runOnUiThread(() -> {
+                        if (progressDialog != null && progressDialog.isShowing()) {
+                            progressDialog.setProgress(progress);
+                        }
+                    });
+                });
+
+        // 执行FFmpeg命令，直接传参数数组，避免路径中的空格被拆开
+        FFmpegKit.executeWithArgumentsAsync(args, session -> {
             // 关闭进度对话框
             runOnUiThread(() -> {
                 if (progressDialog != null && progressDialog.isShowing()) {
                     progressDialog.dismiss();
                 }
             });
-            // 删除缓存文件
-            cacheFile.delete();
-            // 命令执行完成的回调
-            if (session.getReturnCode().isValueSuccess()) {
+            // 命令执行完成的回调，FFmpegKit 的取消返回码与 ExecutionResult 一致；
+            // 会话异常结束（如启动失败）时没有返回码，按失败处理
+            ReturnCode returnCode = session.getReturnCode();
+            metrics.recordEncode(TimeUnit.MILLISECONDS.toNanos(session.getDuration()));
+            metrics.complete(new ExecutionResult(returnCode != null ? returnCode.getValue() : -1, null));
+            METRICS.onJobCompleted(metrics);
+            if (returnCode != null && returnCode.isValueSuccess()) {
                 runOnUiThread(() -> {
                     tvResult.setText("视频转换成功！输出文件：" + outputPath);
                     // 启动视频预览页面
@@ -204,22 +255,18 @@ public class MainActivity extends AppCompatActivity {
             // 命令执行过程中的日志回调
             Log.d("FFmpeg", log.getMessage());
         }, statistics -> {
-            Log.d("FFmpeg", statistics.toString());
             // 更新进度
-            if (statistics.getTime() > 0 && totalDuration > 0) {
-                double progress = (statistics.getTime() * 100.0f) / totalDuration;
-                runOnUiThread(() -> {
-                    if (progressDialog != null && progressDialog.isShowing()) {
-                        progressDialog.setProgress((int) progress);
-                    }
-                });
-            }
+            progressEvent.update((long) (statistics.getTime() * 1000), statistics.getSpeed(),
+                    statistics.getVideoFps(), statistics.getBitrate(), statistics.getSize());
+            progressDispatcher.onProgress(progressEvent);
+            metrics.recordProgress((long) (statistics.getTime() * 1000), statistics.getSpeed());
         });
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        prober.shutdownNow();
         if (progressDialog != null && progressDialog.isShowing()) {
             progressDialog.dismiss();
         }
@@ -0,0 +1,96 @@
+package com.bethena.ffbuilderdemo;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import com.arthenica.ffmpegkit.FFmpegKitConfig;
+import com.arthenica.ffmpegkit.FFprobeKit;
+import com.arthenica.ffmpegkit.FFprobeSession;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfoCache;
+import com.bethena.ffmpegcmdbuilder.probe.MediaProbe;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 应用内共享的媒体信息缓存，转码页和预览页读取同一份探测结果
+ */
+final class MediaInfoStore {
+
+    private static final int MEMORY_ENTRIES = 32;
+
+    private static MediaInfoCache cache;
+
+    private MediaInfoStore() {
+    }
+
+    private static synchronized MediaInfoCache cache(Context context) throws IOException {
+        if (cache == null) {
+            cache = new MediaInfoCache(new File(context.getApplicationContext().getFilesDir(), "media_info.idx"),
+                    MEMORY_ENTRIES);
+        }
+        return cache;
+    }
+
+    /**
+     * 获取本地文件的媒体信息
+     *
+     * @param context 上下文
+     * @param file    本地文件
+     * @return 媒体信息
+     * @throws IOException 探测失败时
+     */
+    static MediaInfo get(Context context, File file) throws IOException {
+        return cache(context).get(file, () -> probe(file.getAbsolutePath()));
+    }
+
+    /**
+     * 获取媒体库中视频的媒体信息，以 Uri 和媒体库记录的大小、修改时间为键，
+     * 未命中时通过 SAF 文件描述符直接探测原文件
+     *
+     * @param context 上下文
+     * @param uri     媒体库 Uri
+     * @return 媒体信息
+     * @throws IOException 探测失败时
+     */
+    static MediaInfo get(Context context, Uri uri) throws IOException {
+        long size = -1;
+        long lastModified = -1;
+        try (Cursor cursor = context.getContentResolver().query(uri,
+                new String[]{MediaStore.MediaColumns.SIZE, MediaStore.MediaColumns.DATE_MODIFIED},
+                null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                size = cursor.getLong(0);
+                lastModified = cursor.getLong(1);
+            }
+        }
+        if (size < 0) {
+            // 拿不到指纹时不缓存，避免文件被替换后读到旧信息
+            return probe(safPath(context, uri));
+        }
+        return cache(context).get(uri.toString(), size, lastModified, () -> probe(safPath(context, uri)));
+    }
+
+    /**
+     * SAF 参数对应的文件描述符在 FFmpeg 关闭后失效，每次执行都要重新获取
+     */
+    private static String safPath(Context context, Uri uri) throws IOException {
+        String path = FFmpegKitConfig.getSafParameterForRead(context, uri);
+        if (path == null) {
+            throw new IOException("无法打开视频: " + uri);
+        }
+        return path;
+    }
+
+    private static MediaInfo probe(String path) throws IOException {
+        FFprobeSession session = FFprobeKit.executeWithArguments(MediaProbe.args(path));
+        try {
+            return MediaProbe.parse(session.getOutput());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("无法读取视频信息: " + path, e);
+        }
+    }
+}
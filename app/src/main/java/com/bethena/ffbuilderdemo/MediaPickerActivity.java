@@ -1,11 +1,17 @@
 package com.bethena.ffbuilderdemo;
 
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.Intent;
+import android.database.ContentObserver;
 import android.database.Cursor;
-import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,17 +20,44 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MediaPickerActivity extends AppCompatActivity {
 
+    /**
+     * 第一页只需铺满一屏，尽快显示；之后每页逐渐变大，减少查询次数
+     */
+    private static final int FIRST_PAGE_SIZE = 30;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final String[] PROJECTION = {
+            MediaStore.Video.Media._ID,
+            MediaStore.Video.Media.DISPLAY_NAME,
+            MediaStore.Video.Media.DATE_MODIFIED
+    };
+    private static final String SORT_ORDER =
+            MediaStore.Video.Media.DATE_ADDED + " DESC, " + MediaStore.Video.Media._ID + " DESC";
+
     private RecyclerView recyclerView;
     private MediaAdapter adapter;
-    private List<MediaItem> mediaItems;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * 每次重新加载加一，旧的加载任务发现不一致后停止
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+    private ContentObserver observer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,8 +67,7 @@ public class MediaPickerActivity extends AppCompatActivity {
         recyclerView = findViewById(R.id.recycler_view);
         recyclerView.setLayoutManager(new GridLayoutManager(this, 3));
 
-        mediaItems = new ArrayList<>();
-        adapter = new MediaAdapter(mediaItems, item -> {
+        adapter = new MediaAdapter(item -> {
             Intent data = new Intent();
             data.setData(item.uri);
             setResult(RESULT_OK, data);
@@ -43,51 +75,132 @@ public class MediaPickerActivity extends AppCompatActivity {
         });
         recyclerView.setAdapter(adapter);
 
-        loadVideos();
+        // 媒体库变化时重新加载，列表按差异更新
+        observer = new ContentObserver(mainHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                loadVideos(false);
+            }
+        };
+        getContentResolver().registerContentObserver(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, true, observer);
+
+        loadVideos(true);
     }
 
-    private void loadVideos() {
-        String[] projection = {
-                MediaStore.Video.Media._ID,
-                MediaStore.Video.Media.DISPLAY_NAME,
-                MediaStore.Video.Media.DATA
-        };
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        getContentResolver().unregisterContentObserver(observer);
+        mainHandler.removeCallbacksAndMessages(null);
+        generation.incrementAndGet();
+        loader.shutdownNow();
+        ThumbnailLoader.get(this).cancelAll();
+    }
+
+    /**
+     * 在后台线程分页查询媒体库
+     *
+     * @param progressive 是否每查到一页就显示；重新加载时为 false，查完后一次提交，避免列表先变短再变长
+     */
+    private void loadVideos(boolean progressive) {
+        // 注销观察者之前已经投递到主线程的 onChange 仍可能在 onDestroy 之后执行
+        if (isDestroyed() || loader.isShutdown()) {
+            return;
+        }
+        int current = generation.incrementAndGet();
+        ContentResolver resolver = getContentResolver();
+        loader.execute(() -> {
+            List<MediaItem> items = new ArrayList<>();
+            Set<Long> seen = new HashSet<>();
+            int offset = 0;
+            int pageSize = FIRST_PAGE_SIZE;
+            while (generation.get() == current) {
+                int count = queryPage(resolver, offset, pageSize, items, seen);
+                offset += count;
+                if (count < pageSize) {
+                    break;
+                }
+                if (progressive) {
+                    publish(current, new ArrayList<>(items));
+                }
+                pageSize = Math.min(pageSize * 2, MAX_PAGE_SIZE);
+            }
+            publish(current, items);
+        });
+    }
 
-        try (Cursor cursor = getContentResolver().query(
-                MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                projection,
-                null,
-                null,
-                MediaStore.Video.Media.DATE_ADDED + " DESC")) {
-
-            if (cursor != null) {
-                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
-                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
-                int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATA);
-
-                while (cursor.moveToNext()) {
-                    long id = cursor.getLong(idColumn);
-                    String name = cursor.getString(nameColumn);
-                    String path = cursor.getString(dataColumn);
-
-                    MediaItem item = new MediaItem(
-                            ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id),
-                            name,
-                            path
-                    );
-                    mediaItems.add(item);
+    private void publish(int current, List<MediaItem> items) {
+        mainHandler.post(() -> {
+            if (generation.get() == current) {
+                adapter.submitList(items);
+            }
+        });
+    }
+
+    /**
+     * 查询一页，只取列表需要的列；Android 11 起媒体库只接受 Bundle 形式的分页参数，之前的版本使用 limit 查询参数
+     *
+     * @return 本页读到的行数
+     */
+    private static int queryPage(ContentResolver resolver, int offset, int limit,
+                                 List<MediaItem> items, Set<Long> seen) {
+        Cursor cursor;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, SORT_ORDER);
+            args.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            args.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+            cursor = resolver.query(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, PROJECTION, args, null);
+        } else {
+            Uri uri = MediaStore.Video.Media.EXTERNAL_CONTENT_URI.buildUpon()
+                    .appendQueryParameter("limit", offset + "," + limit)
+                    .build();
+            cursor = resolver.query(uri, PROJECTION, null, null, SORT_ORDER);
+        }
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
+            int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
+            int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_MODIFIED);
+            int count = 0;
+            while (cursor.moveToNext()) {
+                count++;
+                long id = cursor.getLong(idColumn);
+                // 分页期间有新视频插入时，偏移量会错开，跳过重复的行
+                if (!seen.add(id)) {
+                    continue;
                 }
-                adapter.notifyDataSetChanged();
+                items.add(new MediaItem(
+                        ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id),
+                        cursor.getString(nameColumn),
+                        cursor.getLong(modifiedColumn)));
             }
+            return count;
+        } finally {
+            cursor.close();
         }
     }
 
-    private static class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder> {
-        private final List<MediaItem> items;
+    private static class MediaAdapter extends ListAdapter<MediaItem, MediaAdapter.ViewHolder> {
+        private static final DiffUtil.ItemCallback<MediaItem> DIFF = new DiffUtil.ItemCallback<MediaItem>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull MediaItem oldItem, @NonNull MediaItem newItem) {
+                return oldItem.uri.equals(newItem.uri);
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull MediaItem oldItem, @NonNull MediaItem newItem) {
+                return oldItem.dateModified == newItem.dateModified
+                        && TextUtils.equals(oldItem.name, newItem.name);
+            }
+        };
+
         private final OnItemClickListener listener;
 
-        MediaAdapter(List<MediaItem> items, OnItemClickListener listener) {
-            this.items = items;
+        MediaAdapter(OnItemClickListener listener) {
+            super(DIFF);
             this.listener = listener;
         }
 
@@ -101,33 +214,19 @@ public class MediaPickerActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            MediaItem item = items.get(position);
+            MediaItem item = getItem(position);
             holder.textView.setText(item.name);
-            
-            // 加载视频缩略图
-            Bitmap thumbnail = null;
-            try {
-                thumbnail = MediaStore.Video.Thumbnails.getThumbnail(
-                        holder.itemView.getContext().getContentResolver(),
-                        ContentUris.parseId(item.uri),
-                        MediaStore.Video.Thumbnails.MINI_KIND,
-                        null);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            
-            if (thumbnail != null) {
-                holder.imageView.setImageBitmap(thumbnail);
-            } else {
-                holder.imageView.setImageResource(R.drawable.ic_video_placeholder);
-            }
-            
+
+            // 异步加载视频缩略图，命中内存缓存时直接显示
+            ThumbnailLoader.get(holder.itemView.getContext())
+                    .load(holder.imageView, item.uri, item.dateModified, R.drawable.ic_video_placeholder);
+
             holder.itemView.setOnClickListener(v -> listener.onItemClick(item));
         }
 
         @Override
-        public int getItemCount() {
-            return items.size();
+        public void onViewRecycled(@NonNull ViewHolder holder) {
+            ThumbnailLoader.get(holder.itemView.getContext()).cancel(holder.imageView);
         }
 
         static class ViewHolder extends RecyclerView.ViewHolder {
@@ -147,14 +246,14 @@ public class MediaPickerActivity extends AppCompatActivity {
     }
 
     static class MediaItem {
-        final android.net.Uri uri;
+        final Uri uri;
         final String name;
-        final String path;
+        final long dateModified;
 
-        MediaItem(android.net.Uri uri, String name, String path) {
+        MediaItem(Uri uri, String name, long dateModified) {
             this.uri = uri;
             this.name = name;
-            this.path = path;
+            this.dateModified = dateModified;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,339 @@
+package com.bethena.ffbuilderdemo;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.RequiresApi;
+
+import com.arthenica.ffmpegkit.FFmpegKit;
+import com.arthenica.ffmpegkit.FFmpegKitConfig;
+import com.arthenica.ffmpegkit.FFmpegSession;
+import com.arthenica.ffmpegkit.ReturnCode;
+import com.bethena.ffmpegcmdbuilder.InputSource;
+import com.bethena.ffmpegcmdbuilder.ThumbnailBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 视频缩略图的异步加载器，两级缓存：按位图字节数限制大小的内存 LRU，以及缓存目录下的 JPEG 文件
+ * 同一缩略图同时只解码一次，多个 ImageView 等待同一请求时共用结果；
+ * ImageView 被复用或取消后，没有视图再等待的请求会被取消
+ * 除解码外的所有状态只在主线程上读写
+ */
+final class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final int THUMBNAIL_SIZE = 320;
+    private static final long DISK_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int THREADS = 3;
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static ThumbnailLoader instance;
+
+    private final Context context;
+    private final File diskDir;
+    private final LruCache<String, Bitmap> memory;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * 视图当前等待的缓存键
+     */
+    private final Map<ImageView, String> targets = new WeakHashMap<>();
+    private final Map<String, Request> inFlight = new HashMap<>();
+
+    private ThumbnailLoader(Context context) {
+        this.context = context.getApplicationContext();
+        diskDir = new File(this.context.getCacheDir(), "thumbnails");
+        // 内存缓存占最大堆的 1/8
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        memory = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    static synchronized ThumbnailLoader get(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 把缩略图加载到视图中，需在主线程调用
+     *
+     * @param view         目标视图
+     * @param uri          媒体库中视频的 Uri
+     * @param dateModified 媒体库记录的修改时间，文件变化后缓存键随之变化
+     * @param placeholder  加载完成前显示的图片
+     */
+    void load(ImageView view, Uri uri, long dateModified, int placeholder) {
+        String key = uri + "@" + dateModified;
+        if (key.equals(targets.get(view))) {
+            return;
+        }
+        cancel(view);
+        Bitmap cached = memory.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageResource(placeholder);
+        targets.put(view, key);
+        Request request = inFlight.get(key);
+        if (request == null) {
+            request = new Request(key, uri);
+            inFlight.put(key, request);
+            request.future = executor.submit(request);
+        }
+        request.waiters++;
+    }
+
+    /**
+     * 视图不再需要缩略图（如 ViewHolder 被回收），需在主线程调用
+     *
+     * @param view 视图
+     */
+    void cancel(ImageView view) {
+        String key = targets.remove(view);
+        if (key == null) {
+            return;
+        }
+        Request request = inFlight.get(key);
+        if (request != null && --request.waiters == 0) {
+            inFlight.remove(key);
+            request.cancel();
+        }
+    }
+
+    /**
+     * 取消所有请求，页面销毁时调用，需在主线程调用
+     */
+    void cancelAll() {
+        targets.clear();
+        for (Request request : inFlight.values()) {
+            request.cancel();
+        }
+        inFlight.clear();
+    }
+
+    private void deliver(Request request, Bitmap bitmap) {
+        if (inFlight.get(request.key) != request) {
+            // 已被取消
+            return;
+        }
+        inFlight.remove(request.key);
+        if (bitmap != null) {
+            memory.put(request.key, bitmap);
+        }
+        Iterator<Map.Entry<ImageView, String>> it = targets.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ImageView, String> entry = it.next();
+            if (request.key.equals(entry.getValue())) {
+                if (bitmap != null) {
+                    entry.getKey().setImageBitmap(bitmap);
+                }
+                it.remove();
+            }
+        }
+    }
+
+    private final class Request implements Runnable {
+        final String key;
+        final Uri uri;
+        final CancellationSignal signal = new CancellationSignal();
+        int waiters;
+        Future<?> future;
+        private volatile FFmpegSession session;
+
+        Request(String key, Uri uri) {
+            this.key = key;
+            this.uri = uri;
+        }
+
+        void cancel() {
+            signal.cancel();
+            future.cancel(false);
+            FFmpegSession running = session;
+            if (running != null) {
+                FFmpegKit.cancel(running.getSessionId());
+            }
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode();
+            } catch (Exception e) {
+                if (!signal.isCanceled()) {
+                    Log.w(TAG, "加载缩略图失败: " + uri, e);
+                }
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> deliver(this, result));
+        }
+
+        private Bitmap decode() throws IOException {
+            File file = new File(diskDir, fileName(key));
+            if (file.isFile()) {
+                Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+                if (bitmap != null) {
+                    // 修改时间作为磁盘缓存的 LRU 依据
+                    file.setLastModified(System.currentTimeMillis());
+                    return bitmap;
+                }
+            }
+            if (signal.isCanceled()) {
+                return null;
+            }
+            if (!diskDir.isDirectory() && !diskDir.mkdirs()) {
+                throw new IOException("无法创建缓存目录: " + diskDir);
+            }
+            // 被取消的旧请求可能仍在写同一个键，临时文件不能共用
+            File tmp = File.createTempFile(file.getName(), TMP_SUFFIX, diskDir);
+            try {
+                Bitmap bitmap = null;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    bitmap = loadSystemThumbnail(tmp);
+                }
+                if (bitmap == null && !signal.isCanceled()) {
+                    extract(tmp);
+                    bitmap = tmp.length() > 0 ? BitmapFactory.decodeFile(tmp.getPath()) : null;
+                }
+                if (bitmap != null) {
+                    commit(tmp, file);
+                }
+                return bitmap;
+            } finally {
+                tmp.delete();
+            }
+        }
+
+        /**
+         * 系统缩略图有自己的缓存，通常比重新解码快；不可用时返回 null，改用 FFmpeg 截取
+         */
+        @RequiresApi(Build.VERSION_CODES.Q)
+        private Bitmap loadSystemThumbnail(File out) throws IOException {
+            Bitmap bitmap;
+            try {
+                bitmap = context.getContentResolver()
+                        .loadThumbnail(uri, new Size(THUMBNAIL_SIZE, THUMBNAIL_SIZE), signal);
+            } catch (IOException e) {
+                if (!signal.isCanceled()) {
+                    Log.w(TAG, "系统缩略图不可用，改用 FFmpeg: " + uri, e);
+                }
+                return null;
+            }
+            try (OutputStream fos = new FileOutputStream(out)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 85, fos);
+            }
+            return bitmap;
+        }
+
+        /**
+         * 只解码 1 秒处的关键帧，直接写成缓存文件
+         */
+        private void extract(File out) {
+            String input = FFmpegKitConfig.getSafParameterForRead(context, uri);
+            if (input == null || signal.isCanceled()) {
+                return;
+            }
+            String[] args = ThumbnailBuilder.create(InputSource.url(input))
+                    .at(1)
+                    .size(THUMBNAIL_SIZE, -2)
+                    .quality(5)
+                    .images(out.getAbsolutePath())
+                    .build()
+                    .option("-f", "image2")
+                    .buildArgs();
+            FFmpegSession created = FFmpegSession.create(args);
+            session = created;
+            if (signal.isCanceled()) {
+                return;
+            }
+            FFmpegKitConfig.ffmpegExecute(created);
+            if (!ReturnCode.isSuccess(created.getReturnCode())) {
+                out.delete();
+            }
+        }
+    }
+
+    private void commit(File tmp, File file) {
+        if (tmp.renameTo(file)) {
+            trimDisk();
+        }
+    }
+
+    /**
+     * 磁盘缓存超出上限时按修改时间从旧到新删除
+     */
+    private synchronized void trimDisk() {
+        File[] files = diskDir.listFiles((dir, name) -> !name.endsWith(TMP_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= DISK_CACHE_BYTES) {
+            return;
+        }
+        long[] modified = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+        }
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        for (int i = 0; i < order.length && total > DISK_CACHE_BYTES * 3 / 4; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2 + 4);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.append(".jpg").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
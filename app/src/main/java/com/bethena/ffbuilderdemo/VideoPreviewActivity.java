@@ -2,10 +2,10 @@ package com.bethena.ffbuilderdemo;
 
 import android.content.ContentResolver;
 import android.content.ContentValues;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
 import android.widget.Button;
 import android.widget.TextView;
@@ -14,10 +14,17 @@ import android.widget.VideoView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.StreamInfo;
+
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class VideoPreviewActivity extends AppCompatActivity {
 
@@ -27,6 +34,10 @@ public class VideoPreviewActivity extends AppCompatActivity {
     private TextView tvVideoInfo;
     private Button btnSaveToGallery;
     private String videoPath;
+    /**
+     * 探测视频信息的后台线程，FFprobe 不能放在主线程
+     */
+    private final ExecutorService prober = Executors.newSingleThreadExecutor();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -46,31 +57,21 @@ public class VideoPreviewActivity extends AppCompatActivity {
                 videoView.setVideoURI(videoUri);
                 videoView.start();
 
-                // 获取视频信息
-                MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-                retriever.setDataSource(videoPath);
-
-                String width = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH);
-                String height = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT);
-                String bitrate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE);
-                String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-                String rotation = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
-                String frameRate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_CAPTURE_FRAMERATE);
-
-                StringBuilder info = new StringBuilder();
-                info.append("分辨率: ").append(width).append(" x ").append(height).append("\n");
-                info.append("码率: ").append(bitrate != null ? Integer.parseInt(bitrate) / 1024 : "未知").append(" Kbps\n");
-                info.append("时长: ").append(duration != null ? Integer.parseInt(duration) / 1000 : "未知").append(" 秒\n");
-                info.append("旋转角度: ").append(rotation != null ? rotation : "0").append("°\n");
-                info.append("帧率: ").append(frameRate != null ? frameRate : "未知").append(" fps");
-
-                tvVideoInfo.setText(info.toString());
-
-                try {
-                    retriever.release();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
+                // 在后台线程获取视频信息；刚生成的输出文件不在缓存中，第一次打开时总会执行 FFprobe
+                prober.execute(() -> {
+                    String info;
+                    try {
+                        info = describe(MediaInfoStore.get(this, videoFile));
+                    } catch (IOException e) {
+                        info = e.getMessage();
+                    }
+                    String text = info;
+                    runOnUiThread(() -> {
+                        if (!isDestroyed()) {
+                            tvVideoInfo.setText(text);
+                        }
+                    });
+                });
 
                 // 设置保存按钮点击事件
                 btnSaveToGallery.setOnClickListener(v -> saveVideoToGallery());
@@ -78,6 +79,20 @@ public class VideoPreviewActivity extends AppCompatActivity {
         }
     }
 
+    private static String describe(MediaInfo mediaInfo) {
+        StreamInfo video = mediaInfo.getVideoStream();
+        StringBuilder info = new StringBuilder();
+        if (video != null) {
+            info.append("分辨率: ").append(video.getWidth()).append(" x ").append(video.getHeight()).append("\n");
+        }
+        info.append("码率: ").append(mediaInfo.getBitRate() > 0 ? mediaInfo.getBitRate() / 1000 : "未知").append(" Kbps\n");
+        info.append("时长: ").append(mediaInfo.getDuration() >= 0 ? (long) mediaInfo.getDuration() : "未知").append(" 秒\n");
+        info.append("旋转角度: ").append(video != null ? video.getRotation() : 0).append("°\n");
+        info.append("帧率: ").append(video != null && !Double.isNaN(video.getFrameRate())
+                ? String.format(Locale.US, "%.2f", video.getFrameRate()) : "未知").append(" fps");
+        return info.toString();
+    }
+
     private void saveVideoToGallery() {
         if (videoPath == null) {
             Toast.makeText(this, "视频文件不存在", Toast.LENGTH_SHORT).show();
@@ -103,13 +118,19 @@ public class VideoPreviewActivity extends AppCompatActivity {
         Uri uri = resolver.insert(collection, values);
 
         if (uri != null) {
-            try (OutputStream os = resolver.openOutputStream(uri);
-                 FileInputStream fis = new FileInputStream(videoFile)) {
-
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    os.write(buffer, 0, bytesRead);
+            // 文件通道直接传输到媒体库的文件描述符，由内核完成复制，不经过 Java 堆
+            try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "w")) {
+                // 媒体库的提供者崩溃时返回 null
+                if (pfd == null) {
+                    throw new IOException("无法打开媒体库文件");
+                }
+                try (FileChannel in = new FileInputStream(videoFile).getChannel();
+                     FileChannel out = new FileOutputStream(pfd.getFileDescriptor()).getChannel()) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
                 }
 
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
@@ -139,6 +160,7 @@ public class VideoPreviewActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        prober.shutdownNow();
         if (videoView != null) {
             videoView.stopPlayback();
         }
@@ -0,0 +1,77 @@
+package com.bethena.ffmpegcmdbuilder.jmh;
+
+import com.bethena.ffmpegcmdbuilder.CommandTemplate;
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构建器 create→build 吞吐量基准
+ * 每次构建的内存分配量看 gc 分析器输出的 gc.alloc.rate.norm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class BuilderBenchmark {
+
+    private static final String INPUT = "/data/user/0/com.bethena.ffbuilderdemo/cache/input_1741009389000.mp4";
+    private static final String OUTPUT = "/data/user/0/com.bethena.ffbuilderdemo/cache/output_1741009389000.mp4";
+
+    private CommandTemplate template;
+    private FFmpegCommandBuilder ladderBase;
+
+    @Setup
+    public void setUp() {
+        template = convertVideo(CommandTemplate.INPUT, CommandTemplate.OUTPUT).compile();
+        ladderBase = convertVideo(INPUT, OUTPUT);
+    }
+
+    /**
+     * 与 MainActivity.convertVideo 相同的命令链
+     */
+    static FFmpegCommandBuilder convertVideo(String input, String output) {
+        return FFmpegCommandBuilder.create()
+                .input(input)
+                .videoCodec("h264")
+                .audioCodec("aac")
+                .videoBitRate("1M")
+                .audioBitRate("128k")
+                .resolution(640, 360)
+                .frameRate(30)
+                .output(output);
+    }
+
+    @Benchmark
+    public String[] createAndBuildArgs() {
+        return convertVideo(INPUT, OUTPUT).buildArgs();
+    }
+
+    @Benchmark
+    public String createAndBuildString() {
+        return convertVideo(INPUT, OUTPUT).build();
+    }
+
+    /**
+     * 在同一份配置上派生码率/分辨率变体
+     */
+    @Benchmark
+    public String[] forkVariant() {
+        return ladderBase.fork()
+                .videoBitRate("3M")
+                .resolution(1280, 720)
+                .buildArgs();
+    }
+
+    @Benchmark
+    public String[] templateBind() {
+        return template.bind(INPUT, OUTPUT);
+    }
+}
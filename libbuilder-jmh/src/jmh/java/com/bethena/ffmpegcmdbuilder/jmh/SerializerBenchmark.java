@@ -0,0 +1,47 @@
+package com.bethena.ffmpegcmdbuilder.jmh;
+
+import com.bethena.ffmpegcmdbuilder.CommandSerializer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 参数数组序列化为命令字符串的开销
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+    /**
+     * safe：路径不含空格；unsafe：路径含空格和引号，需要转义
+     */
+    @Param({"safe", "unsafe"})
+    public String paths;
+
+    private String[] args;
+
+    @Setup
+    public void setUp() {
+        String dir = "safe".equals(paths) ? "/sdcard/Movies/" : "/sdcard/My Movies/Tom's \"best\" ";
+        args = BuilderBenchmark.convertVideo(dir + "input.mp4", dir + "output.mp4").buildArgs();
+    }
+
+    @Benchmark
+    public String ffmpegKitCommand() {
+        return CommandSerializer.toFFmpegKitCommand(args);
+    }
+
+    @Benchmark
+    public String shellCommand() {
+        return CommandSerializer.toShellCommand(args);
+    }
+}
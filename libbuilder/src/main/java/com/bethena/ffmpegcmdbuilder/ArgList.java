@@ -0,0 +1,65 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 写时复制的字符串列表，用于 -map 等可重复出现的参数
+ */
+final class ArgList {
+
+    private static final String[] EMPTY = new String[0];
+
+    private String[] items;
+    private int size;
+    private boolean shared;
+
+    ArgList() {
+        items = EMPTY;
+    }
+
+    private ArgList(ArgList source) {
+        items = source.items;
+        size = source.size;
+        shared = true;
+        source.shared = true;
+    }
+
+    ArgList fork() {
+        return new ArgList(this);
+    }
+
+    void add(String item) {
+        if (shared || size == items.length) {
+            items = Arrays.copyOf(items, Math.max(size + 1, items.length * 2));
+            shared = false;
+        }
+        items[size++] = item;
+    }
+
+    String get(int index) {
+        return items[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<String> asList() {
+        return Collections.unmodifiableList(Arrays.asList(items).subList(0, size));
+    }
+
+    /**
+     * 将每一项以 "flag 项" 的形式写入参数数组
+     *
+     * @return 写入后的下一个位置
+     */
+    int appendTo(String[] out, int pos, String flag) {
+        for (int i = 0; i < size; i++) {
+            out[pos++] = flag;
+            out[pos++] = items[i];
+        }
+        return pos;
+    }
+}
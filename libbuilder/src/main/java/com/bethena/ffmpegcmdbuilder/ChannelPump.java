@@ -0,0 +1,62 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 通道间的数据搬运，供 {@link InputSource}、{@link OutputSink} 使用
+ */
+final class ChannelPump {
+
+    private ChannelPump() {
+    }
+
+    /**
+     * 把 in 中的数据全部写入 out，不关闭通道
+     *
+     * @param in         来源
+     * @param out        目标
+     * @param bufferSize 缓冲区大小
+     * @return 写入的字节数
+     * @throws IOException 读写失败时
+     */
+    static long pump(ReadableByteChannel in, WritableByteChannel out, int bufferSize) throws IOException {
+        // 普通文件交给内核直接传输；管道的 size() 为 0，只能按流读取
+        if (in instanceof FileChannel && ((FileChannel) in).size() > ((FileChannel) in).position()) {
+            return transfer((FileChannel) in, out);
+        }
+        return copy(in, out, bufferSize);
+    }
+
+    private static long transfer(FileChannel in, WritableByteChannel out) throws IOException {
+        long position = in.position();
+        long size = in.size();
+        long total = 0;
+        while (position < size) {
+            long written = in.transferTo(position, size - position, out);
+            if (written <= 0) {
+                break;
+            }
+            position += written;
+            total += written;
+        }
+        return total;
+    }
+
+    /**
+     * 直接缓冲区可以避免每次读写在 Java 堆和本地内存间复制，缓冲区较大以减少系统调用次数
+     */
+    private static long copy(ReadableByteChannel in, WritableByteChannel out, int bufferSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        long total = 0;
+        while (in.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            total += out.write(buffer);
+            buffer.compact();
+        }
+        return total;
+    }
+}
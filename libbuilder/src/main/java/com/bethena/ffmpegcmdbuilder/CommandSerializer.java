@@ -0,0 +1,247 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命令参数序列化器
+ * 将参数数组拼接为单个命令字符串，并对含空格、引号的参数进行转义，
+ * 保证拼接后的字符串被重新解析时能还原为同样的参数数组；
+ * 另有紧凑的二进制格式，用于持久化命令（如任务日志）
+ */
+public final class CommandSerializer {
+
+    /**
+     * 紧凑格式的版本号，修改 {@link #DICTIONARY} 时必须递增
+     */
+    private static final int COMPACT_VERSION = 1;
+
+    /**
+     * 紧凑格式中用一个字节表示的常用参数，只能在末尾追加，顺序一旦写入文件就不能再改
+     */
+    private static final String[] DICTIONARY = {
+            "-y", "-i", "-c:v", "-c:a", "-b:v", "-b:a", "-vf", "-af",
+            "-filter_complex", "-map", "-f", "-ss", "-t", "-to", "-s", "-r",
+            "-an", "-vn", "-sn", "-threads", "-filter_threads", "-filter_complex_threads", "-preset", "-tune",
+            "-movflags", "-crf", "-pix_fmt", "-g", "-force_key_frames", "-fps_mode", "-frames:v", "-q:v",
+            "-skip_frame", "-safe", "-hls_time", "-hls_playlist_type", "-hls_segment_filename", "-hls_flags",
+            "-seg_duration", "-progress", "copy", "libx264", "libx265", "h264", "hevc", "aac",
+            "mp4", "mpegts", "hls", "dash", "concat", "veryfast", "ultrafast", "slow",
+            "+faststart", "nokey", "vfr", "0", "1", "2", "4", "8"
+    };
+
+    private static final Map<String, Integer> DICTIONARY_INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            DICTIONARY_INDEX.put(DICTIONARY[i], i);
+        }
+    }
+
+    private CommandSerializer() {
+    }
+
+    /**
+     * 序列化为 FFmpegKit 可解析的命令字符串
+     * FFmpegKit 只按空格切分参数，支持单/双引号，紧跟在反斜杠之后的引号不作为引号处理
+     *
+     * @param args 参数数组
+     * @return 命令字符串
+     * @throws IllegalArgumentException 参数为空字符串时（FFmpegKit 会丢弃空参数）
+     */
+    public static String toFFmpegKitCommand(String[] args) {
+        StringBuilder sb = new StringBuilder(estimateLength(args));
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            appendFFmpegKitArg(sb, args[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 序列化为 POSIX shell 可解析的命令字符串（不含可执行文件名）
+     *
+     * @param args 参数数组
+     * @return 命令字符串
+     */
+    public static String toShellCommand(String[] args) {
+        StringBuilder sb = new StringBuilder(estimateLength(args));
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            appendShellArg(sb, args[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 序列化为紧凑的二进制格式
+     * 格式：版本号、参数个数，每个参数一个变长整数头，最低位为 1 时其余位是常用参数表的下标，
+     * 为 0 时其余位是 UTF-8 字节数，后跟参数内容；常用参数只占一个字节，典型命令约为字符串形式的一半
+     *
+     * @param args 参数数组
+     * @return 序列化后的字节
+     */
+    public static byte[] toCompact(String[] args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(estimateLength(args));
+        out.write(COMPACT_VERSION);
+        writeVarint(out, args.length);
+        for (String arg : args) {
+            Integer index = DICTIONARY_INDEX.get(arg);
+            if (index != null) {
+                writeVarint(out, index << 1 | 1);
+            } else {
+                byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length << 1);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 从紧凑格式还原参数数组
+     *
+     * @param data {@link #toCompact(String[])} 生成的字节
+     * @return 参数数组
+     * @throws IllegalArgumentException 数据被截断、损坏或版本不支持时
+     */
+    public static String[] fromCompact(byte[] data) {
+        if (data.length == 0 || data[0] != COMPACT_VERSION) {
+            throw new IllegalArgumentException("不支持的紧凑格式版本");
+        }
+        int[] pos = {1};
+        int count = readVarint(data, pos);
+        // 每个参数至少占一个字节，避免损坏的数据申请过大的数组
+        if (count > data.length - pos[0]) {
+            throw new IllegalArgumentException("紧凑格式数据已损坏");
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            int header = readVarint(data, pos);
+            int value = header >>> 1;
+            if ((header & 1) != 0) {
+                if (value >= DICTIONARY.length) {
+                    throw new IllegalArgumentException("紧凑格式数据已损坏");
+                }
+                args[i] = DICTIONARY[value];
+            } else {
+                if (value > data.length - pos[0]) {
+                    throw new IllegalArgumentException("紧凑格式数据被截断");
+                }
+                args[i] = new String(data, pos[0], value, StandardCharsets.UTF_8);
+                pos[0] += value;
+            }
+        }
+        if (pos[0] != data.length) {
+            throw new IllegalArgumentException("紧凑格式数据末尾有多余字节");
+        }
+        return args;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IllegalArgumentException("紧凑格式数据被截断");
+            }
+            int b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("紧凑格式数据已损坏");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("紧凑格式数据已损坏");
+    }
+
+    private static void appendFFmpegKitArg(StringBuilder sb, String arg) {
+        if (arg.isEmpty()) {
+            throw new IllegalArgumentException("FFmpegKit 命令字符串无法表示空参数，请改用参数数组执行");
+        }
+        if (!needsFFmpegKitQuoting(arg)) {
+            sb.append(arg);
+            return;
+        }
+        // 末尾的反斜杠放到引号外面，否则结束引号会被当成普通字符
+        int end = arg.length();
+        while (end > 0 && arg.charAt(end - 1) == '\\') {
+            end--;
+        }
+        sb.append('"');
+        for (int i = 0; i < end; i++) {
+            char c = arg.charAt(i);
+            if (c == '"' && (i == 0 || arg.charAt(i - 1) != '\\')) {
+                // 关闭双引号，用单引号包住这个双引号，再重新打开双引号
+                sb.append("\"'\"'\"");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+        sb.append(arg, end, arg.length());
+    }
+
+    private static boolean needsFFmpegKitQuoting(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            char c = arg.charAt(i);
+            if (c == ' ' || c == '"' || c == '\'') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendShellArg(StringBuilder sb, String arg) {
+        if (!arg.isEmpty() && isShellSafe(arg)) {
+            sb.append(arg);
+            return;
+        }
+        sb.append('\'');
+        for (int i = 0; i < arg.length(); i++) {
+            char c = arg.charAt(i);
+            if (c == '\'') {
+                sb.append("'\\''");
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('\'');
+    }
+
+    private static boolean isShellSafe(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            char c = arg.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '/' || c == ':' || c == ','
+                    || c == '=' || c == '+' || c == '@' || c == '%';
+            if (!safe) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int estimateLength(String[] args) {
+        int length = args.length;
+        for (String arg : args) {
+            length += arg.length();
+        }
+        return length + 8;
+    }
+}
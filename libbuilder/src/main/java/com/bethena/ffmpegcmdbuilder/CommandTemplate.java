@@ -0,0 +1,199 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 编译后的命令模板
+ * 由带占位参数的构建器编译一次，之后每个任务只需绑定参数值即可得到参数数组，
+ * 绑定时只复制一次预先生成的参数数组，不再重复构建选项列表
+ *
+ * <pre>
+ * CommandTemplate template = FFmpegCommandBuilder.create()
+ *         .input(CommandTemplate.INPUT)
+ *         .videoCodec("h264")
+ *         .videoBitRate(CommandTemplate.param("vb"))
+ *         .output(CommandTemplate.OUTPUT)
+ *         .compile();
+ * String[] args = template.bind("/sdcard/a.mp4", "1M", "/sdcard/a_out.mp4");
+ * </pre>
+ */
+public final class CommandTemplate {
+
+    /**
+     * 占位参数前缀，NUL 字符不可能出现在真实的命令行参数中
+     */
+    private static final char PLACEHOLDER_MARK = '\u0000';
+
+    /**
+     * 输入文件占位参数
+     */
+    public static final String INPUT = param("input");
+
+    /**
+     * 输出文件占位参数
+     */
+    public static final String OUTPUT = param("output");
+
+    private final String[] args;
+    private final String[] names;
+    private final int[][] positions;
+
+    private CommandTemplate(String[] args, String[] names, int[][] positions) {
+        this.args = args;
+        this.names = names;
+        this.positions = positions;
+    }
+
+    /**
+     * 创建占位参数，可传给构建器任何接收字符串的方法
+     *
+     * @param name 参数名
+     * @return 占位参数
+     */
+    public static String param(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("参数名不能为空");
+        }
+        return PLACEHOLDER_MARK + name;
+    }
+
+    /**
+     * 编译构建器当前的命令
+     *
+     * @param builder 构建器
+     * @return 命令模板
+     */
+    public static CommandTemplate compile(FFmpegCommandBuilder builder) {
+        return compile(builder.buildArgs());
+    }
+
+    /**
+     * 编译参数数组
+     * 占位参数必须单独作为一个参数出现，同名占位参数可以出现多次
+     *
+     * @param args 含占位参数的参数数组
+     * @return 命令模板
+     */
+    public static CommandTemplate compile(String[] args) {
+        String[] fixed = args.clone();
+        List<String> names = new ArrayList<>();
+        List<int[]> positions = new ArrayList<>();
+        for (int i = 0; i < fixed.length; i++) {
+            String arg = fixed[i];
+            int mark = arg.indexOf(PLACEHOLDER_MARK);
+            if (mark < 0) {
+                continue;
+            }
+            if (mark != 0) {
+                throw new IllegalArgumentException("占位参数必须单独作为一个参数: " + arg.replace(PLACEHOLDER_MARK, '$'));
+            }
+            String name = arg.substring(1);
+            int index = names.indexOf(name);
+            if (index < 0) {
+                names.add(name);
+                positions.add(new int[]{i});
+            } else {
+                int[] old = positions.get(index);
+                int[] grown = Arrays.copyOf(old, old.length + 1);
+                grown[old.length] = i;
+                positions.set(index, grown);
+            }
+            fixed[i] = null;
+        }
+        return new CommandTemplate(fixed, names.toArray(new String[0]), positions.toArray(new int[0][]));
+    }
+
+    /**
+     * 按参数声明顺序获取参数名（即占位参数在命令中首次出现的顺序）
+     *
+     * @return 参数名列表
+     */
+    public List<String> getParameterNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * 获取参数的序号
+     *
+     * @param name 参数名
+     * @return 序号，不存在时返回 -1
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按参数声明顺序绑定参数值
+     *
+     * @param values 参数值，数量与 {@link #getParameterNames()} 一致
+     * @return 参数数组
+     */
+    public String[] bind(String... values) {
+        if (values.length != names.length) {
+            throw new IllegalArgumentException("需要 " + names.length + " 个参数值，实际为 " + values.length);
+        }
+        String[] result = args.clone();
+        for (int i = 0; i < names.length; i++) {
+            String value = values[i];
+            if (value == null) {
+                throw new IllegalArgumentException("参数 " + names[i] + " 未绑定");
+            }
+            for (int position : positions[i]) {
+                result[position] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 创建按名称绑定参数的绑定器，绑定器可在多个任务间复用
+     *
+     * @return 绑定器
+     */
+    public Binding newBinding() {
+        return new Binding();
+    }
+
+    /**
+     * 按名称绑定参数值的绑定器，非线程安全
+     */
+    public final class Binding {
+        private final String[] values = new String[names.length];
+
+        private Binding() {
+        }
+
+        /**
+         * 设置参数值
+         *
+         * @param name  参数名
+         * @param value 参数值
+         * @return 绑定器实例
+         */
+        public Binding set(String name, String value) {
+            int index = indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("模板中没有参数: " + name);
+            }
+            values[index] = value;
+            return this;
+        }
+
+        /**
+         * 生成参数数组
+         *
+         * @return 参数数组
+         */
+        public String[] toArgs() {
+            return bind(values);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.StreamInfo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 拼接多个片段
+ * 根据各片段的探测信息自动选择拼接方式：编码参数一致时使用 concat 封装器直接流复制，
+ * 不解码也不重新编码；不一致时才使用 concat 滤镜，先统一分辨率、帧率、采样率再重新编码
+ *
+ * <pre>
+ * ConcatBuilder concat = ConcatBuilder.create()
+ *         .add(path1, MediaProbe.parse(json1))
+ *         .add(path2, MediaProbe.parse(json2))
+ *         .listFile(new File(getCacheDir(), "concat.txt"));
+ * FFmpegCommandBuilder builder = concat.build().output(outPath);
+ * if (concat.getMode() == ConcatBuilder.Mode.FILTER) {
+ *     builder.videoCodec("libx264").audioCodec("aac");
+ * }
+ * </pre>
+ */
+public final class ConcatBuilder {
+
+    /**
+     * 拼接方式
+     */
+    public enum Mode {
+        /**
+         * concat 封装器：按列表文件依次读取片段，-c copy 直接封装
+         */
+        DEMUXER,
+        /**
+         * concat 滤镜：解码所有片段后拼接，需要重新编码
+         */
+        FILTER
+    }
+
+    /**
+     * 帧率允许的误差，片段间帧率相差超过该值时视为不一致
+     */
+    private static final double FRAME_RATE_TOLERANCE = 0.01;
+
+    private final List<String> urls = new ArrayList<>();
+    private final List<MediaInfo> infos = new ArrayList<>();
+    private File listFile;
+    private Mode forcedMode;
+
+    private ConcatBuilder() {
+    }
+
+    public static ConcatBuilder create() {
+        return new ConcatBuilder();
+    }
+
+    /**
+     * 添加片段，按添加顺序拼接
+     *
+     * @param url  片段路径或 FFmpeg 能识别的地址
+     * @param info 片段的探测信息
+     * @return 拼接构建器实例
+     */
+    public ConcatBuilder add(String url, MediaInfo info) {
+        if (url == null || url.isEmpty()) {
+            throw new IllegalArgumentException("片段路径不能为空");
+        }
+        urls.add(url);
+        infos.add(Objects.requireNonNull(info, "info"));
+        return this;
+    }
+
+    /**
+     * 设置 concat 封装器使用的列表文件，使用封装器拼接时必须设置
+     *
+     * @param file 列表文件，构建时写入
+     * @return 拼接构建器实例
+     */
+    public ConcatBuilder listFile(File file) {
+        listFile = file;
+        return this;
+    }
+
+    /**
+     * 强制使用指定的拼接方式，为 null 时自动选择
+     * 强制使用封装器时由调用方保证各片段参数一致，否则输出的时间戳或解码可能出错
+     *
+     * @param mode 拼接方式
+     * @return 拼接构建器实例
+     */
+    public ConcatBuilder mode(Mode mode) {
+        forcedMode = mode;
+        return this;
+    }
+
+    /**
+     * 获取将要使用的拼接方式
+     *
+     * @return 拼接方式
+     */
+    public Mode getMode() {
+        if (forcedMode != null) {
+            return forcedMode;
+        }
+        return canStreamCopy() ? Mode.DEMUXER : Mode.FILTER;
+    }
+
+    /**
+     * 生成拼接命令，使用封装器时同时写入列表文件
+     * 返回的构建器还没有设置输出，使用滤镜时需要由调用方设置编码器
+     *
+     * @return 命令构建器
+     * @throws IOException 写入列表文件失败时
+     */
+    public FFmpegCommandBuilder build() throws IOException {
+        if (urls.size() < 2) {
+            throw new IllegalStateException("至少需要两个片段");
+        }
+        return getMode() == Mode.DEMUXER ? buildDemuxer() : buildFilter();
+    }
+
+    /**
+     * 所有片段的流数量、编码格式和编码参数都相同时才能直接流复制
+     * 档次、级别、时间基、采样格式不同的片段拼接后解码器可能无法继续解码或时间戳错乱，
+     * 这些参数未知时无法确认一致，使用 concat 滤镜
+     */
+    boolean canStreamCopy() {
+        MediaInfo first = infos.get(0);
+        for (int i = 1; i < infos.size(); i++) {
+            MediaInfo info = infos.get(i);
+            if (!sameVideo(first.getVideoStream(), info.getVideoStream())
+                    || !sameAudio(first.getAudioStream(), info.getAudioStream())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameVideo(StreamInfo a, StreamInfo b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Objects.equals(a.getCodecName(), b.getCodecName())
+                && a.getWidth() == b.getWidth()
+                && a.getHeight() == b.getHeight()
+                && a.getRotation() == b.getRotation()
+                && Objects.equals(a.getPixelFormat(), b.getPixelFormat())
+                && Math.abs(a.getFrameRate() - b.getFrameRate()) <= FRAME_RATE_TOLERANCE
+                && sameKnown(a.getProfile(), b.getProfile())
+                && a.getLevel() >= 0 && a.getLevel() == b.getLevel()
+                && sameKnown(a.getTimeBase(), b.getTimeBase());
+    }
+
+    private static boolean sameAudio(StreamInfo a, StreamInfo b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Objects.equals(a.getCodecName(), b.getCodecName())
+                && a.getSampleRate() == b.getSampleRate()
+                && a.getChannels() == b.getChannels()
+                // 只有部分音频编码（如 AAC）有档次，都没有时视为一致
+                && Objects.equals(a.getProfile(), b.getProfile())
+                && sameKnown(a.getSampleFormat(), b.getSampleFormat())
+                && sameKnown(a.getTimeBase(), b.getTimeBase());
+    }
+
+    private static boolean sameKnown(String a, String b) {
+        return a != null && a.equals(b);
+    }
+
+    private FFmpegCommandBuilder buildDemuxer() throws IOException {
+        if (listFile == null) {
+            throw new IllegalStateException("使用 concat 封装器需要先设置 listFile()");
+        }
+        writeListFile(listFile, urls);
+        // -safe 0 允许绝对路径和带协议前缀的地址
+        return FFmpegCommandBuilder.create()
+                .inputOption("-f", "concat")
+                .inputOption("-safe", "0")
+                .input(listFile.getAbsolutePath())
+                .videoCodec("copy")
+                .audioCodec("copy");
+    }
+
+    static void writeListFile(File file, List<String> urls) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("ffconcat version 1.0\n");
+            for (String url : urls) {
+                writer.write("file ");
+                writer.write(quote(url));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * 列表文件中的路径用单引号包裹，路径中的单引号写成 '\''
+     */
+    static String quote(String url) {
+        return "'" + url.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * 以第一个片段的显示尺寸、帧率和采样率为准统一各片段，
+     * 尺寸不同的片段按比例缩放后补黑边；有片段缺少音频时只拼接视频
+     */
+    private FFmpegCommandBuilder buildFilter() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create();
+        StreamInfo video = infos.get(0).getVideoStream();
+        StreamInfo audio = infos.get(0).getAudioStream();
+        boolean withVideo = video != null;
+        boolean withAudio = audio != null;
+        for (MediaInfo info : infos) {
+            withVideo &= info.getVideoStream() != null;
+            withAudio &= info.getAudioStream() != null;
+        }
+        if (!withVideo && !withAudio) {
+            throw new IllegalStateException("片段之间没有共同的音视频流");
+        }
+
+        FilterGraph graph = FilterGraph.create();
+        List<String> segments = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            builder.input(urls.get(i));
+            if (withVideo) {
+                int width = even(video.getDisplayWidth());
+                int height = even(video.getDisplayHeight());
+                FilterGraph.Chain chain = graph.chain().in(i + ":v")
+                        .filter(Filter.scale(width, height)
+                                .arg("force_original_aspect_ratio", "decrease"))
+                        .filter(Filter.of("pad").arg("w", String.valueOf(width)).arg("h", String.valueOf(height))
+                                .arg("x", "(ow-iw)/2").arg("y", "(oh-ih)/2"))
+                        .filter(Filter.raw("setsar=1"));
+                if (video.getFrameRate() > 0) {
+                    chain.filter(Filter.of("fps").arg("fps", number(video.getFrameRate())));
+                }
+                chain.out("v" + i);
+                segments.add("v" + i);
+            }
+            if (withAudio) {
+                graph.chain().in(i + ":a")
+                        .filter(Filter.of("aresample").arg("osr", String.valueOf(audio.getSampleRate())))
+                        .filter(Filter.of("aformat").arg("channel_layouts", audio.getChannels() == 1 ? "mono" : "stereo"))
+                        .out("a" + i);
+                segments.add("a" + i);
+            }
+        }
+        FilterGraph.Chain concat = graph.chain();
+        for (String label : segments) {
+            concat.in(label);
+        }
+        concat.filter(Filter.of("concat").arg("n", String.valueOf(urls.size()))
+                .arg("v", withVideo ? "1" : "0").arg("a", withAudio ? "1" : "0"));
+        if (withVideo) {
+            concat.out("v");
+            builder.map("[v]");
+        }
+        if (withAudio) {
+            concat.out("a");
+            builder.map("[a]");
+        }
+        return builder.filterGraph(graph);
+    }
+
+    private static int even(int value) {
+        return value & ~1;
+    }
+
+    private static String number(double value) {
+        String text = String.format(Locale.US, "%.3f", value).replaceAll("0+$", "");
+        return text.endsWith(".") ? text.substring(0, text.length() - 1) : text;
+    }
+}
@@ -0,0 +1,93 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * DASH 输出
+ *
+ * <pre>
+ * builder.output(DashOutput.create("/sdcard/live/manifest.mpd").segmentDuration(4).streaming(true));
+ * </pre>
+ */
+public final class DashOutput extends SegmentedOutput {
+
+    private String initSegmentName = "init-$RepresentationID$.m4s";
+    private String mediaSegmentName = "chunk-$RepresentationID$-$Number%05d$.m4s";
+    private boolean streaming;
+
+    private DashOutput(String manifestPath) {
+        super(manifestPath);
+    }
+
+    /**
+     * 创建 DASH 输出
+     *
+     * @param manifestPath mpd 清单路径
+     * @return DASH 输出
+     */
+    public static DashOutput create(String manifestPath) {
+        return new DashOutput(manifestPath);
+    }
+
+    /**
+     * 设置分段时长（-seg_duration），默认 6 秒
+     *
+     * @param seconds 秒数
+     * @return DASH 输出
+     */
+    public DashOutput segmentDuration(double seconds) {
+        checkDuration(seconds);
+        segmentDuration = seconds;
+        return this;
+    }
+
+    /**
+     * 设置分段文件名模板，相对于清单所在目录，可使用 $RepresentationID$、$Number$ 等标识符
+     *
+     * @param initName  初始化分段文件名（-init_seg_name）
+     * @param mediaName 媒体分段文件名（-media_seg_name）
+     * @return DASH 输出
+     */
+    public DashOutput segmentNames(String initName, String mediaName) {
+        initSegmentName = initName;
+        mediaSegmentName = mediaName;
+        return this;
+    }
+
+    /**
+     * 是否以低延迟方式写出（-streaming 1 -ldash 1），每个分片编码完立即写出，而不是等整个分段完成
+     *
+     * @param enabled 是否开启
+     * @return DASH 输出
+     */
+    public DashOutput streaming(boolean enabled) {
+        streaming = enabled;
+        return this;
+    }
+
+    /**
+     * 是否按分段时长强制插入关键帧，默认开启
+     *
+     * @param align 是否开启
+     * @return DASH 输出
+     */
+    public DashOutput alignKeyframes(boolean align) {
+        alignKeyframes = align;
+        return this;
+    }
+
+    @Override
+    void applyTo(FFmpegCommandBuilder builder) {
+        applyKeyframes(builder);
+        builder.option("-f", "dash")
+                .option("-seg_duration", seconds(segmentDuration))
+                .option("-use_template", "1")
+                .option("-use_timeline", "1")
+                .option("-init_seg_name", initSegmentName)
+                .option("-media_seg_name", mediaSegmentName)
+                .option(Option.MOVFLAGS, null);
+        if (streaming) {
+            builder.option("-streaming", "1").option("-ldash", "1");
+        } else {
+            builder.removeOption("-streaming").removeOption("-ldash");
+        }
+    }
+}
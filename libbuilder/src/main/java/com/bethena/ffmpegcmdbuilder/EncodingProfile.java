@@ -0,0 +1,121 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 编码配置
+ * 按 CPU 核数和同时运行的任务数分配编码/滤镜线程，并设置与目标匹配的编码器参数，
+ * 避免多个任务同时运行时线程数超过核数，或单任务时核心空闲
+ */
+public enum EncodingProfile {
+    /**
+     * 最大吞吐量：较快的预设，线程按任务数均分
+     */
+    MAX_THROUGHPUT("veryfast", null, null),
+    /**
+     * 低延迟：最快预设并关闭帧级缓冲，适合直播、实时预览
+     */
+    LOW_LATENCY("ultrafast", "zerolatency", null),
+    /**
+     * 最小输出：较慢的预设换取压缩率，并把 moov 移到文件头便于边下边播
+     */
+    SMALLEST_OUTPUT("slow", null, "+faststart");
+
+    /**
+     * 支持 -movflags 的封装格式（mov 复用器族）
+     */
+    private static final Set<String> MOV_FORMATS = new HashSet<>(Arrays.asList("mp4", "mov", "ipod", "3gp", "ismv"));
+    private static final Set<String> MOV_EXTENSIONS = new HashSet<>(Arrays.asList("mp4", "m4v", "m4a", "mov", "3gp"));
+
+    private final String preset;
+    private final String tune;
+    private final String movflags;
+
+    EncodingProfile(String preset, String tune, String movflags) {
+        this.preset = preset;
+        this.tune = tune;
+        this.movflags = movflags;
+    }
+
+    /**
+     * 按当前设备的 CPU 核数应用配置
+     *
+     * @param builder        构建器
+     * @param concurrentJobs 同时运行的转码任务数
+     */
+    public void applyTo(FFmpegCommandBuilder builder, int concurrentJobs) {
+        applyTo(builder, concurrentJobs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 按指定的 CPU 核数应用配置
+     *
+     * @param builder        构建器
+     * @param concurrentJobs 同时运行的转码任务数
+     * @param cores          可用的 CPU 核数
+     */
+    public void applyTo(FFmpegCommandBuilder builder, int concurrentJobs, int cores) {
+        String threads = String.valueOf(threadsPerJob(cores, concurrentJobs));
+        builder.option(Option.THREADS, threads)
+                .option(Option.FILTER_THREADS, threads)
+                .option(Option.FILTER_COMPLEX_THREADS, threads);
+        // -preset、-tune 是 x264/x265 的私有参数，硬件编码器不认识；
+        // 未指定编码器或写成 h264/hevc 时实际使用的编码器取决于 FFmpeg 的编译选项，不能确定是 x264/x265
+        if (isX26x(builder.get(Option.VIDEO_CODEC))) {
+            builder.option(Option.PRESET, preset)
+                    .option(Option.TUNE, tune);
+        }
+        applyMovflags(builder);
+    }
+
+    /**
+     * 输出为 mp4/mov 文件时设置 -movflags，其他封装格式（mkv、HLS、DASH 等）不认识该参数，清除之前设置的值；
+     * 管道输出无法回写文件头，保留流式格式设置的 -movflags
+     * 还没有设置输出时先按 mp4 设置，{@link FFmpegCommandBuilder#output(String)} 时再按实际格式调整
+     *
+     * @param builder 构建器
+     */
+    void applyMovflags(FFmpegCommandBuilder builder) {
+        if (builder.getOutputSink() != null) {
+            return;
+        }
+        String format = builder.get("-f");
+        String output = builder.getOutput();
+        boolean mov = format != null ? MOV_FORMATS.contains(format)
+                : output == null || MOV_EXTENSIONS.contains(extension(output));
+        builder.option(Option.MOVFLAGS, mov ? movflags : null);
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return dot > slash ? path.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * 计算每个任务的线程数：核数按任务数均分，至少 1 个
+     *
+     * @param cores          可用的 CPU 核数
+     * @param concurrentJobs 同时运行的转码任务数
+     * @return 每个任务的线程数
+     */
+    public static int threadsPerJob(int cores, int concurrentJobs) {
+        return Math.max(1, cores / Math.max(1, concurrentJobs));
+    }
+
+    /**
+     * 获取预设
+     *
+     * @return x264/x265 预设名称
+     */
+    public String getPreset() {
+        return preset;
+    }
+
+    private static boolean isX26x(String codec) {
+        return "libx264".equals(codec) || "libx265".equals(codec);
+    }
+}
@@ -1,36 +1,189 @@
 package com.bethena.ffmpegcmdbuilder;
 
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.MediaProbe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * FFmpeg命令构建器
  * 使用构建者模式来构建FFmpeg命令
+ * 选项按槽位保存，重复调用同一个设置方法时后设置的值生效，不会产生重复参数
  */
 public class FFmpegCommandBuilder {
-    private final List<String> commands;
+    /**
+     * 滤镜图描述超过此长度时改用 -filter_complex_script 从文件读取
+     */
+    public static final int DEFAULT_FILTER_SCRIPT_THRESHOLD = 16 * 1024;
+
+    private List<InputSpec> inputs;
+    private OptionSet pendingInputOptions;
+    private ArgList maps;
+    private OptionSet globalOptions;
+    private OptionSet options;
+    private String output;
+    private OutputSink outputSink;
+    private List<OutputScope> outputs;
+    private FanOut fanOut = FanOut.AUTO;
+    private String filterComplex;
+    private File filterScriptDir;
+    private int filterScriptThreshold = DEFAULT_FILTER_SCRIPT_THRESHOLD;
+    private EncodingProfile profile;
 
     private FFmpegCommandBuilder() {
-        commands = new ArrayList<>();
-        commands.add("-y"); // 默认覆盖输出文件
+        inputs = new ArrayList<>(1);
+        maps = new ArgList();
+        globalOptions = new OptionSet();
+        options = new OptionSet();
+        outputs = new ArrayList<>(0);
+    }
+
+    private FFmpegCommandBuilder(FFmpegCommandBuilder source) {
+        inputs = new ArrayList<>(source.inputs.size());
+        for (InputSpec input : source.inputs) {
+            inputs.add(input.fork());
+        }
+        pendingInputOptions = source.pendingInputOptions != null ? source.pendingInputOptions.fork() : null;
+        maps = source.maps.fork();
+        globalOptions = source.globalOptions.fork();
+        options = source.options.fork();
+        output = source.output;
+        outputSink = source.outputSink;
+        outputs = new ArrayList<>(source.outputs.size());
+        for (OutputScope scope : source.outputs) {
+            outputs.add(scope.fork());
+        }
+        fanOut = source.fanOut;
+        filterComplex = source.filterComplex;
+        filterScriptDir = source.filterScriptDir;
+        filterScriptThreshold = source.filterScriptThreshold;
+        profile = source.profile;
     }
 
     public static FFmpegCommandBuilder create() {
         return new FFmpegCommandBuilder();
     }
 
+    /**
+     * 派生一个新的构建器，用于在同一份配置上生成码率、分辨率等不同的变体
+     * 派生时不复制选项，两个构建器共享数据，任何一方修改时才复制各自的那部分（写时复制）
+     *
+     * @return 派生的构建器
+     */
+    public FFmpegCommandBuilder fork() {
+        return new FFmpegCommandBuilder(this);
+    }
+
     /**
      * 设置输入文件
+     * 在此之前通过 {@link #inputOption(String, String)}、{@link #seek(String, SeekMode)} 设置的输入选项作用于该输入
      *
      * @param inputPath 输入文件路径
      * @return 构建器实例
      */
     public FFmpegCommandBuilder input(String inputPath) {
-        commands.add("-i");
-        commands.add(inputPath);
+        return addInput(inputPath, null);
+    }
+
+    /**
+     * 设置输入来源（文件描述符、管道、通道等），FFmpeg 直接读取来源数据，无需先复制成文件
+     * 需要写入数据的来源可通过 {@link #getInputSources()} 取得，在 FFmpeg 启动后调用 {@link InputSource#pump()}
+     *
+     * @param source 输入来源
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder input(InputSource source) {
+        return addInput(source.getUrl(), source);
+    }
+
+    private FFmpegCommandBuilder addInput(String url, InputSource source) {
+        OptionSet inputOptions = pendingInputOptions != null ? pendingInputOptions : new OptionSet();
+        pendingInputOptions = null;
+        inputs.add(new InputSpec(url, inputOptions, source));
         return this;
     }
 
+    /**
+     * 设置输入选项（位于 -i 之前），作用于最近添加的输入；还没有添加输入时作用于下一个添加的输入
+     *
+     * @param option 选项（全局选项除外）
+     * @param value  选项值，为 null 时移除该选项
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder inputOption(Option option, String value) {
+        if (option.getScope() == Option.Scope.GLOBAL) {
+            throw new IllegalArgumentException(option.getFlag() + " 是全局选项，不能作为输入选项");
+        }
+        currentInputOptions().set(option, value);
+        return this;
+    }
+
+    /**
+     * 设置任意输入选项（如 -f concat、-safe 0），规则同 {@link #inputOption(Option, String)}
+     *
+     * @param flag  参数名
+     * @param value 参数值，为 null 时表示无值开关
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder inputOption(String flag, String value) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return inputOption(option, value);
+        }
+        currentInputOptions().set(flag, value);
+        return this;
+    }
+
+    /**
+     * 获取输入选项的当前值，规则同 {@link #inputOption(Option, String)}
+     *
+     * @param flag 参数名
+     * @return 选项值，未设置或为无值开关时返回 null
+     */
+    public String getInputOption(String flag) {
+        return currentInputOptions().get(flag);
+    }
+
+    /**
+     * 定位到指定时间开始处理
+     * FAST 将 -ss 放在最近添加的输入之前（还没有输入时放在下一个输入之前），ACCURATE 将 -ss 作为输出选项；
+     * 两种方式互相覆盖，只保留最后一次设置
+     *
+     * @param time 时间（格式：HH:mm:ss[.xxx] 或秒数）
+     * @param mode 定位方式
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder seek(String time, SeekMode mode) {
+        if (mode == SeekMode.FAST) {
+            currentInputOptions().set(Option.SEEK, time);
+            options.set(Option.SEEK, null);
+        } else {
+            currentInputOptions().set(Option.SEEK, null);
+            options.set(Option.SEEK, time);
+        }
+        return this;
+    }
+
+    private OptionSet currentInputOptions() {
+        if (inputs.isEmpty()) {
+            if (pendingInputOptions == null) {
+                pendingInputOptions = new OptionSet();
+            }
+            return pendingInputOptions;
+        }
+        return inputs.get(inputs.size() - 1).getOptions();
+    }
+
     /**
      * 设置视频编码器
      *
@@ -38,8 +191,7 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder videoCodec(String codec) {
-        commands.add("-c:v");
-        commands.add(codec);
+        options.set(Option.VIDEO_CODEC, codec);
         return this;
     }
 
@@ -50,8 +202,7 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder audioCodec(String codec) {
-        commands.add("-c:a");
-        commands.add(codec);
+        options.set(Option.AUDIO_CODEC, codec);
         return this;
     }
 
@@ -62,8 +213,7 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder videoBitRate(String bitrate) {
-        commands.add("-b:v");
-        commands.add(bitrate);
+        options.set(Option.VIDEO_BITRATE, bitrate);
         return this;
     }
 
@@ -74,8 +224,7 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder audioBitRate(String bitrate) {
-        commands.add("-b:a");
-        commands.add(bitrate);
+        options.set(Option.AUDIO_BITRATE, bitrate);
         return this;
     }
 
@@ -87,8 +236,62 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder resolution(int width, int height) {
-        commands.add("-s");
-        commands.add(width + "x" + height);
+        options.set(Option.RESOLUTION, width + "x" + height);
+        return this;
+    }
+
+    /**
+     * 设置简单视频滤镜链（-vf），可指定缩放算法，或将缩放、帧率、裁剪合并为一次处理
+     *
+     * @param filters 按顺序执行的滤镜
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder videoFilters(Filter... filters) {
+        FilterGraph graph = FilterGraph.create();
+        FilterGraph.Chain chain = graph.chain();
+        for (Filter filter : filters) {
+            chain.filter(filter);
+        }
+        options.set(Option.VIDEO_FILTER, graph.compile());
+        return this;
+    }
+
+    /**
+     * 设置复杂滤镜图（-filter_complex）
+     * 滤镜图在调用时编译，之后再修改 graph 不会影响本构建器；
+     * 带标签的输出需要通过 {@link #map(String)} 映射到输出文件
+     *
+     * @param graph 滤镜图
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder filterGraph(FilterGraph graph) {
+        filterComplex = graph.compile();
+        return this;
+    }
+
+    /**
+     * 设置滤镜脚本文件的存放目录和切换阈值
+     * 滤镜图描述长度超过阈值时，构建时写入该目录并使用 -filter_complex_script，
+     * 避免参数过长；内容相同的脚本只写一次
+     *
+     * @param dir       脚本目录（Android 上一般为 getCacheDir()）
+     * @param threshold 切换阈值（字符数）
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder filterScript(File dir, int threshold) {
+        filterScriptDir = dir;
+        filterScriptThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * 添加流映射（-map），可重复调用
+     *
+     * @param spec 流标识（如 0:a?）或滤镜图输出标签（如 [v]）
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder map(String spec) {
+        maps.add(spec);
         return this;
     }
 
@@ -99,8 +302,7 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder frameRate(int fps) {
-        commands.add("-r");
-        commands.add(String.valueOf(fps));
+        options.set(Option.FRAME_RATE, String.valueOf(fps));
         return this;
     }
 
@@ -111,8 +313,7 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder duration(String duration) {
-        commands.add("-t");
-        commands.add(duration);
+        options.set(Option.DURATION, duration);
         return this;
     }
 
@@ -123,16 +324,562 @@ public class FFmpegCommandBuilder {
      * @return 构建器实例
      */
     public FFmpegCommandBuilder output(String outputPath) {
-        commands.add(outputPath);
+        // 从流式输出切回文件时，去掉流式格式设置的 -f 和 -movflags，由扩展名决定封装格式
+        if (outputSink != null) {
+            options.remove("-f");
+            options.set(Option.MOVFLAGS, null);
+        }
+        output = outputPath;
+        outputSink = null;
+        // 先应用编码配置再设置输出时，按实际的封装格式调整 -movflags
+        if (profile != null) {
+            profile.applyMovflags(this);
+        }
+        return this;
+    }
+
+    /**
+     * 以流式格式输出到管道，由 Java 端边转码边读出，不生成临时文件
+     * 同时设置 -f 和 -movflags，之后应用的 {@link EncodingProfile} 不会再覆盖 -movflags
+     *
+     * @param sink   输出目标，需要读出数据时在 FFmpeg 启动后调用 {@link OutputSink#pump()}
+     * @param format 流式格式
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder output(OutputSink sink, StreamFormat format) {
+        options.set("-f", format.getFormat());
+        options.set(Option.MOVFLAGS, format.getMovflags());
+        output = sink.getUrl();
+        outputSink = sink;
+        return this;
+    }
+
+    /**
+     * 以 HLS / DASH 分段输出，转码过程中持续写出分段和播放列表，
+     * 配合 {@link com.bethena.ffmpegcmdbuilder.progress.SegmentLogParser} 可在每个分段写完时得到通知
+     * 需要在设置编码器之后调用，流复制时不会强制插入关键帧
+     *
+     * @param segmented 分段输出配置
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder output(SegmentedOutput segmented) {
+        segmented.applyTo(this);
+        output = segmented.getPlaylistPath();
+        outputSink = null;
+        return this;
+    }
+
+    /**
+     * 获取流式输出目标
+     *
+     * @return 通过 {@link #output(OutputSink, StreamFormat)} 设置的输出目标，输出到文件时为 null
+     */
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+
+    /**
+     * 添加一个带独立选项的输出，用于一次解码同时生成多个清晰度（ABR 阶梯）
+     * 构建器上设置的输出选项作为所有输出的默认值，作用域中设置的同名选项覆盖默认值；
+     * 若同时调用了 {@link #output(String)}，该输出排在最前面并只使用默认选项
+     *
+     * <pre>
+     * FFmpegCommandBuilder.create()
+     *         .input(input)
+     *         .videoCodec("h264")
+     *         .addOutput("1080.mp4", o -> o.resolution(1920, 1080).videoBitRate("5M"))
+     *         .addOutput("720.mp4", o -> o.resolution(1280, 720).videoBitRate("3M"))
+     *         .addOutput("360.mp4", o -> o.resolution(640, 360).videoBitRate("1M"));
+     * </pre>
+     *
+     * @param outputPath 输出文件路径
+     * @param config     设置该输出的选项
+     * @return 构建器实例
+     * @see FanOut
+     */
+    public FFmpegCommandBuilder addOutput(String outputPath, Consumer<OutputScope> config) {
+        OutputScope scope = new OutputScope(outputPath);
+        config.accept(scope);
+        outputs.add(scope);
+        return this;
+    }
+
+    /**
+     * 设置多个输出之间的分发方式，默认 {@link FanOut#AUTO}
+     *
+     * @param fanOut 分发方式
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder fanOut(FanOut fanOut) {
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * 设置类型化选项
+     *
+     * @param option 选项
+     * @param value  选项值，为 null 时移除该选项
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder option(Option option, String value) {
+        optionsFor(option).set(option, value);
         return this;
     }
 
+    /**
+     * 设置任意输出选项，同名选项后设置的值生效
+     * 参数名与某个 {@link Option} 相同时等同于设置该类型化选项
+     *
+     * @param flag  参数名（如 -preset）
+     * @param value 参数值，为 null 时表示无值开关（如 -an）
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder option(String flag, String value) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return option(option, value);
+        }
+        options.set(flag, value);
+        return this;
+    }
+
+    /**
+     * 设置任意全局选项（位于所有输入之前），同名选项后设置的值生效
+     *
+     * @param flag  参数名（如 -hide_banner）
+     * @param value 参数值，为 null 时表示无值开关
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder globalOption(String flag, String value) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return option(option, value);
+        }
+        globalOptions.set(flag, value);
+        return this;
+    }
+
+    /**
+     * 输出机器可读的进度（-progress），并关闭默认的统计行输出（-nostats）
+     * 进度为 key=value 格式，可交给 {@link com.bethena.ffmpegcmdbuilder.progress.ProgressParser} 解析
+     *
+     * @param url 进度输出地址（如 pipe:1 表示标准输出）
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder progress(String url) {
+        globalOptions.set(Option.PROGRESS, url);
+        globalOptions.set("-nostats", null);
+        return this;
+    }
+
+    /**
+     * 应用编码配置，按 CPU 核数和同时运行的任务数设置线程数等选项
+     *
+     * @param profile        编码配置
+     * @param concurrentJobs 同时运行的转码任务数
+     * @return 构建器实例
+     * @see EncodingProfile
+     */
+    public FFmpegCommandBuilder profile(EncodingProfile profile, int concurrentJobs) {
+        profile.applyTo(this, concurrentJobs);
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * 获取最近一次通过 {@link #profile(EncodingProfile, int)} 应用的编码配置，用于按配置分类统计
+     *
+     * @return 编码配置，未应用时为 null
+     */
+    public EncodingProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * 源文件的流已满足目标编码格式、分辨率、码率时改为流复制，省去重新编码
+     * 需在设置完目标选项之后调用
+     *
+     * @param info 源文件信息，由 {@link MediaProbe} 解析得到
+     * @return 构建器实例
+     * @see StreamCopyDecision
+     */
+    public FFmpegCommandBuilder copyCompliantStreams(MediaInfo info) {
+        StreamCopyDecision.decide(this, info).applyTo(this);
+        return this;
+    }
+
+    /**
+     * 移除选项
+     *
+     * @param flag 参数名
+     * @return 构建器实例
+     */
+    public FFmpegCommandBuilder removeOption(String flag) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return option(option, null);
+        }
+        globalOptions.remove(flag);
+        options.remove(flag);
+        return this;
+    }
+
+    /**
+     * 获取类型化选项的当前值
+     *
+     * @param option 选项
+     * @return 选项值，未设置时返回 null
+     */
+    public String get(Option option) {
+        return optionsFor(option).get(option);
+    }
+
+    /**
+     * 获取选项的当前值
+     *
+     * @param flag 参数名
+     * @return 选项值，未设置或为无值开关时返回 null
+     */
+    public String get(String flag) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return get(option);
+        }
+        String value = options.get(flag);
+        return value != null ? value : globalOptions.get(flag);
+    }
+
+    /**
+     * @return 是否设置了 -filter_complex 滤镜图
+     */
+    boolean hasFilterGraph() {
+        return filterComplex != null;
+    }
+
+    private OptionSet optionsFor(Option option) {
+        return option.getScope() == Option.Scope.GLOBAL ? globalOptions : options;
+    }
+
+    /**
+     * 获取已添加的输入文件
+     *
+     * @return 输入文件列表（只读）
+     */
+    public List<String> getInputs() {
+        List<String> paths = new ArrayList<>(inputs.size());
+        for (InputSpec input : inputs) {
+            paths.add(input.getPath());
+        }
+        return paths;
+    }
+
+    /**
+     * 获取需要在 FFmpeg 运行期间写入数据的输入来源
+     *
+     * @return 输入来源列表，按输入顺序排列
+     */
+    public List<InputSource> getInputSources() {
+        List<InputSource> sources = new ArrayList<>(0);
+        for (InputSpec input : inputs) {
+            InputSource source = input.getSource();
+            if (source != null && source.needsPump()) {
+                sources.add(source);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * 获取输出文件
+     *
+     * @return 输出文件路径，未设置时返回 null
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * 获取所有输出文件，包括 {@link #output(String)} 和 {@link #addOutput(String, Consumer)} 添加的
+     *
+     * @return 输出文件路径列表
+     */
+    public List<String> getOutputs() {
+        List<String> paths = new ArrayList<>(outputs.size() + 1);
+        if (output != null) {
+            paths.add(output);
+        }
+        for (OutputScope scope : outputs) {
+            paths.add(scope.getPath());
+        }
+        return paths;
+    }
+
+    /**
+     * 构建参数数组，可直接交给 FFmpegKit.executeWithArguments 等接口执行，
+     * 无需再拼接成字符串后重新切分，路径中含空格也不会被拆开
+     *
+     * @return FFmpeg参数数组
+     */
+    public String[] buildArgs() {
+        if (!outputs.isEmpty()) {
+            return buildMultiOutputArgs();
+        }
+        int count = 1 + globalOptions.argCount() + (filterComplex != null ? 2 : 0)
+                + maps.size() * 2 + options.argCount() + (output != null ? 1 : 0);
+        for (InputSpec input : inputs) {
+            count += input.argCount();
+        }
+        String[] args = new String[count];
+        int pos = 0;
+        args[pos++] = "-y"; // 默认覆盖输出文件
+        pos = globalOptions.appendTo(args, pos);
+        for (InputSpec input : inputs) {
+            pos = input.appendTo(args, pos);
+        }
+        if (filterComplex != null) {
+            pos = appendFilterComplex(args, pos, filterComplex);
+        }
+        pos = maps.appendTo(args, pos, "-map");
+        pos = options.appendTo(args, pos);
+        if (output != null) {
+            args[pos] = output;
+        }
+        return args;
+    }
+
+    private int appendFilterComplex(String[] args, int pos, String graph) {
+        if (graph.length() > filterScriptThreshold) {
+            args[pos++] = "-filter_complex_script";
+            args[pos++] = writeFilterScript(graph);
+        } else {
+            args[pos++] = "-filter_complex";
+            args[pos++] = graph;
+        }
+        return pos;
+    }
+
+    private String[] buildMultiOutputArgs() {
+        List<OutputScope> targets = new ArrayList<>(outputs.size() + 1);
+        if (output != null) {
+            targets.add(new OutputScope(output));
+        }
+        targets.addAll(outputs);
+        OptionSet[] effective = new OptionSet[targets.size()];
+        for (int i = 0; i < effective.length; i++) {
+            effective[i] = options.fork();
+            effective[i].putAll(targets.get(i).getOptions());
+        }
+        FanOut mode = fanOut == FanOut.AUTO ? chooseFanOut(effective) : fanOut;
+        if (mode == FanOut.SPLIT && filterComplex != null) {
+            throw new IllegalStateException("SPLIT 分发会生成 -filter_complex，不能与 filterGraph() 同时使用");
+        }
+        if (mode == FanOut.SPLIT && maps.size() > 0) {
+            throw new IllegalStateException("SPLIT 分发自行映射各分支的视频和 0:a?，不能与 map() 同时使用");
+        }
+
+        List<String> list = new ArrayList<>();
+        list.add("-y");
+        appendTo(list, globalOptions);
+        for (InputSpec input : inputs) {
+            appendTo(list, input.getOptions());
+            list.add("-i");
+            list.add(input.getPath());
+        }
+        String graph = mode == FanOut.SPLIT ? splitGraph(targets, effective) : filterComplex;
+        if (graph != null) {
+            String[] pair = new String[2];
+            appendFilterComplex(pair, 0, graph);
+            list.add(pair[0]);
+            list.add(pair[1]);
+        }
+        if (mode == FanOut.TEE) {
+            appendTee(list, targets, effective[0]);
+        } else {
+            for (int i = 0; i < targets.size(); i++) {
+                if (mode == FanOut.SPLIT) {
+                    list.add("-map");
+                    list.add("[v" + i + "]");
+                    list.add("-map");
+                    list.add("0:a?");
+                } else {
+                    for (String map : maps.asList()) {
+                        list.add("-map");
+                        list.add(map);
+                    }
+                }
+                appendTo(list, effective[i]);
+                if (targets.get(i).getFormat() != null) {
+                    list.add("-f");
+                    list.add(targets.get(i).getFormat());
+                }
+                list.add(targets.get(i).getPath());
+            }
+        }
+        return list.toArray(new String[0]);
+    }
+
+    private static FanOut chooseFanOut(OptionSet[] effective) {
+        boolean identical = effective.length > 1;
+        boolean geometryDiffers = false;
+        for (int i = 1; i < effective.length; i++) {
+            identical &= effective[i].contentEquals(effective[0]);
+            geometryDiffers |= !equals(effective[i].get(Option.RESOLUTION), effective[0].get(Option.RESOLUTION))
+                    || !equals(effective[i].get(Option.VIDEO_FILTER), effective[0].get(Option.VIDEO_FILTER));
+        }
+        if (identical) {
+            return FanOut.TEE;
+        }
+        return geometryDiffers ? FanOut.SPLIT : FanOut.SEPARATE;
+    }
+
+    /**
+     * 生成 split 滤镜图：公共的 -vf 放在 split 之前只做一次，各分支按自己的分辨率缩放，
+     * 对应的 -s、-vf 从各输出的选项中移除
+     */
+    private String splitGraph(List<OutputScope> targets, OptionSet[] effective) {
+        FilterGraph graph = FilterGraph.create();
+        FilterGraph.Chain head = graph.chain().in("0:v");
+        String common = options.get(Option.VIDEO_FILTER);
+        if (common != null) {
+            head.filter(Filter.raw(common));
+        }
+        head.filter(Filter.of("split").arg(String.valueOf(targets.size())));
+        for (int i = 0; i < targets.size(); i++) {
+            head.out("s" + i);
+            FilterGraph.Chain branch = graph.chain().in("s" + i);
+            String resolution = effective[i].get(Option.RESOLUTION);
+            if (resolution != null) {
+                int x = resolution.indexOf('x');
+                Filter scale = Filter.scale(Integer.parseInt(resolution.substring(0, x)),
+                        Integer.parseInt(resolution.substring(x + 1)));
+                String flags = targets.get(i).getScaleFlags();
+                branch.filter(flags != null ? scale.arg("flags", flags) : scale);
+                effective[i].set(Option.RESOLUTION, null);
+            }
+            String own = targets.get(i).getOptions().get(Option.VIDEO_FILTER);
+            if (own != null && !own.equals(common)) {
+                branch.filter(Filter.raw(own));
+            }
+            effective[i].set(Option.VIDEO_FILTER, null);
+            if (resolution == null && (own == null || own.equals(common))) {
+                branch.filter(Filter.of("null"));
+            }
+            branch.out("v" + i);
+        }
+        return graph.compile();
+    }
+
+    /**
+     * tee 模式：只编码一次，封装到多个目标
+     */
+    private void appendTee(List<String> list, List<OutputScope> targets, OptionSet encode) {
+        if (maps.size() == 0) {
+            list.add("-map");
+            list.add("0:v?");
+            list.add("-map");
+            list.add("0:a?");
+        } else {
+            for (String map : maps.asList()) {
+                list.add("-map");
+                list.add(map);
+            }
+        }
+        appendTo(list, encode);
+        // mp4、flv 等格式需要全局头，编码器在 tee 下无法得知，需显式开启
+        list.add("-flags");
+        list.add("+global_header");
+        list.add("-f");
+        list.add("tee");
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < targets.size(); i++) {
+            if (i > 0) {
+                spec.append('|');
+            }
+            OutputScope target = targets.get(i);
+            if (target.getFormat() != null) {
+                spec.append("[f=").append(target.getFormat()).append(']');
+            }
+            String path = target.getPath();
+            for (int j = 0; j < path.length(); j++) {
+                char c = path.charAt(j);
+                if (c == '\\' || c == '|' || c == '[' || c == ']') {
+                    spec.append('\\');
+                }
+                spec.append(c);
+            }
+        }
+        list.add(spec.toString());
+    }
+
+    private static void appendTo(List<String> list, OptionSet set) {
+        String[] args = new String[set.argCount()];
+        set.appendTo(args, 0);
+        for (String arg : args) {
+            list.add(arg);
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private String writeFilterScript(String graph) {
+        File dir = filterScriptDir != null ? filterScriptDir : new File(System.getProperty("java.io.tmpdir"));
+        byte[] content = graph.getBytes(StandardCharsets.UTF_8);
+        // 按内容命名，同一滤镜图多次构建时复用同一个文件
+        File script = new File(dir, "filter_complex_" + sha256Hex(content) + ".txt");
+        if (script.length() == content.length) {
+            return script.getAbsolutePath();
+        }
+        File temp = new File(dir, script.getName() + "." + System.nanoTime() + ".tmp");
+        try (OutputStream os = new FileOutputStream(temp)) {
+            os.write(content);
+        } catch (IOException e) {
+            temp.delete();
+            throw new UncheckedIOException("写入滤镜脚本失败: " + temp, e);
+        }
+        if (!temp.renameTo(script)) {
+            temp.delete();
+            if (script.length() != content.length) {
+                throw new UncheckedIOException(new IOException("写入滤镜脚本失败: " + script));
+            }
+        }
+        return script.getAbsolutePath();
+    }
+
+    private static String sha256Hex(byte[] content) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 编译为命令模板，用于批量生成只有路径等少量参数不同的命令
+     *
+     * @return 命令模板
+     * @see CommandTemplate
+     */
+    public CommandTemplate compile() {
+        return CommandTemplate.compile(this);
+    }
+
     /**
      * 构建最终的FFmpeg命令字符串
+     * 含空格或引号的参数会被加上引号，可被 FFmpegKit 正确解析
      *
      * @return FFmpeg命令字符串
+     * @see CommandSerializer#toFFmpegKitCommand(String[])
      */
     public String build() {
-        return String.join(" ", commands);
+        return CommandSerializer.toFFmpegKitCommand(buildArgs());
     }
-}
\ No newline at end of file
+}
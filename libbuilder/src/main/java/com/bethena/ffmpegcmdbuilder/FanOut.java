@@ -0,0 +1,24 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * 多个输出共用一次解码时的分发方式
+ */
+public enum FanOut {
+    /**
+     * 自动选择：所有输出的编码选项相同时用 TEE，分辨率或视频滤镜不同时用 SPLIT，否则用 SEPARATE
+     */
+    AUTO,
+    /**
+     * 用 split 滤镜把解码后的画面分成多路，每路各自缩放、编码；
+     * 各输出固定映射本路画面和 0:a?，不能与 filterGraph()、map() 同时使用
+     */
+    SPLIT,
+    /**
+     * 只编码一次，用 tee 封装器写入多个目标（如本地文件 + 推流地址）
+     */
+    TEE,
+    /**
+     * 每个输出各带完整的选项，同一进程内仍只解码一次
+     */
+    SEPARATE
+}
@@ -0,0 +1,228 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个 FFmpeg 滤镜（如 scale、fps、crop）
+ * 参数值会按滤镜图的两级转义规则自动转义，表达式中的逗号、冒号可以直接写
+ */
+public final class Filter {
+
+    private final String name;
+    /**
+     * 按 [参数名, 参数值] 依次平铺存放，参数名为 null 表示按位置传参
+     */
+    private final List<String> args;
+    private final String raw;
+
+    private Filter(String name, List<String> args, String raw) {
+        this.name = name;
+        this.args = args;
+        this.raw = raw;
+    }
+
+    /**
+     * 创建无参数滤镜
+     *
+     * @param name 滤镜名称
+     * @return 滤镜
+     */
+    public static Filter of(String name) {
+        return new Filter(name, Collections.<String>emptyList(), null);
+    }
+
+    /**
+     * 使用已转义好的滤镜描述创建滤镜，内容原样输出
+     *
+     * @param description 滤镜描述（如 scale=640:-2）
+     * @return 滤镜
+     */
+    public static Filter raw(String description) {
+        int eq = description.indexOf('=');
+        String name = eq < 0 ? description : description.substring(0, eq);
+        return new Filter(name, Collections.<String>emptyList(), description);
+    }
+
+    /**
+     * 缩放
+     *
+     * @param width  宽度，-1/-2 表示按比例
+     * @param height 高度，-1/-2 表示按比例
+     * @return 滤镜
+     */
+    public static Filter scale(int width, int height) {
+        return of("scale").arg("w", String.valueOf(width)).arg("h", String.valueOf(height));
+    }
+
+    /**
+     * 缩放并指定缩放算法
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @param flags  缩放算法（如 bicubic、lanczos、fast_bilinear）
+     * @return 滤镜
+     */
+    public static Filter scale(int width, int height, String flags) {
+        return scale(width, height).arg("flags", flags);
+    }
+
+    /**
+     * 转换帧率
+     *
+     * @param fps 帧率
+     * @return 滤镜
+     */
+    public static Filter fps(int fps) {
+        return of("fps").arg("fps", String.valueOf(fps));
+    }
+
+    /**
+     * 裁剪画面
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @param x      左上角 x
+     * @param y      左上角 y
+     * @return 滤镜
+     */
+    public static Filter crop(int width, int height, int x, int y) {
+        return of("crop").arg("w", String.valueOf(width)).arg("h", String.valueOf(height))
+                .arg("x", String.valueOf(x)).arg("y", String.valueOf(y));
+    }
+
+    /**
+     * 添加命名参数，返回新的滤镜
+     *
+     * @param key   参数名
+     * @param value 参数值（未转义）
+     * @return 新的滤镜
+     */
+    public Filter arg(String key, String value) {
+        if (raw != null) {
+            throw new IllegalStateException("raw 滤镜不能再追加参数");
+        }
+        List<String> list = new ArrayList<>(args.size() + 2);
+        list.addAll(args);
+        list.add(key);
+        list.add(value);
+        return new Filter(name, list, null);
+    }
+
+    /**
+     * 添加按位置传递的参数，返回新的滤镜
+     *
+     * @param value 参数值（未转义）
+     * @return 新的滤镜
+     */
+    public Filter arg(String value) {
+        return arg(null, value);
+    }
+
+    /**
+     * 获取滤镜名称
+     *
+     * @return 滤镜名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 是否为只设置了宽高的 scale；带 flags、in_range/out_range、out_color_matrix、interl、
+     * force_original_aspect_ratio 等参数的 scale 还会改变色彩范围、矩阵或缩放方式，不能视为单纯的缩放
+     */
+    boolean isPlainScale() {
+        return raw == null && "scale".equals(name) && size() != null;
+    }
+
+    /**
+     * 是否为只设置了宽高且宽高都是固定像素值的 scale，此时它的输出与输入尺寸无关，
+     * 紧挨在它前面的单纯缩放是多余的
+     */
+    boolean isAbsoluteScale() {
+        String[] size = isPlainScale() ? size() : null;
+        return size != null && isPositiveInt(size[0]) && isPositiveInt(size[1]);
+    }
+
+    /**
+     * @return [宽, 高]，有宽高以外的参数时返回 null
+     */
+    private String[] size() {
+        String[] size = new String[2];
+        int positional = 0;
+        for (int i = 0; i < args.size(); i += 2) {
+            String key = args.get(i);
+            String value = args.get(i + 1);
+            if (key == null) {
+                if (positional > 1) {
+                    return null;
+                }
+                size[positional++] = value;
+            } else if ("w".equals(key) || "width".equals(key)) {
+                size[0] = value;
+            } else if ("h".equals(key) || "height".equals(key)) {
+                size[1] = value;
+            } else {
+                return null;
+            }
+        }
+        return size;
+    }
+
+    private static boolean isPositiveInt(String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return !value.startsWith("0");
+    }
+
+    void appendTo(StringBuilder sb) {
+        if (raw != null) {
+            sb.append(raw);
+            return;
+        }
+        sb.append(name);
+        if (args.isEmpty()) {
+            return;
+        }
+        // 第一级转义：滤镜参数内的 ' \ :；第二级转义：滤镜图中的 ' \ [ ] , ;
+        StringBuilder options = new StringBuilder();
+        for (int i = 0; i < args.size(); i += 2) {
+            if (i > 0) {
+                options.append(':');
+            }
+            String key = args.get(i);
+            if (key != null) {
+                options.append(key).append('=');
+            }
+            escape(options, args.get(i + 1), "'\\:");
+        }
+        sb.append('=');
+        escape(sb, options, "'\\[],;");
+    }
+
+    private static void escape(StringBuilder sb, CharSequence value, String specials) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (specials.indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+}
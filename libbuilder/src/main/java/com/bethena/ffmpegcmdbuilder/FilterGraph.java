@@ -0,0 +1,176 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 滤镜图，编译为 -filter_complex 的描述字符串
+ * 编译时会把首尾相接、中间标签只被使用一次的滤镜链合并为一条链，
+ * 并去掉紧挨在固定尺寸 scale 之前的多余 scale
+ *
+ * <pre>
+ * FilterGraph graph = FilterGraph.create();
+ * graph.chain().in("0:v").filter(Filter.crop(1280, 720, 0, 0)).out("c");
+ * graph.chain().in("c").filter(Filter.scale(640, 360, "lanczos")).filter(Filter.fps(30)).out("v");
+ * // 编译结果：[0:v]crop=...,scale=...,fps=...[v]
+ * </pre>
+ */
+public final class FilterGraph {
+
+    private final List<Chain> chains = new ArrayList<>();
+
+    private FilterGraph() {
+    }
+
+    public static FilterGraph create() {
+        return new FilterGraph();
+    }
+
+    /**
+     * 添加一条滤镜链
+     *
+     * @return 新的滤镜链
+     */
+    public Chain chain() {
+        Chain chain = new Chain();
+        chains.add(chain);
+        return chain;
+    }
+
+    /**
+     * 编译为滤镜图描述
+     *
+     * @return 滤镜图描述，可直接作为 -filter_complex 的参数
+     */
+    public String compile() {
+        List<Chain> fused = fuse();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fused.size(); i++) {
+            if (i > 0) {
+                sb.append(';');
+            }
+            fused.get(i).appendTo(sb);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return compile();
+    }
+
+    private List<Chain> fuse() {
+        List<Chain> result = new ArrayList<>(chains.size());
+        for (Chain chain : chains) {
+            result.add(chain.copy());
+        }
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < result.size() && !merged; i++) {
+                Chain head = result.get(i);
+                if (head.outputs.size() != 1 || head.filters.isEmpty()) {
+                    continue;
+                }
+                String label = head.outputs.get(0);
+                Chain tail = null;
+                int uses = 0;
+                for (Chain other : result) {
+                    int count = Collections.frequency(other.inputs, label);
+                    if (count > 0) {
+                        uses += count;
+                        tail = other;
+                    }
+                }
+                if (uses == 1 && tail != head && tail.inputs.size() == 1 && !tail.filters.isEmpty()) {
+                    head.filters.addAll(tail.filters);
+                    head.outputs.clear();
+                    head.outputs.addAll(tail.outputs);
+                    result.remove(tail);
+                    merged = true;
+                }
+            }
+        }
+        for (Chain chain : result) {
+            chain.dropRedundantScales();
+        }
+        return result;
+    }
+
+    /**
+     * 滤镜链：[输入标签]滤镜1,滤镜2,...[输出标签]
+     */
+    public static final class Chain {
+        private final List<String> inputs = new ArrayList<>(1);
+        private final List<Filter> filters = new ArrayList<>();
+        private final List<String> outputs = new ArrayList<>(1);
+
+        private Chain() {
+        }
+
+        /**
+         * 添加输入标签
+         *
+         * @param label 标签（如 0:v 或前一条链的输出标签），不含方括号
+         * @return 滤镜链实例
+         */
+        public Chain in(String label) {
+            inputs.add(label);
+            return this;
+        }
+
+        /**
+         * 追加滤镜
+         *
+         * @param filter 滤镜
+         * @return 滤镜链实例
+         */
+        public Chain filter(Filter filter) {
+            filters.add(filter);
+            return this;
+        }
+
+        /**
+         * 添加输出标签
+         *
+         * @param label 标签，不含方括号
+         * @return 滤镜链实例
+         */
+        public Chain out(String label) {
+            outputs.add(label);
+            return this;
+        }
+
+        private Chain copy() {
+            Chain copy = new Chain();
+            copy.inputs.addAll(inputs);
+            copy.filters.addAll(filters);
+            copy.outputs.addAll(outputs);
+            return copy;
+        }
+
+        private void dropRedundantScales() {
+            for (int i = filters.size() - 2; i >= 0; i--) {
+                if (filters.get(i).isPlainScale() && filters.get(i + 1).isAbsoluteScale()) {
+                    filters.remove(i);
+                }
+            }
+        }
+
+        private void appendTo(StringBuilder sb) {
+            for (String label : inputs) {
+                sb.append('[').append(label).append(']');
+            }
+            for (int i = 0; i < filters.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                filters.get(i).appendTo(sb);
+            }
+            for (String label : outputs) {
+                sb.append('[').append(label).append(']');
+            }
+        }
+    }
+}
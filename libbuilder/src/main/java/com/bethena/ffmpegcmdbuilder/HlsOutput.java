@@ -0,0 +1,202 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * HLS 输出
+ *
+ * <pre>
+ * builder.output(HlsOutput.create("/sdcard/live/index.m3u8")
+ *         .segmentDuration(4)
+ *         .playlistType(HlsOutput.PlaylistType.EVENT));
+ * </pre>
+ */
+public final class HlsOutput extends SegmentedOutput {
+
+    /**
+     * 播放列表类型
+     */
+    public enum PlaylistType {
+        /**
+         * 点播：转码结束后列表完整，写入 #EXT-X-ENDLIST
+         */
+        VOD("vod"),
+        /**
+         * 事件：转码过程中只追加分段，播放器可以从头开始边转边播
+         */
+        EVENT("event"),
+        /**
+         * 直播：滑动窗口，只保留最近的若干分段，旧分段会被删除
+         */
+        LIVE(null);
+
+        private final String value;
+
+        PlaylistType(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 分段容器
+     */
+    public enum SegmentType {
+        /**
+         * MPEG-TS 分段，兼容性最好
+         */
+        MPEG_TS("mpegts", ".ts"),
+        /**
+         * 分片 MP4 分段，可与 DASH 共用，HEVC 需要使用这种分段
+         */
+        FMP4("fmp4", ".m4s");
+
+        private final String value;
+        private final String extension;
+
+        SegmentType(String value, String extension) {
+            this.value = value;
+            this.extension = extension;
+        }
+    }
+
+    private PlaylistType playlistType = PlaylistType.EVENT;
+    private SegmentType segmentType = SegmentType.MPEG_TS;
+    private String segmentFilename;
+    private int listSize = 5;
+    private boolean independentSegments = true;
+
+    private HlsOutput(String playlistPath) {
+        super(playlistPath);
+    }
+
+    /**
+     * 创建 HLS 输出
+     *
+     * @param playlistPath m3u8 播放列表路径
+     * @return HLS 输出
+     */
+    public static HlsOutput create(String playlistPath) {
+        return new HlsOutput(playlistPath);
+    }
+
+    /**
+     * 设置分段时长（-hls_time），默认 6 秒
+     *
+     * @param seconds 秒数
+     * @return HLS 输出
+     */
+    public HlsOutput segmentDuration(double seconds) {
+        checkDuration(seconds);
+        segmentDuration = seconds;
+        return this;
+    }
+
+    /**
+     * 设置播放列表类型，默认 EVENT
+     *
+     * @param type 播放列表类型
+     * @return HLS 输出
+     */
+    public HlsOutput playlistType(PlaylistType type) {
+        playlistType = type;
+        return this;
+    }
+
+    /**
+     * 设置分段容器，默认 MPEG-TS
+     *
+     * @param type 分段容器
+     * @return HLS 输出
+     */
+    public HlsOutput segmentType(SegmentType type) {
+        segmentType = type;
+        return this;
+    }
+
+    /**
+     * 设置分段文件名模板（-hls_segment_filename），默认为播放列表同名加 _%05d 序号
+     *
+     * @param pattern 文件名模板，如 /sdcard/live/seg_%05d.ts
+     * @return HLS 输出
+     */
+    public HlsOutput segmentFilename(String pattern) {
+        segmentFilename = pattern;
+        return this;
+    }
+
+    /**
+     * 设置直播模式下播放列表保留的分段数，默认 5
+     *
+     * @param size 分段数
+     * @return HLS 输出
+     */
+    public HlsOutput listSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("分段数必须大于 0");
+        }
+        listSize = size;
+        return this;
+    }
+
+    /**
+     * 是否声明每个分段都从关键帧开始（#EXT-X-INDEPENDENT-SEGMENTS），默认开启
+     * 播放器可以从任意分段开始解码，起播和跳转更快
+     *
+     * @param independent 是否开启
+     * @return HLS 输出
+     */
+    public HlsOutput independentSegments(boolean independent) {
+        independentSegments = independent;
+        return this;
+    }
+
+    /**
+     * 是否按分段时长强制插入关键帧，默认开启
+     *
+     * @param align 是否开启
+     * @return HLS 输出
+     */
+    public HlsOutput alignKeyframes(boolean align) {
+        alignKeyframes = align;
+        return this;
+    }
+
+    @Override
+    void applyTo(FFmpegCommandBuilder builder) {
+        applyKeyframes(builder);
+        builder.option("-f", "hls")
+                .option("-hls_time", seconds(segmentDuration))
+                .option("-hls_list_size", playlistType == PlaylistType.LIVE ? String.valueOf(listSize) : "0")
+                .option("-hls_segment_type", segmentType.value)
+                .option("-hls_segment_filename", segmentFilename != null
+                        ? segmentFilename : baseName() + "_%05d" + segmentType.extension);
+        // 直播模式不写 -hls_playlist_type，由 -hls_list_size 控制滑动窗口
+        if (playlistType.value != null) {
+            builder.option("-hls_playlist_type", playlistType.value);
+        } else {
+            builder.removeOption("-hls_playlist_type");
+        }
+        if (segmentType == SegmentType.FMP4) {
+            builder.option("-hls_fmp4_init_filename", fileName(baseName()) + "_init.mp4");
+        } else {
+            builder.removeOption("-hls_fmp4_init_filename");
+        }
+        // temp_file：分段写完后才改名，对外提供的分段总是完整的
+        StringBuilder flags = new StringBuilder("temp_file");
+        if (independentSegments) {
+            flags.append("+independent_segments");
+        }
+        if (playlistType == PlaylistType.LIVE) {
+            flags.append("+delete_segments");
+        }
+        builder.option("-hls_flags", flags.toString());
+        // 分段格式不支持 -movflags，由 hls 复用器自行处理
+        builder.option(Option.MOVFLAGS, null);
+    }
+
+    /**
+     * init 文件名相对于播放列表所在目录
+     */
+    private static String fileName(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return path.substring(slash + 1);
+    }
+}
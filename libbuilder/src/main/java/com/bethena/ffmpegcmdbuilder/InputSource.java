@@ -0,0 +1,190 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 输入来源
+ * 除文件路径外，还可以是已打开的文件描述符、管道或任意可读通道，FFmpeg 直接读取来源数据，
+ * 不需要先把整个文件复制到缓存目录
+ *
+ * <pre>
+ * // 文件描述符（如 ParcelFileDescriptor.getFd()），可随机访问，moov 在文件尾的 mp4 也能读取
+ * builder.input(InputSource.fileDescriptor(pfd.getFd()));
+ * // 通道：FFmpeg 从命名管道读取，另一个线程调用 pump() 写入
+ * InputSource source = InputSource.channel(Channels.newChannel(in), fifo);
+ * builder.input(source);
+ * </pre>
+ */
+public abstract class InputSource {
+
+    /**
+     * 通道输入默认的缓冲区大小
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    InputSource() {
+    }
+
+    /**
+     * 文件路径
+     *
+     * @param path 文件路径
+     * @return 输入来源
+     */
+    public static InputSource file(String path) {
+        return url(path);
+    }
+
+    /**
+     * FFmpeg 能识别的任意地址（如 FFmpegKitConfig.getSafParameterForRead 返回的 saf:N.mp4、http 地址）
+     *
+     * @param url 地址
+     * @return 输入来源
+     */
+    public static InputSource url(String url) {
+        return new UrlSource(url);
+    }
+
+    /**
+     * 本进程中已打开的文件描述符，通过 /proc/self/fd 读取，保留随机访问能力
+     * 只适用于与 FFmpeg 在同一进程中运行的执行器（如 FFmpegKit），描述符在 FFmpeg 结束前不能关闭
+     *
+     * @param fd 文件描述符
+     * @return 输入来源
+     */
+    public static InputSource fileDescriptor(int fd) {
+        if (fd < 0) {
+            throw new IllegalArgumentException("非法的文件描述符: " + fd);
+        }
+        return new UrlSource("/proc/self/fd/" + fd);
+    }
+
+    /**
+     * 管道（pipe:N），顺序读取，不支持随机访问，适合 mpegts、flv 或 moov 在文件头的 mp4
+     *
+     * @param fd 文件描述符，0 表示标准输入
+     * @return 输入来源
+     */
+    public static InputSource pipe(int fd) {
+        if (fd < 0) {
+            throw new IllegalArgumentException("非法的文件描述符: " + fd);
+        }
+        return new UrlSource("pipe:" + fd);
+    }
+
+    /**
+     * 通过命名管道把通道中的数据交给 FFmpeg，FFmpeg 启动后需在另一个线程调用 {@link #pump()}
+     * 命名管道可由 FFmpegKitConfig.registerNewFFmpegPipe 或 mkfifo 创建
+     *
+     * @param source    数据来源
+     * @param namedPipe 命名管道
+     * @return 输入来源
+     */
+    public static InputSource channel(ReadableByteChannel source, File namedPipe) {
+        return new ChannelSource(source, namedPipe.getAbsolutePath(), null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 把通道中的数据写入另一个通道（如本地进程的标准输入），FFmpeg 从 url 读取
+     *
+     * @param source 数据来源
+     * @param sink   FFmpeg 读取端对应的写入通道
+     * @param url    FFmpeg 读取的地址（如 pipe:0）
+     * @return 输入来源
+     */
+    public static InputSource channel(ReadableByteChannel source, WritableByteChannel sink, String url) {
+        return new ChannelSource(source, url, sink, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 获取传给 -i 的地址
+     *
+     * @return 地址
+     */
+    public abstract String getUrl();
+
+    /**
+     * 是否需要在 FFmpeg 运行期间调用 {@link #pump()} 写入数据
+     *
+     * @return 需要写入时返回 true
+     */
+    public boolean needsPump() {
+        return false;
+    }
+
+    /**
+     * 把数据写给 FFmpeg，阻塞到来源读完为止，完成后关闭来源和写入端
+     * 每个来源只能写入一次；FFmpeg 提前结束（如设置了 -t）时抛出 IOException
+     *
+     * @return 写入的字节数
+     * @throws IOException 读写失败时
+     */
+    public long pump() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return getUrl();
+    }
+
+    private static final class UrlSource extends InputSource {
+        private final String url;
+
+        UrlSource(String url) {
+            if (url == null || url.isEmpty()) {
+                throw new IllegalArgumentException("输入地址不能为空");
+            }
+            this.url = url;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    private static final class ChannelSource extends InputSource {
+        private final ReadableByteChannel source;
+        private final String url;
+        private final WritableByteChannel sink;
+        private final int bufferSize;
+        private boolean pumped;
+
+        ChannelSource(ReadableByteChannel source, String url, WritableByteChannel sink, int bufferSize) {
+            this.source = source;
+            this.url = url;
+            this.sink = sink;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public boolean needsPump() {
+            return true;
+        }
+
+        @Override
+        public long pump() throws IOException {
+            synchronized (this) {
+                if (pumped) {
+                    throw new IllegalStateException("通道输入只能写入一次");
+                }
+                pumped = true;
+            }
+            // 打开命名管道的写入端会阻塞到 FFmpeg 打开读取端为止
+            try (ReadableByteChannel in = source;
+                 WritableByteChannel out = sink != null ? sink : new FileOutputStream(url).getChannel()) {
+                return ChannelPump.pump(in, out, bufferSize);
+            }
+        }
+    }
+}
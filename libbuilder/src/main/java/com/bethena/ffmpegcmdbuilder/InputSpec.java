@@ -0,0 +1,47 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * 单个输入及其输入选项（位于对应 -i 之前）
+ */
+final class InputSpec {
+
+    private final String path;
+    private final OptionSet options;
+    private final InputSource source;
+
+    InputSpec(String path, OptionSet options, InputSource source) {
+        this.path = path;
+        this.options = options;
+        this.source = source;
+    }
+
+    InputSpec fork() {
+        return new InputSpec(path, options.fork(), source);
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @return 通过 {@link InputSource} 添加时为该来源，否则为 null
+     */
+    InputSource getSource() {
+        return source;
+    }
+
+    OptionSet getOptions() {
+        return options;
+    }
+
+    int argCount() {
+        return options.argCount() + 2;
+    }
+
+    int appendTo(String[] out, int pos) {
+        pos = options.appendTo(out, pos);
+        out[pos++] = "-i";
+        out[pos++] = path;
+        return pos;
+    }
+}
@@ -0,0 +1,95 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * 构建器支持的类型化选项
+ * 每个选项在构建器中只占一个位置，重复设置时后设置的值覆盖先前的值；
+ * 生成命令时按此处声明的顺序输出。作用范围为 OUTPUT 的选项（如 -ss、-t）也可以作为输入选项
+ * 通过 {@link FFmpegCommandBuilder#inputOption(Option, String)} 放到某个输入之前
+ */
+public enum Option {
+    PROGRESS("-progress", Scope.GLOBAL),
+    FILTER_THREADS("-filter_threads", Scope.GLOBAL),
+    FILTER_COMPLEX_THREADS("-filter_complex_threads", Scope.GLOBAL),
+    SEEK("-ss"),
+    VIDEO_CODEC("-c:v"),
+    AUDIO_CODEC("-c:a"),
+    VIDEO_BITRATE("-b:v"),
+    AUDIO_BITRATE("-b:a"),
+    RESOLUTION("-s"),
+    FRAME_RATE("-r"),
+    VIDEO_FILTER("-vf"),
+    DURATION("-t"),
+    PRESET("-preset"),
+    TUNE("-tune"),
+    THREADS("-threads"),
+    MOVFLAGS("-movflags");
+
+    /**
+     * 选项作用范围，决定选项在命令中的位置
+     */
+    public enum Scope {
+        /**
+         * 全局选项，位于所有输入之前
+         */
+        GLOBAL,
+        /**
+         * 输出选项，位于输出文件之前
+         */
+        OUTPUT
+    }
+
+    private static final Option[] VALUES = values();
+
+    private final String flag;
+    private final Scope scope;
+
+    Option(String flag) {
+        this(flag, Scope.OUTPUT);
+    }
+
+    Option(String flag, Scope scope) {
+        this.flag = flag;
+        this.scope = scope;
+    }
+
+    /**
+     * 获取命令行参数名
+     *
+     * @return 参数名（如 -c:v）
+     */
+    public String getFlag() {
+        return flag;
+    }
+
+    /**
+     * 获取作用范围
+     *
+     * @return 作用范围
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * 根据命令行参数名查找选项
+     *
+     * @param flag 参数名
+     * @return 对应的选项，不存在时返回 null
+     */
+    public static Option fromFlag(String flag) {
+        for (Option option : VALUES) {
+            if (option.flag.equals(flag)) {
+                return option;
+            }
+        }
+        return null;
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+
+    static Option at(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,204 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.Arrays;
+
+/**
+ * 按槽位保存的选项集合
+ * 类型化选项按 {@link Option} 序号存放，其余选项按参数名去重后按插入顺序存放；
+ * {@link #fork()} 只共享底层数组，任何一方首次修改时才复制（写时复制）
+ */
+final class OptionSet {
+
+    private String[] values;
+    /**
+     * 自定义选项，按 [参数名, 参数值] 依次平铺存放，参数值为 null 表示无值开关（如 -an）
+     */
+    private String[] extras;
+    private int extraCount;
+    private int typedCount;
+    private boolean shared;
+
+    OptionSet() {
+        values = new String[Option.count()];
+        extras = new String[0];
+    }
+
+    private OptionSet(OptionSet source) {
+        values = source.values;
+        extras = source.extras;
+        extraCount = source.extraCount;
+        typedCount = source.typedCount;
+        shared = true;
+        source.shared = true;
+    }
+
+    /**
+     * 派生一个共享底层数据的副本
+     *
+     * @return 副本
+     */
+    OptionSet fork() {
+        return new OptionSet(this);
+    }
+
+    String get(Option option) {
+        return values[option.ordinal()];
+    }
+
+    void set(Option option, String value) {
+        int index = option.ordinal();
+        String old = values[index];
+        if (old == null ? value == null : old.equals(value)) {
+            return;
+        }
+        unshare();
+        values[index] = value;
+        if (old == null) {
+            typedCount++;
+        } else if (value == null) {
+            typedCount--;
+        }
+    }
+
+    String get(String flag) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return get(option);
+        }
+        int index = indexOfExtra(flag);
+        return index < 0 ? null : extras[index + 1];
+    }
+
+    boolean contains(String flag) {
+        Option option = Option.fromFlag(flag);
+        return option != null ? get(option) != null : indexOfExtra(flag) >= 0;
+    }
+
+    void set(String flag, String value) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            set(option, value);
+            return;
+        }
+        unshare();
+        int index = indexOfExtra(flag);
+        if (index >= 0) {
+            extras[index + 1] = value;
+            return;
+        }
+        if (extraCount * 2 == extras.length) {
+            extras = Arrays.copyOf(extras, Math.max(8, extras.length * 2));
+        }
+        extras[extraCount * 2] = flag;
+        extras[extraCount * 2 + 1] = value;
+        extraCount++;
+    }
+
+    void remove(String flag) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            set(option, null);
+            return;
+        }
+        int index = indexOfExtra(flag);
+        if (index < 0) {
+            return;
+        }
+        unshare();
+        System.arraycopy(extras, index + 2, extras, index, extraCount * 2 - index - 2);
+        extraCount--;
+        extras[extraCount * 2] = null;
+        extras[extraCount * 2 + 1] = null;
+    }
+
+    /**
+     * 用另一个集合中已设置的选项覆盖本集合的同名选项
+     *
+     * @param other 另一个集合
+     */
+    void putAll(OptionSet other) {
+        for (int i = 0; i < other.values.length; i++) {
+            if (other.values[i] != null) {
+                set(Option.at(i), other.values[i]);
+            }
+        }
+        for (int i = 0; i < other.extraCount; i++) {
+            set(other.extras[i * 2], other.extras[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * 是否与另一个集合的选项完全相同（自定义选项需顺序一致）
+     *
+     * @param other 另一个集合
+     * @return 是否相同
+     */
+    boolean contentEquals(OptionSet other) {
+        if (!Arrays.equals(values, other.values) || extraCount != other.extraCount) {
+            return false;
+        }
+        for (int i = 0; i < extraCount * 2; i++) {
+            String a = extras[i];
+            String b = other.extras[i];
+            if (a == null ? b != null : !a.equals(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成命令时占用的参数个数
+     *
+     * @return 参数个数
+     */
+    int argCount() {
+        int count = typedCount * 2;
+        for (int i = 0; i < extraCount; i++) {
+            count += extras[i * 2 + 1] == null ? 1 : 2;
+        }
+        return count;
+    }
+
+    /**
+     * 将选项写入参数数组
+     *
+     * @param out 参数数组
+     * @param pos 起始位置
+     * @return 写入后的下一个位置
+     */
+    int appendTo(String[] out, int pos) {
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value != null) {
+                out[pos++] = Option.at(i).getFlag();
+                out[pos++] = value;
+            }
+        }
+        for (int i = 0; i < extraCount; i++) {
+            out[pos++] = extras[i * 2];
+            String value = extras[i * 2 + 1];
+            if (value != null) {
+                out[pos++] = value;
+            }
+        }
+        return pos;
+    }
+
+    private int indexOfExtra(String flag) {
+        for (int i = 0; i < extraCount; i++) {
+            if (extras[i * 2].equals(flag)) {
+                return i * 2;
+            }
+        }
+        return -1;
+    }
+
+    private void unshare() {
+        if (shared) {
+            values = values.clone();
+            extras = extras.clone();
+            shared = false;
+        }
+    }
+}
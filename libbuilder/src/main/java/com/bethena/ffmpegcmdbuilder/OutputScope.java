@@ -0,0 +1,160 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * 单个输出的选项作用域
+ * 通过 {@link FFmpegCommandBuilder#addOutput(String, java.util.function.Consumer)} 添加，
+ * 这里设置的选项只作用于该输出，并覆盖构建器上设置的同名默认选项
+ */
+public final class OutputScope {
+
+    private final String path;
+    private OptionSet options;
+    private String format;
+    private String scaleFlags;
+
+    OutputScope(String path) {
+        this.path = path;
+        this.options = new OptionSet();
+    }
+
+    private OutputScope(OutputScope source) {
+        path = source.path;
+        options = source.options.fork();
+        format = source.format;
+        scaleFlags = source.scaleFlags;
+    }
+
+    OutputScope fork() {
+        return new OutputScope(this);
+    }
+
+    /**
+     * 设置视频编码器
+     *
+     * @param codec 编码器名称
+     * @return 作用域实例
+     */
+    public OutputScope videoCodec(String codec) {
+        options.set(Option.VIDEO_CODEC, codec);
+        return this;
+    }
+
+    /**
+     * 设置音频编码器
+     *
+     * @param codec 编码器名称
+     * @return 作用域实例
+     */
+    public OutputScope audioCodec(String codec) {
+        options.set(Option.AUDIO_CODEC, codec);
+        return this;
+    }
+
+    /**
+     * 设置视频比特率
+     *
+     * @param bitrate 比特率（如 "2M"）
+     * @return 作用域实例
+     */
+    public OutputScope videoBitRate(String bitrate) {
+        options.set(Option.VIDEO_BITRATE, bitrate);
+        return this;
+    }
+
+    /**
+     * 设置音频比特率
+     *
+     * @param bitrate 比特率（如 "128k"）
+     * @return 作用域实例
+     */
+    public OutputScope audioBitRate(String bitrate) {
+        options.set(Option.AUDIO_BITRATE, bitrate);
+        return this;
+    }
+
+    /**
+     * 设置视频分辨率，多个输出分辨率不同时会在 split 之后的分支里缩放
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @return 作用域实例
+     */
+    public OutputScope resolution(int width, int height) {
+        options.set(Option.RESOLUTION, width + "x" + height);
+        return this;
+    }
+
+    /**
+     * 设置 split 分支中缩放使用的算法
+     *
+     * @param flags 缩放算法（如 bicubic、lanczos）
+     * @return 作用域实例
+     */
+    public OutputScope scaleFlags(String flags) {
+        scaleFlags = flags;
+        return this;
+    }
+
+    /**
+     * 设置输出格式（-f），tee 模式下作为该分支的封装格式
+     *
+     * @param format 格式名称（如 mp4、mpegts、flv）
+     * @return 作用域实例
+     */
+    public OutputScope format(String format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * 设置类型化选项，全局选项不能按输出设置
+     *
+     * @param option 选项
+     * @param value  选项值，为 null 时表示不覆盖默认值
+     * @return 作用域实例
+     */
+    public OutputScope option(Option option, String value) {
+        if (option.getScope() == Option.Scope.GLOBAL) {
+            throw new IllegalArgumentException(option.getFlag() + " 是全局选项，不能按输出设置");
+        }
+        options.set(option, value);
+        return this;
+    }
+
+    /**
+     * 设置任意输出选项
+     *
+     * @param flag  参数名
+     * @param value 参数值，为 null 时表示无值开关
+     * @return 作用域实例
+     */
+    public OutputScope option(String flag, String value) {
+        Option option = Option.fromFlag(flag);
+        if (option != null) {
+            return option(option, value);
+        }
+        options.set(flag, value);
+        return this;
+    }
+
+    /**
+     * 获取输出路径
+     *
+     * @return 输出路径
+     */
+    public String getPath() {
+        return path;
+    }
+
+    OptionSet getOptions() {
+        return options;
+    }
+
+    String getFormat() {
+        return format;
+    }
+
+    String getScaleFlags() {
+        return scaleFlags;
+    }
+}
@@ -0,0 +1,145 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 输出目标
+ * FFmpeg 把流式格式（见 {@link StreamFormat}）写入管道，Java 端边转码边把数据写入任意通道，
+ * 如 MediaStore 的文件描述符或网络连接，省去先写临时文件再复制一遍
+ *
+ * <pre>
+ * OutputSink sink = OutputSink.channel(new FileOutputStream(pfd.getFileDescriptor()).getChannel(), fifo);
+ * builder.output(sink, StreamFormat.FRAGMENTED_MP4);
+ * // FFmpeg 启动后在另一个线程中
+ * sink.pump();
+ * </pre>
+ */
+public abstract class OutputSink {
+
+    OutputSink() {
+    }
+
+    /**
+     * 管道（pipe:N），由调用方自行读取，如本地进程的标准输出
+     *
+     * @param fd 文件描述符，1 表示标准输出
+     * @return 输出目标
+     */
+    public static OutputSink pipe(int fd) {
+        if (fd < 0) {
+            throw new IllegalArgumentException("非法的文件描述符: " + fd);
+        }
+        return new PipeSink("pipe:" + fd);
+    }
+
+    /**
+     * FFmpeg 写入命名管道，{@link #pump()} 从命名管道读出后写入 target
+     * 命名管道可由 FFmpegKitConfig.registerNewFFmpegPipe 或 mkfifo 创建
+     *
+     * @param target    数据目标
+     * @param namedPipe 命名管道
+     * @return 输出目标
+     */
+    public static OutputSink channel(WritableByteChannel target, File namedPipe) {
+        return new ChannelSink(null, target, namedPipe.getAbsolutePath());
+    }
+
+    /**
+     * 从 FFmpeg 的输出通道（如本地进程的标准输出）读出后写入 target
+     *
+     * @param source FFmpeg 写入端对应的读取通道
+     * @param target 数据目标
+     * @param url    FFmpeg 写入的地址（如 pipe:1）
+     * @return 输出目标
+     */
+    public static OutputSink channel(ReadableByteChannel source, WritableByteChannel target, String url) {
+        return new ChannelSink(source, target, url);
+    }
+
+    /**
+     * 获取 FFmpeg 的输出地址
+     *
+     * @return 地址
+     */
+    public abstract String getUrl();
+
+    /**
+     * 是否需要在 FFmpeg 运行期间调用 {@link #pump()} 读出数据
+     *
+     * @return 需要读出时返回 true
+     */
+    public boolean needsPump() {
+        return false;
+    }
+
+    /**
+     * 把 FFmpeg 的输出写入目标，阻塞到 FFmpeg 关闭输出为止，完成后关闭两端
+     * 每个目标只能读出一次
+     *
+     * @return 写入的字节数
+     * @throws IOException 读写失败时
+     */
+    public long pump() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return getUrl();
+    }
+
+    private static final class PipeSink extends OutputSink {
+        private final String url;
+
+        PipeSink(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    private static final class ChannelSink extends OutputSink {
+        private final ReadableByteChannel source;
+        private final WritableByteChannel target;
+        private final String url;
+        private boolean pumped;
+
+        ChannelSink(ReadableByteChannel source, WritableByteChannel target, String url) {
+            this.source = source;
+            this.target = target;
+            this.url = url;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public boolean needsPump() {
+            return true;
+        }
+
+        @Override
+        public long pump() throws IOException {
+            synchronized (this) {
+                if (pumped) {
+                    throw new IllegalStateException("通道输出只能读出一次");
+                }
+                pumped = true;
+            }
+            // 打开命名管道的读取端会阻塞到 FFmpeg 打开写入端为止
+            try (ReadableByteChannel in = source != null ? source : new FileInputStream(url).getChannel();
+                 WritableByteChannel out = target) {
+                return ChannelPump.pump(in, out, InputSource.DEFAULT_BUFFER_SIZE);
+            }
+        }
+    }
+}
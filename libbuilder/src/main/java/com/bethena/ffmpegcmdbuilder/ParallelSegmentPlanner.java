@@ -0,0 +1,222 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfoCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 并行分段转码规划器
+ * 把一个长输入按时间切成 N 段，每段一条命令（输入端 -ss/-t 定位），可在多核机器上并行转码，
+ * 最后用 concat 分离器无损拼接各段视频；音频在拼接时整体编码一次，避免各段 AAC 起始填充造成的断续
+ *
+ * <pre>
+ * SegmentPlan plan = ParallelSegmentPlanner.create()
+ *         .workDir(tempDir)
+ *         .keyframes(keyframeTimes)
+ *         .plan(builder, durationSeconds);
+ * ExecutionResult result = plan.execute(executor, pool);
+ * </pre>
+ */
+public final class ParallelSegmentPlanner {
+
+    /**
+     * 单段的最短时长（秒），太短的分段进程启动开销占比过高
+     */
+    public static final double DEFAULT_MIN_SEGMENT_SECONDS = 10;
+
+    private int segments;
+    private int cores = Runtime.getRuntime().availableProcessors();
+    private double minSegmentSeconds = DEFAULT_MIN_SEGMENT_SECONDS;
+    private double[] keyframes;
+    private File workDir;
+
+    private ParallelSegmentPlanner() {
+    }
+
+    public static ParallelSegmentPlanner create() {
+        return new ParallelSegmentPlanner();
+    }
+
+    /**
+     * 设置分段数，不设置时按 CPU 核数和最短分段时长计算
+     *
+     * @param segments 分段数
+     * @return 规划器实例
+     */
+    public ParallelSegmentPlanner segments(int segments) {
+        this.segments = segments;
+        return this;
+    }
+
+    /**
+     * 设置可用的 CPU 核数，用于计算默认分段数和每段的线程数
+     *
+     * @param cores CPU 核数
+     * @return 规划器实例
+     */
+    public ParallelSegmentPlanner cores(int cores) {
+        this.cores = cores;
+        return this;
+    }
+
+    /**
+     * 设置单段的最短时长
+     *
+     * @param seconds 秒
+     * @return 规划器实例
+     */
+    public ParallelSegmentPlanner minSegmentSeconds(double seconds) {
+        this.minSegmentSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * 设置输入的关键帧时间点，分段边界会对齐到最近的关键帧，
+     * 既减少定位时多余的解码，也保证流复制（-c:v copy）时各段从关键帧开始
+     *
+     * @param seconds 关键帧时间（秒），不要求有序
+     * @return 规划器实例
+     */
+    public ParallelSegmentPlanner keyframes(double[] seconds) {
+        this.keyframes = seconds.clone();
+        Arrays.sort(this.keyframes);
+        return this;
+    }
+
+    /**
+     * 设置分段文件和拼接列表的存放目录
+     *
+     * @param dir 目录
+     * @return 规划器实例
+     */
+    public ParallelSegmentPlanner workDir(File dir) {
+        this.workDir = dir;
+        return this;
+    }
+
+    /**
+     * 按探测到的输入时长生成分段计划，媒体信息通常来自 {@link MediaInfoCache}，避免重复探测
+     *
+     * @param builder 已设置好唯一输入、输出和编码选项的构建器，不会被修改
+     * @param info    输入文件的媒体信息
+     * @return 分段计划
+     */
+    public SegmentPlan plan(FFmpegCommandBuilder builder, MediaInfo info) {
+        return plan(builder, info.getDuration());
+    }
+
+    /**
+     * 生成分段计划
+     *
+     * @param builder         已设置好唯一输入、输出和编码选项的构建器，不会被修改
+     * @param durationSeconds 输入时长（秒）
+     * @return 分段计划
+     */
+    public SegmentPlan plan(FFmpegCommandBuilder builder, double durationSeconds) {
+        List<String> inputs = builder.getInputs();
+        List<String> outputs = builder.getOutputs();
+        if (inputs.size() != 1 || outputs.size() != 1) {
+            throw new IllegalArgumentException("分段转码要求构建器只有一个输入和一个输出");
+        }
+        if (durationSeconds <= 0) {
+            throw new IllegalArgumentException("输入时长必须大于 0");
+        }
+        String input = inputs.get(0);
+        String output = outputs.get(0);
+        File dir = workDir != null ? workDir : new File(output).getAbsoluteFile().getParentFile();
+
+        double[] bounds = boundaries(durationSeconds);
+        int count = bounds.length - 1;
+        String threads = String.valueOf(EncodingProfile.threadsPerJob(cores, count));
+        String extension = extensionOf(output);
+        String prefix = "seg_" + Long.toHexString(System.nanoTime()) + "_";
+
+        List<SegmentPlan.Segment> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File file = new File(dir, prefix + String.format(Locale.ROOT, "%03d", i) + extension);
+            // 各段只转视频；-movflags +faststart 等收尾工作留给拼接命令做一次
+            String[] args = builder.fork()
+                    .seek(formatSeconds(bounds[i]), SeekMode.FAST)
+                    .inputOption(Option.DURATION, formatSeconds(bounds[i + 1] - bounds[i]))
+                    .option(Option.AUDIO_CODEC, null)
+                    .option(Option.AUDIO_BITRATE, null)
+                    .option(Option.DURATION, null)
+                    .option(Option.MOVFLAGS, null)
+                    .option(Option.THREADS, threads)
+                    .option("-an", null)
+                    .output(file.getAbsolutePath())
+                    .buildArgs();
+            list.add(new SegmentPlan.Segment(bounds[i], bounds[i + 1] - bounds[i], file, args));
+        }
+
+        File concatList = new File(dir, prefix + "list.txt");
+        String[] concat = FFmpegCommandBuilder.create()
+                .inputOption("-f", "concat")
+                .inputOption("-safe", "0")
+                .input(concatList.getAbsolutePath())
+                .input(input)
+                .map("0:v")
+                .map("1:a?")
+                .videoCodec("copy")
+                .option(Option.AUDIO_CODEC, builder.get(Option.AUDIO_CODEC))
+                .option(Option.AUDIO_BITRATE, builder.get(Option.AUDIO_BITRATE))
+                .option(Option.MOVFLAGS, builder.get(Option.MOVFLAGS))
+                .duration(formatSeconds(durationSeconds))
+                .output(output)
+                .buildArgs();
+        EncodingProfile profile = builder.getProfile();
+        return new SegmentPlan(list, concatList, concat, profile != null ? profile.name() : null);
+    }
+
+    /**
+     * 计算分段边界，首尾为 0 和总时长
+     */
+    double[] boundaries(double duration) {
+        int count = segments > 0 ? segments
+                : (int) Math.max(1, Math.min(cores, Math.floor(duration / minSegmentSeconds)));
+        double[] bounds = new double[count + 1];
+        int size = 1;
+        for (int i = 1; i < count; i++) {
+            double bound = snap(duration * i / count);
+            if (bound > bounds[size - 1] && bound < duration) {
+                bounds[size++] = bound;
+            }
+        }
+        bounds[size++] = duration;
+        return Arrays.copyOf(bounds, size);
+    }
+
+    private double snap(double target) {
+        if (keyframes == null || keyframes.length == 0) {
+            return target;
+        }
+        int index = Arrays.binarySearch(keyframes, target);
+        if (index >= 0) {
+            return keyframes[index];
+        }
+        int after = -index - 1;
+        if (after == 0) {
+            return keyframes[0];
+        }
+        if (after == keyframes.length) {
+            return keyframes[after - 1];
+        }
+        double before = keyframes[after - 1];
+        return target - before <= keyframes[after] - target ? before : keyframes[after];
+    }
+
+    private static String extensionOf(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? path.substring(dot) : ".mkv";
+    }
+
+    static String formatSeconds(double seconds) {
+        return String.format(Locale.ROOT, "%.3f", seconds);
+    }
+}
@@ -0,0 +1,18 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * 定位方式
+ */
+public enum SeekMode {
+    /**
+     * 输入端定位：-ss 放在 -i 之前，分离器直接跳到目标位置之前的关键帧，
+     * 不解码之前的内容；转码时 FFmpeg 会丢弃关键帧到目标位置之间的帧，结果仍然精确，
+     * 流复制（-c copy）时起点对齐到关键帧
+     */
+    FAST,
+    /**
+     * 输出端定位：-ss 放在 -i 之后，从头解码并丢弃目标位置之前的所有帧，
+     * 流复制时也能精确到帧，但耗时与定位位置成正比
+     */
+    ACCURATE
+}
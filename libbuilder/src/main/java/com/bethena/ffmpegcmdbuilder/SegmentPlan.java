@@ -0,0 +1,257 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+import com.bethena.ffmpegcmdbuilder.exec.FFmpegExecutor;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetricsListener;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 分段转码计划，由 {@link ParallelSegmentPlanner} 生成
+ */
+public final class SegmentPlan {
+
+    /**
+     * 拼接任务的指标分类名；拼接只是流复制，不和分段的编码任务混在一起统计
+     */
+    public static final String CONCAT_PROFILE = "concat";
+
+    private final List<Segment> segments;
+    private final File concatList;
+    private final String[] concatArgs;
+    private final String profile;
+
+    SegmentPlan(List<Segment> segments, File concatList, String[] concatArgs, String profile) {
+        this.segments = Collections.unmodifiableList(segments);
+        this.concatList = concatList;
+        this.concatArgs = concatArgs;
+        this.profile = profile;
+    }
+
+    /**
+     * 获取各分段
+     *
+     * @return 分段列表
+     */
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * 获取拼接命令，需先调用 {@link #writeConcatList()}
+     *
+     * @return 参数数组
+     */
+    public String[] getConcatArgs() {
+        return concatArgs.clone();
+    }
+
+    /**
+     * 写入 concat 分离器使用的列表文件
+     *
+     * @return 列表文件
+     * @throws IOException 写入失败
+     */
+    public File writeConcatList() throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(concatList), StandardCharsets.UTF_8)) {
+            writer.write("ffconcat version 1.0\n");
+            for (Segment segment : segments) {
+                writer.write("file '");
+                writer.write(segment.output.getAbsolutePath().replace("'", "'\\''"));
+                writer.write("'\n");
+            }
+        }
+        return concatList;
+    }
+
+    /**
+     * 并行转码各分段，全部成功后拼接为最终输出
+     * 任一分段失败时取消其余分段，等它们全部退出后返回该分段的结果；
+     * 无论成功与否，返回前都会删除分段文件和列表文件
+     *
+     * @param executor 命令执行器
+     * @param pool     运行分段的线程池，线程数决定实际并行度
+     * @return 第一个失败分段的结果，或拼接命令的结果
+     * @throws InterruptedException 等待时被中断，已取消所有分段
+     * @throws IOException          写入列表文件失败
+     */
+    public ExecutionResult execute(FFmpegExecutor executor, ExecutorService pool)
+            throws InterruptedException, IOException {
+        return execute(executor, pool, null);
+    }
+
+    /**
+     * 并行转码各分段并拼接，每个分段和拼接命令结束时上报任务指标
+     * 分段按原构建器的编码配置分类，拼接按 {@link #CONCAT_PROFILE} 分类
+     *
+     * @param executor 命令执行器
+     * @param pool     运行分段的线程池，线程数决定实际并行度
+     * @param listener 指标监听器，为 null 时不上报
+     * @return 第一个失败分段的结果，或拼接命令的结果
+     * @throws InterruptedException 等待时被中断，已取消所有分段
+     * @throws IOException          写入列表文件失败
+     */
+    public ExecutionResult execute(FFmpegExecutor executor, ExecutorService pool, JobMetricsListener listener)
+            throws InterruptedException, IOException {
+        try {
+            ExecutionResult failed = executeSegments(executor, pool, listener);
+            if (failed != null) {
+                return failed;
+            }
+            writeConcatList();
+            return executor.execute(concatArgs, new JobMetrics(CONCAT_PROFILE), listener);
+        } finally {
+            deleteIntermediateFiles();
+        }
+    }
+
+    /**
+     * @return 第一个失败分段的结果，全部成功时返回 null
+     */
+    private ExecutionResult executeSegments(FFmpegExecutor executor, ExecutorService pool,
+                                            JobMetricsListener listener) throws InterruptedException {
+        CompletionService<ExecutionResult> completion = new ExecutorCompletionService<>(pool);
+        List<Future<ExecutionResult>> futures = new ArrayList<>(segments.size());
+        Tasks tasks = new Tasks();
+        try {
+            for (Segment segment : segments) {
+                futures.add(completion.submit(() -> tasks.run(executor, segment.args, profile, listener)));
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                ExecutionResult result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    result = new ExecutionResult(-1, String.valueOf(e.getCause()));
+                }
+                if (!result.isSuccess()) {
+                    return result;
+                }
+            }
+            return null;
+        } finally {
+            tasks.stop();
+            for (Future<ExecutionResult> future : futures) {
+                future.cancel(true);
+            }
+            // 被取消的分段可能还在写文件，等它们退出后才能删除
+            tasks.awaitIdle();
+        }
+    }
+
+    /**
+     * 删除分段文件和列表文件
+     */
+    public void deleteIntermediateFiles() {
+        for (Segment segment : segments) {
+            segment.output.delete();
+        }
+        concatList.delete();
+    }
+
+    /**
+     * 记录正在运行的分段；停止后尚未开始的分段不再执行
+     */
+    private static final class Tasks {
+        private boolean stopped;
+        private int running;
+
+        ExecutionResult run(FFmpegExecutor executor, String[] args, String profile, JobMetricsListener listener)
+                throws InterruptedException {
+            synchronized (this) {
+                if (stopped) {
+                    return new ExecutionResult(ExecutionResult.RETURN_CODE_CANCEL, null);
+                }
+                running++;
+            }
+            try {
+                return executor.execute(args, new JobMetrics(profile), listener);
+            } finally {
+                synchronized (this) {
+                    running--;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void stop() {
+            stopped = true;
+        }
+
+        /**
+         * 等待所有分段退出，期间的中断在返回后恢复
+         */
+        synchronized void awaitIdle() {
+            boolean interrupted = false;
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 单个分段
+     */
+    public static final class Segment {
+        private final double start;
+        private final double duration;
+        private final File output;
+        private final String[] args;
+
+        Segment(double start, double duration, File output, String[] args) {
+            this.start = start;
+            this.duration = duration;
+            this.output = output;
+            this.args = args;
+        }
+
+        /**
+         * @return 起始时间（秒）
+         */
+        public double getStart() {
+            return start;
+        }
+
+        /**
+         * @return 时长（秒）
+         */
+        public double getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return 分段输出文件
+         */
+        public File getOutput() {
+            return output;
+        }
+
+        /**
+         * @return 分段转码命令
+         */
+        public String[] getArgs() {
+            return args.clone();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.Locale;
+
+/**
+ * 分段输出（HLS、DASH）的公共配置
+ * 转码过程中持续写出分段和播放列表，前几个分段写完即可开始播放，不必等整个转码结束
+ *
+ * @see HlsOutput
+ * @see DashOutput
+ */
+public abstract class SegmentedOutput {
+
+    /**
+     * 默认分段时长（秒）
+     */
+    public static final double DEFAULT_SEGMENT_DURATION = 6;
+
+    private final String playlistPath;
+    double segmentDuration = DEFAULT_SEGMENT_DURATION;
+    boolean alignKeyframes = true;
+
+    SegmentedOutput(String playlistPath) {
+        if (playlistPath == null || playlistPath.isEmpty()) {
+            throw new IllegalArgumentException("播放列表路径不能为空");
+        }
+        this.playlistPath = playlistPath;
+    }
+
+    /**
+     * @return 播放列表（m3u8 / mpd）路径
+     */
+    public String getPlaylistPath() {
+        return playlistPath;
+    }
+
+    /**
+     * @return 分段时长（秒）
+     */
+    public double getSegmentDuration() {
+        return segmentDuration;
+    }
+
+    /**
+     * 把输出选项写入构建器
+     *
+     * @param builder 构建器
+     */
+    abstract void applyTo(FFmpegCommandBuilder builder);
+
+    void checkDuration(double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("分段时长必须大于 0");
+        }
+    }
+
+    /**
+     * 分段只能在关键帧处切开，按分段时长强制插入关键帧，分段时长才会准确；流复制时无法插入
+     */
+    void applyKeyframes(FFmpegCommandBuilder builder) {
+        if (alignKeyframes && !"copy".equals(builder.get(Option.VIDEO_CODEC))) {
+            builder.option("-force_key_frames", "expr:gte(t,n_forced*" + seconds(segmentDuration) + ")");
+        } else {
+            builder.removeOption("-force_key_frames");
+        }
+    }
+
+    static String seconds(double seconds) {
+        String text = String.format(Locale.US, "%.3f", seconds);
+        // 去掉多余的 0，6.000 写成 6
+        text = text.replaceAll("0+$", "");
+        return text.endsWith(".") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    /**
+     * 去掉扩展名的播放列表路径，用作默认的分段文件名前缀
+     */
+    String baseName() {
+        int slash = Math.max(playlistPath.lastIndexOf('/'), playlistPath.lastIndexOf('\\'));
+        int dot = playlistPath.lastIndexOf('.');
+        return dot > slash ? playlistPath.substring(0, dot) : playlistPath;
+    }
+}
@@ -0,0 +1,234 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.StreamInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流复制决策
+ * 根据探测到的源文件信息判断视频、音频流是否已满足构建器中设置的目标（编码格式、分辨率、码率等），
+ * 满足时改为 -c:v copy / -c:a copy 直接封装，省去解码和重新编码
+ * 只判断单输入、单输出且没有滤镜的命令，未设置目标编码格式的流不做处理
+ */
+public final class StreamCopyDecision {
+
+    /**
+     * 帧率允许的误差，29.97 视为满足 30
+     */
+    private static final double FRAME_RATE_TOLERANCE = 0.1;
+
+    /**
+     * 只对编码器有意义的视频选项，改为流复制后移除
+     */
+    private static final String[] VIDEO_ENCODER_FLAGS = {"-pix_fmt", "-profile:v", "-level", "-maxrate", "-bufsize", "-g"};
+
+    private static final Map<String, String> CODEC_BY_ENCODER = new HashMap<>();
+
+    static {
+        String[][] encoders = {
+                {"h264", "libx264", "libx264rgb", "libopenh264", "h264_mediacodec", "h264_videotoolbox"},
+                {"hevc", "h265", "libx265", "hevc_mediacodec", "hevc_videotoolbox"},
+                {"vp8", "libvpx"},
+                {"vp9", "libvpx-vp9", "vp9_mediacodec"},
+                {"av1", "libaom-av1", "libsvtav1", "librav1e", "av1_mediacodec"},
+                {"mpeg4", "libxvid"},
+                {"aac", "libfdk_aac", "aac_at"},
+                {"mp3", "libmp3lame", "libshine"},
+                {"opus", "libopus"},
+                {"vorbis", "libvorbis"},
+        };
+        for (String[] group : encoders) {
+            for (String encoder : group) {
+                CODEC_BY_ENCODER.put(encoder, group[0]);
+            }
+        }
+    }
+
+    private final boolean copyVideo;
+    private final boolean copyAudio;
+
+    private StreamCopyDecision(boolean copyVideo, boolean copyAudio) {
+        this.copyVideo = copyVideo;
+        this.copyAudio = copyAudio;
+    }
+
+    /**
+     * 根据源文件信息做出决策，不修改构建器
+     *
+     * @param builder 已设置目标选项的构建器
+     * @param info    源文件信息
+     * @return 决策结果
+     */
+    public static StreamCopyDecision decide(FFmpegCommandBuilder builder, MediaInfo info) {
+        if (builder.getInputs().size() != 1 || builder.getOutputs().size() > 1 || builder.hasFilterGraph()) {
+            return new StreamCopyDecision(false, false);
+        }
+        return new StreamCopyDecision(videoCompliant(builder, info), audioCompliant(builder, info.getAudioStream()));
+    }
+
+    private static boolean videoCompliant(FFmpegCommandBuilder builder, MediaInfo info) {
+        StreamInfo stream = info.getVideoStream();
+        String target = builder.get(Option.VIDEO_CODEC);
+        // 输出端 -ss 要求精确到帧，流复制只能从关键帧开始
+        if (stream == null || !needsDecision(target) || builder.get(Option.VIDEO_FILTER) != null
+                || builder.get(Option.SEEK) != null || builder.get("-crf") != null) {
+            return false;
+        }
+        if (!sameCodec(target, stream.getCodecName())) {
+            return false;
+        }
+        String resolution = builder.get(Option.RESOLUTION);
+        if (resolution != null
+                && !resolution.equals(stream.getDisplayWidth() + "x" + stream.getDisplayHeight())) {
+            return false;
+        }
+        String frameRate = builder.get(Option.FRAME_RATE);
+        if (frameRate != null) {
+            double fps = parseNumber(frameRate);
+            if (Double.isNaN(fps) || Double.isNaN(stream.getFrameRate())
+                    || Math.abs(fps - stream.getFrameRate()) > FRAME_RATE_TOLERANCE) {
+                return false;
+            }
+        }
+        String pixelFormat = builder.get("-pix_fmt");
+        if (pixelFormat != null && !pixelFormat.equals(stream.getPixelFormat())) {
+            return false;
+        }
+        // 不少容器不记录单个流的码率，总码率一定不小于视频码率，可作为上限判断
+        long bitRate = stream.getBitRate() > 0 ? stream.getBitRate() : info.getBitRate();
+        return bitRateWithin(bitRate, builder.get(Option.VIDEO_BITRATE))
+                && bitRateWithin(bitRate, builder.get("-maxrate"));
+    }
+
+    private static boolean audioCompliant(FFmpegCommandBuilder builder, StreamInfo stream) {
+        String target = builder.get(Option.AUDIO_CODEC);
+        if (stream == null || !needsDecision(target) || builder.get("-af") != null) {
+            return false;
+        }
+        if (!sameCodec(target, stream.getCodecName())) {
+            return false;
+        }
+        String sampleRate = builder.get("-ar");
+        if (sampleRate != null && parseNumber(sampleRate) != stream.getSampleRate()) {
+            return false;
+        }
+        String channels = builder.get("-ac");
+        if (channels != null && parseNumber(channels) != stream.getChannels()) {
+            return false;
+        }
+        return bitRateWithin(stream.getBitRate(), builder.get(Option.AUDIO_BITRATE));
+    }
+
+    private static boolean needsDecision(String targetCodec) {
+        return targetCodec != null && !"copy".equals(targetCodec);
+    }
+
+    private static boolean sameCodec(String encoder, String codecName) {
+        if (codecName == null) {
+            return false;
+        }
+        String codec = CODEC_BY_ENCODER.get(encoder);
+        return codecName.equals(codec != null ? codec : encoder);
+    }
+
+    /**
+     * 未设置目标码率时视为满足；设置了目标码率但源码率未知时视为不满足
+     */
+    private static boolean bitRateWithin(long bitRate, String target) {
+        if (target == null) {
+            return true;
+        }
+        double limit = parseNumber(target);
+        return bitRate > 0 && !Double.isNaN(limit) && bitRate <= limit;
+    }
+
+    /**
+     * 解析 FFmpeg 数值参数，支持 k、M、G 后缀（按 1000 进位）
+     *
+     * @param value 参数值（如 1M、128k、1.5M）
+     * @return 数值，无法解析时返回 NaN
+     */
+    static double parseNumber(String value) {
+        if (value.isEmpty()) {
+            return Double.NaN;
+        }
+        double scale = 1;
+        int end = value.length();
+        switch (value.charAt(end - 1)) {
+            case 'k':
+            case 'K':
+                scale = 1e3;
+                end--;
+                break;
+            case 'M':
+                scale = 1e6;
+                end--;
+                break;
+            case 'G':
+                scale = 1e9;
+                end--;
+                break;
+            default:
+                break;
+        }
+        try {
+            return Double.parseDouble(value.substring(0, end)) * scale;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return 视频流是否改为流复制
+     */
+    public boolean isCopyVideo() {
+        return copyVideo;
+    }
+
+    /**
+     * @return 音频流是否改为流复制
+     */
+    public boolean isCopyAudio() {
+        return copyAudio;
+    }
+
+    /**
+     * @return 是否所有流都改为流复制（只需重新封装）
+     */
+    public boolean isRemuxOnly() {
+        return copyVideo && copyAudio;
+    }
+
+    /**
+     * 把决策应用到构建器：满足目标的流改为流复制，并移除只对编码器有意义的选项
+     *
+     * @param builder 构建器
+     */
+    public void applyTo(FFmpegCommandBuilder builder) {
+        if (copyVideo) {
+            builder.videoCodec("copy")
+                    .option(Option.VIDEO_BITRATE, null)
+                    .option(Option.RESOLUTION, null)
+                    .option(Option.FRAME_RATE, null)
+                    .option(Option.PRESET, null)
+                    .option(Option.TUNE, null);
+            for (String flag : VIDEO_ENCODER_FLAGS) {
+                builder.removeOption(flag);
+            }
+        }
+        if (copyAudio) {
+            builder.audioCodec("copy")
+                    .option(Option.AUDIO_BITRATE, null)
+                    .removeOption("-ar")
+                    .removeOption("-ac");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StreamCopyDecision{video=" + (copyVideo ? "copy" : "encode")
+                + ", audio=" + (copyAudio ? "copy" : "encode") + "}";
+    }
+}
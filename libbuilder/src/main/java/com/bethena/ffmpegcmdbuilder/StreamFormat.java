@@ -0,0 +1,38 @@
+package com.bethena.ffmpegcmdbuilder;
+
+/**
+ * 可顺序写入的输出格式
+ * 管道不能回头修改已写出的数据，普通 mp4 需要在结尾回写 moov，不能写入管道
+ */
+public enum StreamFormat {
+    /**
+     * 分片 MP4：开头写入空的 moov，之后每个关键帧开始一个分片，播放器和 MediaStore 都能直接识别
+     */
+    FRAGMENTED_MP4("mp4", "frag_keyframe+empty_moov+default_base_moof"),
+    /**
+     * MPEG-TS：天然支持流式写入，适合直播推流、HLS 切片等场景
+     */
+    MPEG_TS("mpegts", null);
+
+    private final String format;
+    private final String movflags;
+
+    StreamFormat(String format, String movflags) {
+        this.format = format;
+        this.movflags = movflags;
+    }
+
+    /**
+     * @return -f 参数值
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return -movflags 参数值，不需要时为 null
+     */
+    public String getMovflags() {
+        return movflags;
+    }
+}
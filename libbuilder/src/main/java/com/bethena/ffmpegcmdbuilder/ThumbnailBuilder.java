@@ -0,0 +1,229 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 一次 FFmpeg 执行生成多张缩略图或一张雪碧图（tile 拼图）
+ * 默认只解码关键帧（-skip_frame nokey），解码器只打开一次，用 select 挑出所需时间点的帧，
+ * 比每张缩略图单独启动一次解码快得多；代价是缩略图落在时间点之后最近的关键帧上
+ *
+ * <pre>
+ * // 每 10 秒一张，拼成 5x4 的雪碧图
+ * FFmpegCommandBuilder builder = ThumbnailBuilder.create(path)
+ *         .every(10)
+ *         .size(160, -2)
+ *         .spriteSheet(cacheDir + "/sprite.jpg", 5, 4)
+ *         .build();
+ * // 指定时间点，输出 thumb_001.jpg、thumb_002.jpg ...
+ * ThumbnailBuilder.create(path).at(1, 30, 60).size(320, -2).images(cacheDir + "/thumb_%03d.jpg").build();
+ * </pre>
+ */
+public final class ThumbnailBuilder {
+
+    private final InputSource input;
+    private double[] timestamps;
+    private double interval;
+    private int width = -2;
+    private int height = -2;
+    private boolean keyframesOnly = true;
+    private int quality = -1;
+    private String output;
+    private int columns;
+    private int rows;
+
+    private ThumbnailBuilder(InputSource input) {
+        this.input = input;
+    }
+
+    /**
+     * @param inputPath 视频路径
+     * @return 缩略图构建器
+     */
+    public static ThumbnailBuilder create(String inputPath) {
+        return create(InputSource.url(inputPath));
+    }
+
+    /**
+     * @param input 视频来源
+     * @return 缩略图构建器
+     */
+    public static ThumbnailBuilder create(InputSource input) {
+        return new ThumbnailBuilder(input);
+    }
+
+    /**
+     * 在指定时间点截取，与 {@link #every(double)} 互相覆盖
+     * 只解码关键帧时，落在同一个 GOP 内的多个时间点只会得到一张缩略图
+     *
+     * @param seconds 时间点（秒），按升序排列
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder at(double... seconds) {
+        if (seconds.length == 0) {
+            throw new IllegalArgumentException("至少需要一个时间点");
+        }
+        timestamps = seconds.clone();
+        Arrays.sort(timestamps);
+        interval = 0;
+        return this;
+    }
+
+    /**
+     * 每隔固定时长截取一张，从第一帧开始，与 {@link #at(double...)} 互相覆盖
+     *
+     * @param seconds 间隔（秒）
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder every(double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("间隔必须大于 0");
+        }
+        interval = seconds;
+        timestamps = null;
+        return this;
+    }
+
+    /**
+     * 设置缩略图尺寸，-2 表示按比例且保持偶数，默认保持原尺寸
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder size(int width, int height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    /**
+     * 是否只解码关键帧，默认开启；关闭后截取时间点上的准确帧，但需要解码全部帧
+     *
+     * @param enabled 是否开启
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder keyframesOnly(boolean enabled) {
+        keyframesOnly = enabled;
+        return this;
+    }
+
+    /**
+     * 设置 JPEG 质量（-q:v），2~31，越小质量越高
+     *
+     * @param q 质量
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder quality(int q) {
+        quality = q;
+        return this;
+    }
+
+    /**
+     * 每张缩略图输出为单独的图片
+     *
+     * @param pattern 文件名模板，如 /cache/thumb_%03d.jpg，序号从 1 开始
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder images(String pattern) {
+        output = pattern;
+        columns = 0;
+        rows = 0;
+        return this;
+    }
+
+    /**
+     * 把缩略图按行拼成雪碧图
+     * 缩略图超过 columns * rows 张时输出多张雪碧图，此时 path 需要包含序号模板（如 sprite_%02d.jpg）；
+     * 不包含序号模板时只输出第一张
+     *
+     * @param path    雪碧图路径
+     * @param columns 列数
+     * @param rows    行数
+     * @return 缩略图构建器
+     */
+    public ThumbnailBuilder spriteSheet(String path, int columns, int rows) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("行列数必须大于 0");
+        }
+        output = path;
+        this.columns = columns;
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * 生成命令
+     *
+     * @return 命令构建器，已设置输出
+     */
+    public FFmpegCommandBuilder build() {
+        if (output == null) {
+            throw new IllegalStateException("需要先调用 images() 或 spriteSheet() 设置输出");
+        }
+        if (timestamps == null && interval <= 0) {
+            throw new IllegalStateException("需要先调用 at() 或 every() 设置截取时间");
+        }
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create();
+        boolean single = timestamps != null && timestamps.length == 1 && columns == 0;
+        if (single) {
+            // 只要一张时直接定位到关键帧，不必从头读取
+            builder.seek(seconds(timestamps[0]), SeekMode.FAST);
+        }
+        if (keyframesOnly) {
+            builder.inputOption("-skip_frame", "nokey");
+        }
+        builder.input(input);
+
+        Filter select = single ? null : Filter.of("select").arg(selectExpression());
+        Filter scale = width != -2 || height != -2 ? Filter.scale(width, height) : null;
+        Filter tile = columns > 0 ? Filter.of("tile").arg(columns + "x" + rows) : null;
+        Filter[] filters = nonNull(select, scale, tile);
+        if (filters.length > 0) {
+            builder.videoFilters(filters);
+        }
+        // vfr：未选中的帧直接丢弃，不会为了保持帧率而重复输出
+        builder.option("-fps_mode", "vfr")
+                .option("-an", null);
+        if (quality > 0) {
+            builder.option("-q:v", String.valueOf(quality));
+        }
+        if (single || (columns > 0 && !output.contains("%"))) {
+            builder.option("-frames:v", "1");
+        }
+        return builder.output(output);
+    }
+
+    /**
+     * 固定间隔：与上一张相隔不少于 interval；
+     * 指定时间点：对每个时间点 T，选中 t >= T 且上一张早于 T 的第一帧
+     */
+    String selectExpression() {
+        if (timestamps == null) {
+            return "isnan(prev_selected_t)+gte(t-prev_selected_t," + seconds(interval) + ")";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < timestamps.length; i++) {
+            if (i > 0) {
+                sb.append('+');
+            }
+            String t = seconds(timestamps[i]);
+            sb.append("gte(t,").append(t).append(")*not(gte(prev_selected_t,").append(t).append("))");
+        }
+        return sb.toString();
+    }
+
+    private static Filter[] nonNull(Filter... filters) {
+        int count = 0;
+        for (Filter filter : filters) {
+            if (filter != null) {
+                filters[count++] = filter;
+            }
+        }
+        return Arrays.copyOf(filters, count);
+    }
+
+    private static String seconds(double seconds) {
+        return String.format(Locale.ROOT, "%.3f", seconds);
+    }
+}
@@ -0,0 +1,433 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+import com.bethena.ffmpegcmdbuilder.exec.FFmpegExecutor;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetricsListener;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 转码结果缓存
+ * 以输入文件指纹加规范化后的命令参数（不含输入、输出路径）的 SHA-256 为键保存输出文件，
+ * 同一个源文件以相同设置再次转码时直接把缓存的输出硬链接（不支持时复制）到目标路径，不再执行 FFmpeg。
+ * 同一个键同时只有一个任务在转码，重复提交的任务会等待前一个完成后命中缓存，不同的键互不等待；
+ * 缓存总大小超过上限时按最久未使用淘汰；设置 {@link #setMetricsListener} 后每次执行（包括命中缓存）都会上报任务指标
+ *
+ * <pre>
+ * TranscodeCache cache = new TranscodeCache(new File(cacheDir, "transcode"), 512L * 1024 * 1024);
+ * ExecutionResult result = cache.execute(builder, executor);
+ * </pre>
+ * 输出文件可能是缓存文件的硬链接，不要原地修改输出文件。线程安全
+ */
+public final class TranscodeCache {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * File.toPath() 和 Files.createLink() 在 Android 8.0（API 26）才加入，通过反射调用，低版本上为 null
+     */
+    private static final Method TO_PATH = method("java.io.File", "toPath");
+    private static final Method CREATE_LINK = TO_PATH != null
+            ? method("java.nio.file.Files", "createLink", TO_PATH.getReturnType(), TO_PATH.getReturnType()) : null;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 不影响输出内容的开关
+     */
+    private static final Set<String> IGNORED_SWITCHES = new HashSet<>(Arrays.asList(
+            "-y", "-n", "-nostats", "-stats", "-hide_banner"));
+
+    /**
+     * 不影响输出内容的带值选项
+     */
+    private static final Set<String> IGNORED_OPTIONS = new HashSet<>(Arrays.asList(
+            "-progress", "-loglevel", "-v", "-stats_period"));
+
+    private final File dir;
+    private final long maxBytes;
+    /**
+     * 正在转码的缓存文件名，同一个键的后续任务等待它完成
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<ExecutionResult>> inFlight = new ConcurrentHashMap<>();
+    /**
+     * 缓存文件名到大小，按访问顺序排列，最前面的最久未使用
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private volatile JobMetricsListener metricsListener;
+
+    /**
+     * 打开缓存目录，已有的缓存文件按修改时间恢复使用顺序
+     *
+     * @param dir      缓存目录，不存在时创建
+     * @param maxBytes 缓存总大小上限（字节）
+     */
+    public TranscodeCache(File dir, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes 必须大于 0");
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("无法创建缓存目录 " + dir);
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File file : files) {
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    // 上次进程退出时没写完的文件
+                    file.delete();
+                } else if (file.isFile()) {
+                    entries.put(file.getName(), file.length());
+                    totalBytes += file.length();
+                }
+            }
+        }
+        // 上限可能比上次打开时小
+        evict();
+    }
+
+    /**
+     * 设置任务指标监听器，命中缓存的任务以 {@link JobMetrics#isCacheHit()} 标记
+     *
+     * @param listener 监听器，为 null 时不上报
+     */
+    public void setMetricsListener(JobMetricsListener listener) {
+        metricsListener = listener;
+    }
+
+    /**
+     * 执行转码，命中缓存时直接生成输出文件
+     * 输入为本地文件时按文件内容计算指纹；输入不是本地文件（如 pipe:、content://）时不使用缓存
+     *
+     * @param builder  只有一个输出的构建器
+     * @param executor 执行器
+     * @return 执行结果，命中缓存时为成功
+     * @throws InterruptedException 调用线程被中断
+     */
+    public ExecutionResult execute(FFmpegCommandBuilder builder, FFmpegExecutor executor) throws InterruptedException {
+        List<String> inputs = builder.getInputs();
+        String[] fingerprints = new String[inputs.size()];
+        try {
+            for (int i = 0; i < fingerprints.length; i++) {
+                File input = new File(inputs.get(i));
+                if (!input.isFile()) {
+                    return executor.execute(builder.buildArgs(), JobMetrics.of(builder), metricsListener);
+                }
+                fingerprints[i] = fingerprint(input);
+            }
+        } catch (IOException e) {
+            return executor.execute(builder.buildArgs(), JobMetrics.of(builder), metricsListener);
+        }
+        return execute(builder, executor, fingerprints);
+    }
+
+    /**
+     * 使用调用方提供的输入指纹执行转码，适用于输入不是本地文件的情况
+     * （如以 content:// 地址的大小和修改时间作为指纹）
+     *
+     * @param builder           只有一个输出的构建器
+     * @param executor          执行器
+     * @param inputFingerprints 按输入顺序排列的指纹，内容相同的输入指纹必须相同
+     * @return 执行结果，命中缓存时为成功
+     * @throws InterruptedException 调用线程被中断
+     */
+    public ExecutionResult execute(FFmpegCommandBuilder builder, FFmpegExecutor executor, String... inputFingerprints)
+            throws InterruptedException {
+        String key = key(builder, inputFingerprints);
+        File output = new File(builder.getOutput());
+        String name = key + extension(output.getName());
+        while (true) {
+            CompletableFuture<ExecutionResult> mine = new CompletableFuture<>();
+            CompletableFuture<ExecutionResult> running = inFlight.putIfAbsent(name, mine);
+            if (running != null) {
+                // 等待同一个键的任务结束后重新查找缓存，它失败时由本任务转码
+                try {
+                    running.get();
+                } catch (ExecutionException e) {
+                    // 不会发生，结束时总是正常完成
+                }
+                continue;
+            }
+            ExecutionResult result = null;
+            try {
+                result = executeOwned(builder, executor, name, output);
+                return result;
+            } finally {
+                inFlight.remove(name, mine);
+                mine.complete(result);
+            }
+        }
+    }
+
+    /**
+     * 持有该键时查找缓存，未命中时转码并写入缓存；只有缓存索引的读写需要加锁
+     */
+    private ExecutionResult executeOwned(FFmpegCommandBuilder builder, FFmpegExecutor executor, String name,
+                                         File output) throws InterruptedException {
+        File cached = new File(dir, name);
+        JobMetrics metrics = JobMetrics.of(builder);
+        if (touch(name, cached)) {
+            try {
+                linkOrCopy(cached, output);
+                ExecutionResult hit = ExecutionResult.success();
+                metrics.recordCacheHit();
+                metrics.complete(hit);
+                JobMetricsListener listener = metricsListener;
+                if (listener != null) {
+                    listener.onJobCompleted(metrics);
+                }
+                return hit;
+            } catch (IOException e) {
+                // 读取缓存失败（如刚被淘汰）时按未命中处理
+            }
+        }
+        // 输出路径可能是之前命中时创建的硬链接，先删除，避免 FFmpeg 截断写入时改坏缓存文件
+        output.delete();
+        ExecutionResult result = executor.execute(builder.buildArgs(), metrics, metricsListener);
+        if (result.isSuccess()) {
+            store(name, output);
+        }
+        return result;
+    }
+
+    /**
+     * 计算缓存键
+     *
+     * @param builder           只有一个输出的构建器
+     * @param inputFingerprints 按输入顺序排列的输入指纹
+     * @return 64 位十六进制 SHA-256
+     */
+    public static String key(FFmpegCommandBuilder builder, String... inputFingerprints) {
+        if (builder.getOutput() == null || builder.getOutputs().size() != 1) {
+            throw new IllegalArgumentException("转码缓存要求构建器只有一个输出");
+        }
+        if (inputFingerprints.length != builder.getInputs().size()) {
+            throw new IllegalArgumentException("需要 " + builder.getInputs().size() + " 个输入指纹，实际为 "
+                    + inputFingerprints.length);
+        }
+        MessageDigest digest = sha256();
+        for (String fingerprint : inputFingerprints) {
+            update(digest, fingerprint);
+        }
+        for (String arg : canonicalArgs(builder)) {
+            update(digest, arg);
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * 规范化参数：输入、输出路径替换为序号，去掉日志、进度等不影响输出内容的选项，
+     * 滤镜脚本文件只保留按内容命名的文件名
+     *
+     * @param builder 构建器
+     * @return 规范化后的参数
+     */
+    static String[] canonicalArgs(FFmpegCommandBuilder builder) {
+        String[] args = builder.buildArgs();
+        String output = builder.getOutput();
+        String[] result = new String[args.length];
+        int count = 0;
+        int input = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (IGNORED_SWITCHES.contains(arg)) {
+                continue;
+            }
+            if (IGNORED_OPTIONS.contains(arg)) {
+                i++;
+                continue;
+            }
+            result[count++] = arg;
+            if (i + 1 < args.length && ("-i".equals(arg) || "-filter_complex_script".equals(arg))) {
+                i++;
+                result[count++] = "-i".equals(arg) ? "<input" + input++ + ">" : new File(args[i]).getName();
+            } else if (i == args.length - 1 && arg.equals(output)) {
+                // 输出格式由扩展名决定，保留扩展名
+                result[count - 1] = "<output" + extension(new File(output).getName()) + ">";
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * 计算本地文件的内容指纹：文件大小加全部内容的 SHA-256，文件复制、改名后指纹不变
+     * 只采样部分内容时，大小相同、采样处相同而其他位置不同的文件会命中错误的缓存，因此读取整个文件；
+     * 大文件反复转码时调用方可以自行缓存指纹（如按路径、大小、修改时间），
+     * 再通过 {@link #execute(FFmpegCommandBuilder, FFmpegExecutor, String...)} 传入
+     *
+     * @param file 文件
+     * @return 指纹
+     * @throws IOException 读取失败时
+     */
+    public static String fingerprint(File file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (FileInputStream in = new FileInputStream(file)) {
+            update(digest, Long.toString(in.getChannel().size()));
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * 获取缓存文件总大小
+     *
+     * @return 字节数
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 命中时更新使用顺序和修改时间（重启后按修改时间恢复顺序）
+     */
+    private boolean touch(String name, File cached) {
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                return false;
+            }
+        }
+        if (!cached.isFile()) {
+            remove(name);
+            return false;
+        }
+        cached.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    private void store(String name, File output) {
+        // 链接或复制在锁外进行，只有改名和更新索引加锁，与淘汰互斥
+        File temp = new File(dir, name + TEMP_SUFFIX);
+        try {
+            linkOrCopy(output, temp);
+        } catch (IOException e) {
+            // 写缓存失败不影响本次转码结果
+            temp.delete();
+            return;
+        }
+        long size = temp.length();
+        synchronized (this) {
+            if (!temp.renameTo(new File(dir, name))) {
+                temp.delete();
+                return;
+            }
+            Long old = entries.put(name, size);
+            totalBytes += size - (old != null ? old : 0);
+            evict();
+        }
+    }
+
+    /**
+     * 按最久未使用删除缓存文件，正在被命中的文件删除后，已建立的硬链接或已打开的文件不受影响，
+     * 尚未开始读取的命中会按未命中处理
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(dir, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private synchronized void remove(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    /**
+     * 优先创建硬链接，不占用额外空间；跨分区或系统不支持（Android 8.0 以下没有 java.nio.file）时复制
+     */
+    private static void linkOrCopy(File source, File target) throws IOException {
+        if (target.exists() && !target.delete()) {
+            throw new IOException("无法覆盖 " + target);
+        }
+        if (CREATE_LINK != null) {
+            try {
+                CREATE_LINK.invoke(null, TO_PATH.invoke(target), TO_PATH.invoke(source));
+                return;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 跨分区、文件系统不支持硬链接等，改为复制
+            }
+        }
+        try (FileChannel in = new FileInputStream(source).getChannel();
+             FileChannel out = new FileOutputStream(target).getChannel()) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } catch (IOException e) {
+            target.delete();
+            throw e;
+        }
+    }
+
+    private static Method method(String className, String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot) : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 每段前写入长度，避免 ["ab", "c"] 与 ["a", "bc"] 得到相同的哈希
+     */
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,285 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.EncodingProfile;
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+import com.bethena.ffmpegcmdbuilder.Option;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetricsListener;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 按任务结束时的倍速和 CPU 负载动态调整 {@link FFmpegJobQueue} 的并发数和每个任务的线程数
+ * 采用 AIMD（加性增、乘性减）：CPU 未饱和且任务倍速正常时，每完成约 limit 个任务并发数加 1；
+ * CPU 饱和，或每秒处理的像素数（倍速 x 源视频像素率）明显低于同一编码配置的基准时，并发数乘以 {@link #backoff(double)}；
+ * 像素率由 {@link #submit(FFmpegCommandBuilder, JobPriority, MediaInfo)} 按源文件的探测信息记录，没有记录的任务只按 CPU 负载调整，
+ * 否则 4K 任务的倍速天然比小视频低，会被误判为资源争抢；CPU 负载和像素吞吐量都未知时（如 Android 上未提供负载）
+ * 没有依据判断是否过载，并发数保持不变
+ * 每个任务的线程数按当前并发数均分核数（{@link EncodingProfile#threadsPerJob(int, int)}），
+ * 通过 {@link #submit(FFmpegCommandBuilder, JobPriority)} 在提交时写入命令
+ *
+ * <pre>
+ * FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 256);
+ * AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(queue, cores)
+ *         .limits(1, cores)
+ *         .forwardTo(registry);
+ * queue.setMetricsListener(controller);
+ * FFmpegJob job = controller.submit(builder, JobPriority.NORMAL, mediaInfo);
+ * </pre>
+ */
+public final class AdaptiveConcurrencyController implements JobMetricsListener {
+
+    /**
+     * 每秒处理的像素数低于基准的该比例时视为任务之间在争抢资源
+     */
+    private static final double SLOWDOWN_RATIO = 0.7;
+
+    /**
+     * 基准每个任务衰减的比例，编码内容变化后基准能逐渐跟上
+     */
+    private static final double BASELINE_DECAY = 0.98;
+
+    private final FFmpegJobQueue queue;
+    private final int cores;
+    private final Map<String, Double> baselines = new HashMap<>();
+    private int minConcurrency = 1;
+    private int maxConcurrency;
+    private double targetCpuLoad = 0.9;
+    private double backoff = 0.75;
+    private DoubleSupplier cpuLoad = AdaptiveConcurrencyController::systemCpuLoad;
+    private JobMetricsListener downstream;
+    private double limit;
+    /**
+     * 降低并发数后还要忽略的任务数，这些任务是在降低前启动的，不能反映新的并发数
+     */
+    private int cooldown;
+    private volatile int concurrency;
+
+    /**
+     * @param queue 要调整的任务队列，以队列当前的最大并发数为初始值
+     * @param cores 可用的 CPU 核数
+     */
+    public AdaptiveConcurrencyController(FFmpegJobQueue queue, int cores) {
+        if (cores < 1) {
+            throw new IllegalArgumentException("cores 必须大于 0");
+        }
+        this.queue = queue;
+        this.cores = cores;
+        maxConcurrency = cores;
+        concurrency = Math.min(queue.getMaxConcurrency(), maxConcurrency);
+        limit = concurrency;
+        queue.setMaxConcurrency(concurrency);
+    }
+
+    /**
+     * 设置并发数的调整范围，默认 1 到核数
+     *
+     * @param min 最小并发数
+     * @param max 最大并发数
+     * @return 控制器实例
+     */
+    public AdaptiveConcurrencyController limits(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("需要 1 <= min <= max");
+        }
+        int clamped;
+        synchronized (this) {
+            minConcurrency = min;
+            maxConcurrency = max;
+            limit = Math.max(min, Math.min(max, limit));
+            clamped = (int) limit;
+            concurrency = clamped;
+        }
+        // 队列回调监听器时持有队列锁，这里不能在持有本对象锁时再去获取队列锁
+        queue.setMaxConcurrency(clamped);
+        return this;
+    }
+
+    /**
+     * 设置目标 CPU 负载，超过时降低并发数，默认 0.9
+     *
+     * @param load 0~1 之间的负载
+     * @return 控制器实例
+     */
+    public synchronized AdaptiveConcurrencyController targetCpuLoad(double load) {
+        if (!(load > 0 && load <= 1)) {
+            throw new IllegalArgumentException("目标负载需要在 (0, 1] 之间");
+        }
+        targetCpuLoad = load;
+        return this;
+    }
+
+    /**
+     * 设置降低并发数时的乘数，默认 0.75
+     *
+     * @param factor 0~1 之间的乘数
+     * @return 控制器实例
+     */
+    public synchronized AdaptiveConcurrencyController backoff(double factor) {
+        if (!(factor > 0 && factor < 1)) {
+            throw new IllegalArgumentException("乘数需要在 (0, 1) 之间");
+        }
+        backoff = factor;
+        return this;
+    }
+
+    /**
+     * 设置 CPU 负载的来源，默认在 JVM 上使用系统平均负载除以核数，
+     * Android 等没有 java.lang.management 的环境下默认负载未知，需要自行提供（如读取 /proc/stat）
+     *
+     * @param supplier 返回 0~1 的负载，未知时返回 NaN，此时只按倍速调整
+     * @return 控制器实例
+     */
+    public synchronized AdaptiveConcurrencyController cpuLoad(DoubleSupplier supplier) {
+        cpuLoad = supplier;
+        return this;
+    }
+
+    /**
+     * 把任务指标继续转发给其他监听器（如 {@link com.bethena.ffmpegcmdbuilder.metrics.MetricsRegistry}），
+     * 队列只能设置一个监听器
+     *
+     * @param listener 下游监听器
+     * @return 控制器实例
+     */
+    public synchronized AdaptiveConcurrencyController forwardTo(JobMetricsListener listener) {
+        downstream = listener;
+        return this;
+    }
+
+    /**
+     * 按当前并发数设置命令的线程数后提交
+     * 线程数在提交时确定，排队期间并发数变化不会再改写已提交的命令
+     *
+     * @param builder  构建器
+     * @param priority 优先级
+     * @return 任务
+     * @throws InterruptedException 等待空位时被中断
+     */
+    public FFmpegJob submit(FFmpegCommandBuilder builder, JobPriority priority) throws InterruptedException {
+        return submit(builder, priority, null);
+    }
+
+    /**
+     * 按当前并发数设置命令的线程数后提交，并记录源文件的像素率，用于按像素吞吐量判断任务是否变慢
+     *
+     * @param builder  构建器
+     * @param priority 优先级
+     * @param source   源文件的探测信息，为 null 时只按 CPU 负载调整
+     * @return 任务
+     * @throws InterruptedException 等待空位时被中断
+     */
+    public FFmpegJob submit(FFmpegCommandBuilder builder, JobPriority priority, MediaInfo source)
+            throws InterruptedException {
+        applyTo(builder);
+        JobMetrics metrics = JobMetrics.of(builder);
+        if (source != null) {
+            metrics.recordSource(source);
+        }
+        return queue.submit(builder.buildArgs(), priority, metrics);
+    }
+
+    /**
+     * 按当前并发数设置命令的线程数；构建器已应用编码配置时重新按该配置分配
+     *
+     * @param builder 构建器
+     */
+    public void applyTo(FFmpegCommandBuilder builder) {
+        int jobs = concurrency;
+        EncodingProfile profile = builder.getProfile();
+        if (profile != null) {
+            profile.applyTo(builder, jobs, cores);
+            return;
+        }
+        String threads = String.valueOf(EncodingProfile.threadsPerJob(cores, jobs));
+        builder.option(Option.THREADS, threads)
+                .option(Option.FILTER_THREADS, threads)
+                .option(Option.FILTER_COMPLEX_THREADS, threads);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getThreadsPerJob() {
+        return EncodingProfile.threadsPerJob(cores, concurrency);
+    }
+
+    /**
+     * 由队列在任务结束时回调；只能设置为被控制队列的监听器，在其他线程上调用可能与队列锁互相等待
+     */
+    @Override
+    public void onJobCompleted(JobMetrics metrics) {
+        JobMetricsListener next;
+        synchronized (this) {
+            next = downstream;
+            adjust(metrics);
+        }
+        if (next != null) {
+            next.onJobCompleted(metrics);
+        }
+    }
+
+    /**
+     * 只有成功且有倍速的任务参与调整，失败和取消的任务不能说明机器的负载情况
+     */
+    private void adjust(JobMetrics metrics) {
+        double speed = metrics.getSpeedFactor();
+        if (metrics.getReturnCode() != 0 || !(speed > 0)) {
+            return;
+        }
+        // 同一配置下每个像素的编码开销相近，不同分辨率的任务按像素吞吐量比较
+        double throughput = speed * metrics.getInputPixelRate();
+        Double previous = null;
+        if (throughput > 0) {
+            previous = baselines.get(metrics.getProfile());
+            baselines.put(metrics.getProfile(),
+                    previous == null ? throughput : Math.max(throughput, previous * BASELINE_DECAY));
+        }
+        if (cooldown > 0) {
+            cooldown--;
+            return;
+        }
+        double load = cpuLoad.getAsDouble();
+        boolean saturated = load > targetCpuLoad;
+        boolean slowedDown = previous != null && throughput < previous * SLOWDOWN_RATIO;
+        if (saturated || slowedDown) {
+            update(Math.max(minConcurrency, limit * backoff));
+            cooldown = queue.getRunningCount();
+        } else if (load < targetCpuLoad || Double.isNaN(load) && previous != null) {
+            // 负载未知时只有吞吐量有基准且没有变慢才增加，都没有依据时保持不变
+            update(Math.min(maxConcurrency, limit + 1 / limit));
+        }
+    }
+
+    /**
+     * 只在队列回调中调用，此时已持有队列锁
+     */
+    private void update(double newLimit) {
+        limit = newLimit;
+        int rounded = (int) limit;
+        if (rounded != concurrency) {
+            concurrency = rounded;
+            queue.setMaxConcurrency(rounded);
+        }
+    }
+
+    /**
+     * 最近 1 分钟的系统平均负载除以核数，不可用时返回 NaN
+     * java.lang.management 不在 android.jar 中，通过反射调用
+     */
+    static double systemCpuLoad() {
+        try {
+            Object bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getOperatingSystemMXBean").invoke(null);
+            Class<?> type = Class.forName("java.lang.management.OperatingSystemMXBean");
+            double average = (Double) type.getMethod("getSystemLoadAverage").invoke(bean);
+            return average < 0 ? Double.NaN : average / Runtime.getRuntime().availableProcessors();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+}
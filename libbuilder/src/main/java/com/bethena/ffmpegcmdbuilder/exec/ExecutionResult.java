@@ -0,0 +1,64 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+/**
+ * 命令执行结果
+ */
+public final class ExecutionResult {
+
+    /**
+     * FFmpeg 被取消（收到 SIGINT/SIGTERM 或 FFmpegKit.cancel）时的返回码
+     */
+    public static final int RETURN_CODE_CANCEL = 255;
+
+    /**
+     * 执行器因超时结束命令时的返回码
+     */
+    public static final int RETURN_CODE_TIMEOUT = 124;
+
+    private final int returnCode;
+    private final String message;
+
+    public ExecutionResult(int returnCode, String message) {
+        this.returnCode = returnCode;
+        this.message = message;
+    }
+
+    public static ExecutionResult success() {
+        return new ExecutionResult(0, null);
+    }
+
+    /**
+     * 获取返回码
+     *
+     * @return 返回码，0 表示成功
+     */
+    public int getReturnCode() {
+        return returnCode;
+    }
+
+    /**
+     * 获取失败原因
+     *
+     * @return 失败原因（通常是 FFmpeg 日志的最后几行），成功时为 null
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccess() {
+        return returnCode == 0;
+    }
+
+    public boolean isCancelled() {
+        return returnCode == RETURN_CODE_CANCEL;
+    }
+
+    public boolean isTimedOut() {
+        return returnCode == RETURN_CODE_TIMEOUT;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionResult{returnCode=" + returnCode + (message != null ? ", message=" + message : "") + "}";
+    }
+}
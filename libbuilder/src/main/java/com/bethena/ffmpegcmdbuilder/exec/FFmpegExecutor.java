@@ -0,0 +1,66 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetricsListener;
+
+/**
+ * FFmpeg 命令执行器
+ * 执行器负责真正运行一条命令（FFmpegKit、本地进程或测试用的假实现），
+ * 调用线程被中断时应尽快终止正在运行的命令并抛出 InterruptedException
+ */
+public interface FFmpegExecutor {
+
+    /**
+     * 同步执行命令
+     *
+     * @param args 参数数组（不含可执行文件名）
+     * @return 执行结果
+     * @throws InterruptedException 调用线程被中断，命令已被取消
+     */
+    ExecutionResult execute(String[] args) throws InterruptedException;
+
+    /**
+     * 同步执行命令并记录指标，能取得启动耗时、进度的执行器应覆盖此方法
+     * 执行总耗时由调用方记录
+     *
+     * @param args    参数数组（不含可执行文件名）
+     * @param metrics 任务指标
+     * @return 执行结果
+     * @throws InterruptedException 调用线程被中断，命令已被取消
+     */
+    default ExecutionResult execute(String[] args, JobMetrics metrics) throws InterruptedException {
+        return execute(args);
+    }
+
+    /**
+     * 不经过 {@link FFmpegJobQueue} 直接执行命令时使用：记录执行总耗时和结果，结束后回调监听器
+     * 被中断时按取消记录，抛出异常时按失败记录，异常继续抛出
+     *
+     * @param args     参数数组（不含可执行文件名）
+     * @param metrics  任务指标
+     * @param listener 指标监听器，为 null 时只记录不回调
+     * @return 执行结果
+     * @throws InterruptedException 调用线程被中断，命令已被取消
+     */
+    default ExecutionResult execute(String[] args, JobMetrics metrics, JobMetricsListener listener)
+            throws InterruptedException {
+        long started = System.nanoTime();
+        ExecutionResult result = null;
+        try {
+            result = execute(args, metrics);
+            return result;
+        } catch (InterruptedException e) {
+            result = new ExecutionResult(ExecutionResult.RETURN_CODE_CANCEL, null);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            result = new ExecutionResult(-1, e.toString());
+            throw e;
+        } finally {
+            metrics.recordEncode(System.nanoTime() - started);
+            metrics.complete(result);
+            if (listener != null) {
+                listener.onJobCompleted(metrics);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提交到 {@link FFmpegJobQueue} 的任务
+ */
+public final class FFmpegJob {
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED
+    }
+
+    private final long id;
+    private final String[] args;
+    private final JobPriority priority;
+    private final FFmpegJobQueue queue;
+    private final JobMetrics metrics;
+    private final long submittedNanos = System.nanoTime();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile State state = State.QUEUED;
+    private volatile ExecutionResult result;
+    private Thread worker;
+    private boolean cancelRequested;
+
+    FFmpegJob(long id, String[] args, JobPriority priority, JobMetrics metrics, FFmpegJobQueue queue) {
+        this.id = id;
+        this.args = args;
+        this.priority = priority;
+        this.metrics = metrics;
+        this.queue = queue;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return 参数数组的副本
+     */
+    public String[] getArgs() {
+        return args.clone();
+    }
+
+    String[] args() {
+        return args;
+    }
+
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return 任务指标，执行过程中持续更新
+     */
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * 获取执行结果
+     *
+     * @return 执行结果，未结束时为 null
+     */
+    public ExecutionResult getResult() {
+        return result;
+    }
+
+    /**
+     * 等待任务结束
+     *
+     * @return 执行结果
+     * @throws InterruptedException 等待时被中断
+     */
+    public ExecutionResult await() throws InterruptedException {
+        done.await();
+        return result;
+    }
+
+    /**
+     * 在限定时间内等待任务结束
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 执行结果，超时返回 null
+     * @throws InterruptedException 等待时被中断
+     */
+    public ExecutionResult await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit) ? result : null;
+    }
+
+    /**
+     * 取消任务：排队中的任务直接移出队列，运行中的任务中断执行线程，由执行器终止 FFmpeg
+     *
+     * @return 是否取消成功，已结束的任务返回 false
+     */
+    public boolean cancel() {
+        return queue.cancel(this);
+    }
+
+    // 以下方法只在 FFmpegJobQueue 持锁时调用
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    Thread getWorker() {
+        return worker;
+    }
+
+    void setWorker(Thread worker) {
+        this.worker = worker;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    void complete(State state, ExecutionResult result) {
+        this.result = result;
+        this.state = state;
+        done.countDown();
+    }
+
+    @Override
+    public String toString() {
+        return "FFmpegJob{id=" + id + ", priority=" + priority + ", state=" + state + "}";
+    }
+}
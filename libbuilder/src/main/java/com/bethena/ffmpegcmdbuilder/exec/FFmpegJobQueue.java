@@ -0,0 +1,418 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetricsListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FFmpeg 任务队列
+ * 限制同时运行的任务数，按优先级通道调度，支持取消；排队任务数达到上限时，
+ * {@link #submit(String[], JobPriority)} 阻塞调用方，{@link #trySubmit(String[], JobPriority)} 直接拒绝，
+ * 从而把突发负载挡在提交端，而不是一次启动过多的转码把机器拖垮
+ *
+ * <pre>
+ * FFmpegJobQueue queue = new FFmpegJobQueue(executor, 2, 64);
+ * FFmpegJob job = queue.submit(builder.buildArgs(), JobPriority.HIGH);
+ * ExecutionResult result = job.await();
+ * </pre>
+ */
+public final class FFmpegJobQueue {
+
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+
+    private final FFmpegExecutor executor;
+    private final Semaphore capacity;
+    private final ExecutorService workers;
+    private final AtomicLong ids = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition terminated = lock.newCondition();
+    private final List<ArrayDeque<FFmpegJob>> lanes = new ArrayList<>(PRIORITIES.length);
+    private final Set<FFmpegJob> running = new HashSet<>();
+    private int maxConcurrency;
+    private boolean shutdown;
+    private volatile JobMetricsListener metricsListener;
+
+    /**
+     * @param executor       命令执行器
+     * @param maxConcurrency 同时运行的最大任务数
+     * @param capacity       排队（未开始运行）的最大任务数
+     */
+    public FFmpegJobQueue(FFmpegExecutor executor, int maxConcurrency, int capacity) {
+        if (maxConcurrency < 1 || capacity < 1) {
+            throw new IllegalArgumentException("maxConcurrency 和 capacity 必须大于 0");
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.capacity = new Semaphore(capacity);
+        this.workers = Executors.newCachedThreadPool(new WorkerThreadFactory());
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            lanes.add(new ArrayDeque<FFmpegJob>());
+        }
+    }
+
+    /**
+     * 提交任务，队列已满时阻塞直到有空位
+     *
+     * @param args     参数数组
+     * @param priority 优先级
+     * @return 任务
+     * @throws InterruptedException       等待空位时被中断
+     * @throws RejectedExecutionException 队列已关闭
+     */
+    public FFmpegJob submit(String[] args, JobPriority priority) throws InterruptedException {
+        return submit(args, priority, new JobMetrics(null));
+    }
+
+    /**
+     * 提交构建器生成的命令，指标按构建器的编码配置分类，并统计本地输入输出文件的大小
+     *
+     * @param builder  构建器
+     * @param priority 优先级
+     * @return 任务
+     * @throws InterruptedException 等待空位时被中断
+     */
+    public FFmpegJob submit(FFmpegCommandBuilder builder, JobPriority priority) throws InterruptedException {
+        return submit(builder.buildArgs(), priority, JobMetrics.of(builder));
+    }
+
+    /**
+     * 提交任务并指定任务指标（如已记录探测耗时），队列已满时阻塞直到有空位
+     *
+     * @param args     参数数组
+     * @param priority 优先级
+     * @param metrics  任务指标
+     * @return 任务
+     * @throws InterruptedException 等待空位时被中断
+     */
+    public FFmpegJob submit(String[] args, JobPriority priority, JobMetrics metrics) throws InterruptedException {
+        capacity.acquire();
+        return enqueue(args, priority, metrics);
+    }
+
+    /**
+     * 提交任务，队列已满时最多等待指定时间
+     *
+     * @param args     参数数组
+     * @param priority 优先级
+     * @param timeout  超时时间
+     * @param unit     时间单位
+     * @return 任务，超时返回 null
+     * @throws InterruptedException 等待空位时被中断
+     */
+    public FFmpegJob submit(String[] args, JobPriority priority, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return capacity.tryAcquire(timeout, unit) ? enqueue(args, priority, new JobMetrics(null)) : null;
+    }
+
+    /**
+     * 尝试提交任务，队列已满时立即返回
+     *
+     * @param args     参数数组
+     * @param priority 优先级
+     * @return 任务，队列已满返回 null
+     */
+    public FFmpegJob trySubmit(String[] args, JobPriority priority) {
+        return capacity.tryAcquire() ? enqueue(args, priority, new JobMetrics(null)) : null;
+    }
+
+    private FFmpegJob enqueue(String[] args, JobPriority priority, JobMetrics metrics) {
+        FFmpegJob job = new FFmpegJob(ids.incrementAndGet(), args, priority, metrics, this);
+        lock.lock();
+        try {
+            if (shutdown) {
+                capacity.release();
+                throw new RejectedExecutionException("队列已关闭");
+            }
+            lanes.get(priority.ordinal()).addLast(job);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return job;
+    }
+
+    /**
+     * 设置任务指标监听器，每个任务结束时回调一次（包括排队中被取消的任务）
+     * 可能在持有队列锁时调用，监听器不能阻塞
+     *
+     * @param listener 监听器，为 null 时不再回调
+     */
+    public void setMetricsListener(JobMetricsListener listener) {
+        metricsListener = listener;
+    }
+
+    /**
+     * 调整同时运行的最大任务数，调大时立即启动排队中的任务，调小时不影响已在运行的任务
+     *
+     * @param maxConcurrency 最大任务数
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency 必须大于 0");
+        }
+        lock.lock();
+        try {
+            this.maxConcurrency = maxConcurrency;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxConcurrency() {
+        lock.lock();
+        try {
+            return maxConcurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return running.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (ArrayDeque<FFmpegJob> lane : lanes) {
+                count += lane.size();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不再接受新任务，已提交的任务继续执行
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            tryTerminate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不再接受新任务，并取消所有排队和运行中的任务
+     */
+    public void shutdownNow() {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (ArrayDeque<FFmpegJob> lane : lanes) {
+                FFmpegJob job;
+                while ((job = lane.pollFirst()) != null) {
+                    capacity.release();
+                    job.complete(FFmpegJob.State.CANCELLED, cancelledResult());
+                    reportMetrics(job);
+                }
+            }
+            for (FFmpegJob job : running) {
+                job.requestCancel();
+            }
+            tryTerminate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待关闭后所有任务结束
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 是否已全部结束
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!isTerminated()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean cancel(FFmpegJob job) {
+        lock.lock();
+        try {
+            switch (job.getState()) {
+                case QUEUED:
+                    if (lanes.get(job.getPriority().ordinal()).remove(job)) {
+                        capacity.release();
+                        job.complete(FFmpegJob.State.CANCELLED, cancelledResult());
+                        reportMetrics(job);
+                        tryTerminate();
+                        return true;
+                    }
+                    return false;
+                case RUNNING:
+                    if (job.isCancelRequested()) {
+                        return false;
+                    }
+                    job.requestCancel();
+                    return true;
+                default:
+                    return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在持锁状态下按优先级启动排队任务，直到达到并发上限
+     */
+    private void dispatch() {
+        while (running.size() < maxConcurrency) {
+            FFmpegJob job = null;
+            for (ArrayDeque<FFmpegJob> lane : lanes) {
+                job = lane.pollFirst();
+                if (job != null) {
+                    break;
+                }
+            }
+            if (job == null) {
+                return;
+            }
+            capacity.release();
+            job.setState(FFmpegJob.State.RUNNING);
+            running.add(job);
+            FFmpegJob started = job;
+            workers.execute(() -> run(started));
+        }
+    }
+
+    private void run(FFmpegJob job) {
+        JobMetrics metrics = job.getMetrics();
+        long started = System.nanoTime();
+        metrics.recordQueueWait(started - job.getSubmittedNanos());
+        lock.lock();
+        try {
+            if (job.isCancelRequested()) {
+                finish(job, FFmpegJob.State.CANCELLED, cancelledResult());
+                return;
+            }
+            job.setWorker(Thread.currentThread());
+        } finally {
+            lock.unlock();
+        }
+
+        ExecutionResult result = null;
+        FFmpegJob.State state = FFmpegJob.State.FAILED;
+        try {
+            result = executor.execute(job.args(), metrics);
+            state = result.isSuccess() ? FFmpegJob.State.SUCCEEDED
+                    : result.isCancelled() ? FFmpegJob.State.CANCELLED : FFmpegJob.State.FAILED;
+        } catch (InterruptedException e) {
+            result = cancelledResult();
+            state = FFmpegJob.State.CANCELLED;
+        } catch (RuntimeException | Error e) {
+            // Error 记录后继续抛出，任务仍要在 finally 中结束，否则会一直占着并发名额
+            result = new ExecutionResult(-1, e.toString());
+            state = FFmpegJob.State.FAILED;
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        } finally {
+            metrics.recordEncode(System.nanoTime() - started);
+            lock.lock();
+            try {
+                job.setWorker(null);
+                // 清除取消时可能残留的中断标记，避免影响线程池复用该线程
+                Thread.interrupted();
+                finish(job, state, result);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void finish(FFmpegJob job, FFmpegJob.State state, ExecutionResult result) {
+        running.remove(job);
+        job.complete(state, result);
+        reportMetrics(job);
+        dispatch();
+        tryTerminate();
+    }
+
+    private void reportMetrics(FFmpegJob job) {
+        job.getMetrics().complete(job.getResult());
+        JobMetricsListener listener = metricsListener;
+        if (listener != null) {
+            try {
+                listener.onJobCompleted(job.getMetrics());
+            } catch (RuntimeException e) {
+                // 统计出错不能影响任务调度
+            }
+        }
+    }
+
+    private boolean isTerminated() {
+        if (!shutdown || !running.isEmpty()) {
+            return false;
+        }
+        for (ArrayDeque<FFmpegJob> lane : lanes) {
+            if (!lane.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void tryTerminate() {
+        if (isTerminated()) {
+            workers.shutdown();
+            terminated.signalAll();
+        }
+    }
+
+    private static ExecutionResult cancelledResult() {
+        return new ExecutionResult(ExecutionResult.RETURN_CODE_CANCEL, "cancelled");
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ffmpeg-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
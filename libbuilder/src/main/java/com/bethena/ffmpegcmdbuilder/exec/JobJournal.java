@@ -0,0 +1,650 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.CommandSerializer;
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetricsListener;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的任务日志，进程崩溃或重启后恢复未完成的任务，已完成的任务不再重复执行
+ * 每个任务提交时追加一条提交记录（紧凑格式的命令、优先级、编码配置），结束时追加一条完成记录；
+ * 记录带长度和 CRC32，末尾写了一半的记录在打开时被截掉
+ * 提交记录写入后即进入系统缓存，进程被杀不会丢失；完成记录在队列回调中只放入内存队列，
+ * 由后台线程按固定间隔批量写入并 fsync，回调中不做文件读写，不会拖住持有队列锁的线程；
+ * 断电或系统崩溃时可能丢失最后一个间隔内的记录，对应的任务下次启动时重新执行
+ * 已完成的记录达到阈值后由后台线程在锁外重写日志，只保留未完成的任务，替换文件时才短暂持锁
+ * 只使用 API 24 可用的文件接口（RandomAccessFile、File.renameTo）
+ *
+ * <pre>
+ * JobJournal journal = JobJournal.open(new File(dataDir, "jobs.journal"));
+ * queue.setMetricsListener(journal.forwardTo(registry));
+ * journal.resume(queue);                       // 重新提交上次未完成的任务
+ * journal.submit(queue, builder, JobPriority.LOW);
+ * ...
+ * journal.close();                             // 先关闭日志再 shutdownNow，被取消的任务下次启动时继续
+ * queue.shutdownNow();
+ * </pre>
+ */
+public final class JobJournal implements JobMetricsListener, Closeable {
+
+    /**
+     * 文件头 "FFJ1"
+     */
+    private static final int MAGIC = 0x46464a31;
+    private static final byte TYPE_SUBMIT = 1;
+    private static final byte TYPE_FINISH = 2;
+    /**
+     * 单条记录的最大长度，超过时视为损坏
+     */
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final int DEFAULT_COMPACT_THRESHOLD = 1024;
+
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+
+    private final File file;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 未完成的任务，按提交顺序
+     */
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    /**
+     * 已提交到队列的任务，按指标对象找到日志中的任务
+     */
+    private final Map<JobMetrics, Entry> submitted = new ConcurrentHashMap<>();
+    /**
+     * 已结束、还没写入日志的任务
+     */
+    private final Queue<Finish> finished = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private long nextId = 1;
+    /**
+     * 日志中已失效（任务已完成）的记录数
+     */
+    private int deadRecords;
+    private int compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    private boolean dirty;
+    private boolean closed;
+    private IOException failure;
+    private volatile JobMetricsListener downstream;
+
+    private JobJournal(File file) {
+        this.file = file;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ffmpeg-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 打开日志，每 200 毫秒批量 fsync 一次
+     *
+     * @param file 日志文件，不存在时创建
+     * @return 日志
+     * @throws IOException 读写失败或文件不是任务日志时
+     */
+    public static JobJournal open(File file) throws IOException {
+        return open(file, 200, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 打开日志并读取未完成的任务
+     *
+     * @param file         日志文件，不存在时创建
+     * @param syncInterval 批量 fsync 的间隔
+     * @param unit         时间单位
+     * @return 日志
+     * @throws IOException 读写失败或文件不是任务日志时
+     */
+    public static JobJournal open(File file, long syncInterval, TimeUnit unit) throws IOException {
+        if (syncInterval <= 0) {
+            throw new IllegalArgumentException("fsync 间隔必须大于 0");
+        }
+        JobJournal journal = new JobJournal(file);
+        try {
+            journal.load();
+        } catch (IOException | RuntimeException e) {
+            journal.flusher.shutdown();
+            throw e;
+        }
+        journal.flusher.scheduleWithFixedDelay(journal::tick, syncInterval, syncInterval, unit);
+        return journal;
+    }
+
+    /**
+     * 设置重写日志的阈值：已完成的记录数达到该值且不少于未完成的任务数时重写，默认 1024
+     *
+     * @param records 记录数
+     * @return 日志实例
+     */
+    public JobJournal compactAfter(int records) {
+        if (records < 1) {
+            throw new IllegalArgumentException("阈值必须大于 0");
+        }
+        lock.lock();
+        try {
+            compactThreshold = records;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * 把任务指标继续转发给其他监听器，队列只能设置一个监听器
+     *
+     * @param listener 下游监听器
+     * @return 日志实例
+     */
+    public JobJournal forwardTo(JobMetricsListener listener) {
+        downstream = listener;
+        return this;
+    }
+
+    /**
+     * 记录并提交构建器生成的命令
+     *
+     * @param queue    任务队列，需要把本日志设置为它的指标监听器
+     * @param builder  构建器
+     * @param priority 优先级
+     * @return 任务
+     * @throws IOException          写入日志失败
+     * @throws InterruptedException 等待队列空位时被中断
+     */
+    public FFmpegJob submit(FFmpegJobQueue queue, FFmpegCommandBuilder builder, JobPriority priority)
+            throws IOException, InterruptedException {
+        JobMetrics metrics = JobMetrics.of(builder);
+        return enqueue(queue, append(builder.buildArgs(), priority, metrics.getProfile()), metrics);
+    }
+
+    /**
+     * 记录并提交命令
+     *
+     * @param queue    任务队列，需要把本日志设置为它的指标监听器
+     * @param args     参数数组
+     * @param priority 优先级
+     * @return 任务
+     * @throws IOException          写入日志失败
+     * @throws InterruptedException 等待队列空位时被中断
+     */
+    public FFmpegJob submit(FFmpegJobQueue queue, String[] args, JobPriority priority)
+            throws IOException, InterruptedException {
+        return enqueue(queue, append(args.clone(), priority, null), new JobMetrics(null));
+    }
+
+    /**
+     * 按原来的提交顺序和优先级重新提交日志中未完成的任务，已经在本进程中提交过的任务不会重复提交
+     *
+     * @param queue 任务队列，需要把本日志设置为它的指标监听器
+     * @return 重新提交的任务
+     * @throws InterruptedException 等待队列空位时被中断
+     */
+    public List<FFmpegJob> resume(FFmpegJobQueue queue) throws InterruptedException {
+        List<FFmpegJob> jobs = new ArrayList<>();
+        for (Entry entry : getPending()) {
+            if (entry.claim()) {
+                jobs.add(enqueue(queue, entry, new JobMetrics(entry.profile)));
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * 获取未完成的任务，包括已在本进程中提交但还没结束的任务；
+     * 任务结束后要等后台线程写入完成记录（最多一个 fsync 间隔）才从中移除
+     *
+     * @return 按提交顺序排列的任务
+     */
+    public List<Entry> getPending() {
+        lock.lock();
+        try {
+            return new ArrayList<>(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onJobCompleted(JobMetrics metrics) {
+        Entry entry = submitted.remove(metrics);
+        if (entry != null) {
+            finish(entry, metrics.getReturnCode());
+        }
+        JobMetricsListener next = downstream;
+        if (next != null) {
+            next.onJobCompleted(metrics);
+        }
+    }
+
+    /**
+     * 立即写入已结束任务的完成记录，并 fsync 尚未落盘的记录
+     *
+     * @throws IOException 写入失败，包括后台 fsync、写完成记录时发生的失败
+     */
+    public void sync() throws IOException {
+        FileChannel current;
+        lock.lock();
+        try {
+            if (!closed) {
+                writeFinished();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (!dirty || closed) {
+                return;
+            }
+            dirty = false;
+            current = channel;
+        } finally {
+            lock.unlock();
+        }
+        // fsync 不持锁，期间其他线程可以继续追加，下一次 fsync 一并落盘
+        try {
+            current.force(false);
+        } catch (ClosedChannelException e) {
+            // 重写日志时旧文件被关闭，新文件在替换前已经落盘
+        }
+    }
+
+    /**
+     * 写入已结束任务的完成记录，fsync 并关闭日志；之后结束的任务不再记录，下次打开时仍视为未完成
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flusher.shutdown();
+            try {
+                writeFinished();
+                if (dirty) {
+                    channel.force(false);
+                }
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FFmpegJob enqueue(FFmpegJobQueue queue, Entry entry, JobMetrics metrics) throws InterruptedException {
+        submitted.put(metrics, entry);
+        try {
+            return queue.submit(entry.args, entry.priority, metrics);
+        } catch (InterruptedException | RuntimeException e) {
+            // 没能进入队列，调用方会收到异常并自行决定是否重试，日志中不再保留
+            submitted.remove(metrics);
+            finish(entry, ExecutionResult.RETURN_CODE_CANCEL);
+            throw e;
+        }
+    }
+
+    private Entry append(String[] args, JobPriority priority, String profile) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("日志已关闭");
+            }
+            Entry entry = new Entry(nextId++, priority, profile, args);
+            entry.claim();
+            write(encodeSubmit(entry));
+            pending.put(entry.id, entry);
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在队列的回调中调用，不持锁也不读写文件，完成记录由后台线程写入
+     */
+    private void finish(Entry entry, int returnCode) {
+        finished.add(new Finish(entry.id, returnCode));
+    }
+
+    /**
+     * 在持锁状态下写入队列中的完成记录
+     */
+    private void writeFinished() {
+        Finish finish;
+        while ((finish = finished.poll()) != null) {
+            if (pending.remove(finish.id) == null) {
+                continue;
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(TYPE_FINISH);
+                out.writeLong(finish.id);
+                out.writeInt(finish.returnCode);
+                write(bytes.toByteArray());
+                deadRecords += 2;
+            } catch (IOException e) {
+                // 留到下一次 sync() 时报告；该任务下次启动时会重新执行
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private static byte[] encodeSubmit(Entry entry) throws IOException {
+        byte[] command = CommandSerializer.toCompact(entry.args);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(command.length + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_SUBMIT);
+        out.writeLong(entry.id);
+        out.writeByte(entry.priority.ordinal());
+        out.writeUTF(entry.profile == null ? "" : entry.profile);
+        out.write(command);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 在持锁状态下追加一条记录：长度、CRC32、内容
+     */
+    private void write(byte[] payload) throws IOException {
+        writeFully(channel, frame(payload));
+        dirty = true;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer buffer = ByteBuffer.allocate(4).putInt(MAGIC);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 读取日志并截掉末尾不完整或校验失败的记录
+     */
+    private void load() throws IOException {
+        long validEnd = 0;
+        if (file.length() > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("不是任务日志: " + file);
+                }
+                validEnd = 4;
+                byte[] payload;
+                while ((payload = readRecord(in)) != null) {
+                    replay(payload);
+                    validEnd += 8 + payload.length;
+                }
+            } catch (EOFException e) {
+                throw new IOException("不是任务日志: " + file, e);
+            }
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        if (validEnd == 0) {
+            channel.truncate(0);
+            writeFully(channel, header());
+            channel.force(true);
+        } else if (channel.size() > validEnd) {
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * @return 记录内容，到达文件末尾或遇到损坏的记录时返回 null
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        byte[] payload;
+        int crcValue;
+        try {
+            int length = in.readInt();
+            crcValue = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue() == crcValue ? payload : null;
+    }
+
+    private void replay(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        long id = in.readLong();
+        nextId = Math.max(nextId, id + 1);
+        if (type == TYPE_SUBMIT) {
+            int priority = in.readUnsignedByte();
+            String profile = in.readUTF();
+            String[] args;
+            try {
+                args = CommandSerializer.fromCompact(readRemaining(in));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("任务 " + id + " 的命令无法解析", e);
+            }
+            if (priority >= PRIORITIES.length) {
+                throw new IOException("任务 " + id + " 的优先级无效: " + priority);
+            }
+            pending.put(id, new Entry(id, PRIORITIES[priority], profile.isEmpty() ? null : profile, args));
+        } else if (type == TYPE_FINISH) {
+            if (pending.remove(id) != null) {
+                deadRecords++;
+            }
+            deadRecords++;
+        } else {
+            throw new IOException("未知的记录类型: " + type);
+        }
+    }
+
+    private static byte[] readRemaining(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 后台线程：写入完成记录并批量 fsync，必要时重写日志
+     */
+    private void tick() {
+        try {
+            sync();
+            compact();
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 只在后台线程调用：在锁外把未完成的任务写入临时文件并落盘，
+     * 再在持锁状态下补上重写期间追加的记录，重命名替换日志
+     */
+    private void compact() throws IOException {
+        List<Entry> live;
+        long from;
+        int dead;
+        lock.lock();
+        try {
+            if (closed || deadRecords < compactThreshold || deadRecords < pending.size()) {
+                return;
+            }
+            live = new ArrayList<>(pending.values());
+            from = channel.position();
+            dead = deadRecords;
+        } finally {
+            lock.unlock();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        FileChannel out = new RandomAccessFile(tmp, "rw").getChannel();
+        boolean replaced = false;
+        try {
+            out.truncate(0);
+            writeFully(out, header());
+            for (Entry entry : live) {
+                writeFully(out, frame(encodeSubmit(entry)));
+            }
+            out.force(true);
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                long end = channel.position();
+                while (from < end) {
+                    from += channel.transferTo(from, end - from, out);
+                }
+                out.force(true);
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("无法替换日志: " + file);
+                }
+                replaced = true;
+                // 临时文件已改名为日志，继续在它的末尾追加
+                channel.close();
+                channel = out;
+                deadRecords -= dead;
+                dirty = false;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (!replaced) {
+                out.close();
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * 日志中的任务
+     */
+    public static final class Entry {
+        private final long id;
+        private final JobPriority priority;
+        private final String profile;
+        private final String[] args;
+        private boolean claimed;
+
+        Entry(long id, JobPriority priority, String profile, String[] args) {
+            this.id = id;
+            this.priority = priority;
+            this.profile = profile;
+            this.args = args;
+        }
+
+        /**
+         * @return 日志中的任务序号，重启后保持不变
+         */
+        public long getId() {
+            return id;
+        }
+
+        public JobPriority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return 编码配置名称，没有时为 null
+         */
+        public String getProfile() {
+            return profile;
+        }
+
+        /**
+         * @return 参数数组的副本
+         */
+        public String[] getArgs() {
+            return args.clone();
+        }
+
+        /**
+         * 标记为已在本进程中提交
+         *
+         * @return 之前是否未提交
+         */
+        synchronized boolean claim() {
+            if (claimed) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{id=" + id + ", priority=" + priority + ", profile=" + profile + "}";
+        }
+    }
+
+    private static final class Finish {
+        final long id;
+        final int returnCode;
+
+        Finish(long id, int returnCode) {
+            this.id = id;
+            this.returnCode = returnCode;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+/**
+ * 任务优先级，队列总是先启动高优先级通道中的任务，同一通道内先进先出
+ */
+public enum JobPriority {
+    /**
+     * 用户正在等待的任务（如前台预览、导出）
+     */
+    HIGH,
+    /**
+     * 普通任务
+     */
+    NORMAL,
+    /**
+     * 后台批量任务
+     */
+    LOW
+}
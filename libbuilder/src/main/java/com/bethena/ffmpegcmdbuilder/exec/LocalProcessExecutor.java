@@ -0,0 +1,391 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 通过 ProcessBuilder 启动本地 ffmpeg 可执行文件的执行器，只用于 JVM 服务端，Android 上请使用 FFmpegKit
+ * 结束进程树用到的 ProcessHandle 等 JDK 9 接口不在 android.jar 中，通过反射调用，本类在 Android 上仍可编译
+ * 标准输出、标准错误由独立的线程读空，避免管道写满后 ffmpeg 阻塞；
+ * JDK 21 及以上使用虚拟线程，每个任务的读取线程几乎没有开销，低版本退回到守护线程池
+ * 超时或调用线程被中断时强制结束 ffmpeg 及其全部子进程
+ *
+ * <pre>
+ * LocalProcessExecutor executor = new LocalProcessExecutor("/usr/bin/ffmpeg")
+ *         .timeout(30, TimeUnit.MINUTES)
+ *         .logListener(new SegmentLogParser(listener)::feedLine);
+ * FFmpegJobQueue queue = new FFmpegJobQueue(executor, 8, 256);
+ * </pre>
+ */
+public final class LocalProcessExecutor implements FFmpegExecutor {
+
+    /**
+     * 失败时返回的日志行数
+     */
+    private static final int TAIL_LINES = 20;
+
+    /**
+     * 进程退出后等待读取线程读完剩余输出的时间
+     */
+    private static final long DRAIN_TIMEOUT_MS = 2000;
+
+    /**
+     * 被信号结束的进程在 JVM 中的退出码为 128 + 信号值
+     */
+    private static final int EXIT_SIGINT = 128 + 2;
+    private static final int EXIT_SIGTERM = 128 + 15;
+
+    private static final Pattern STATUS_TIME = Pattern.compile("time=\\s*(\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+    private static final Pattern STATUS_SPEED = Pattern.compile("speed=\\s*([0-9.]+)x");
+
+    private static final ExecutorService DRAINERS = createDrainers();
+
+    private static final Method DESCENDANTS = method("java.lang.Process", "descendants");
+    private static final Method PROCESS_DESTROY_FORCIBLY = method("java.lang.Process", "destroyForcibly");
+    private static final Method HANDLE_DESTROY_FORCIBLY = method("java.lang.ProcessHandle", "destroyForcibly");
+
+    private final String ffmpegPath;
+    private volatile long timeoutMillis;
+    private volatile File directory;
+    private volatile Consumer<String> logListener;
+
+    /**
+     * @param ffmpegPath ffmpeg 可执行文件路径，在 PATH 中时可以只写 ffmpeg
+     */
+    public LocalProcessExecutor(String ffmpegPath) {
+        if (ffmpegPath == null || ffmpegPath.isEmpty()) {
+            throw new IllegalArgumentException("ffmpeg 路径不能为空");
+        }
+        this.ffmpegPath = ffmpegPath;
+    }
+
+    /**
+     * 设置单条命令的最长运行时间，超时后结束进程并返回 {@link ExecutionResult#RETURN_CODE_TIMEOUT}
+     *
+     * @param timeout 超时时间，0 表示不限制
+     * @param unit    时间单位
+     * @return 执行器实例
+     */
+    public LocalProcessExecutor timeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("超时时间不能为负数");
+        }
+        timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * 设置工作目录，命令中的相对路径相对于该目录
+     *
+     * @param dir 工作目录，为 null 时使用当前进程的工作目录
+     * @return 执行器实例
+     */
+    public LocalProcessExecutor directory(File dir) {
+        directory = dir;
+        return this;
+    }
+
+    /**
+     * 设置标准错误（ffmpeg 日志）的逐行回调，在读取线程上调用，不能阻塞
+     * 可以接入 {@link com.bethena.ffmpegcmdbuilder.progress.SegmentLogParser#feedLine(CharSequence)} 等解析器
+     *
+     * @param listener 回调，为 null 时只保留最后几行用于失败信息
+     * @return 执行器实例
+     */
+    public LocalProcessExecutor logListener(Consumer<String> listener) {
+        logListener = listener;
+        return this;
+    }
+
+    @Override
+    public ExecutionResult execute(String[] args) throws InterruptedException {
+        return execute(args, null);
+    }
+
+    /**
+     * 执行命令，并从 ffmpeg 日志中记录启动耗时（到第一行日志）和状态行中的进度、倍速
+     * 需要进度时命令中不能带 -nostats
+     */
+    @Override
+    public ExecutionResult execute(String[] args, JobMetrics metrics) throws InterruptedException {
+        long started = System.nanoTime();
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add(ffmpegPath);
+        for (String arg : args) {
+            command.add(arg);
+        }
+        // 命令从参数中读取输入，标准输入接到空设备，避免 ffmpeg 等待终端输入
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectInput(ProcessBuilder.Redirect.from(nullFile()));
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            return new ExecutionResult(-1, "无法启动 ffmpeg: " + e.getMessage());
+        }
+
+        Tail tail = new Tail(TAIL_LINES, logListener, metrics, started);
+        Future<?> stdout = DRAINERS.submit(() -> discard(process.getInputStream()));
+        Future<?> stderr = DRAINERS.submit(() -> readLines(process.getErrorStream(), tail));
+        boolean timedOut = false;
+        try {
+            long timeout = timeoutMillis;
+            if (timeout > 0) {
+                timedOut = !waitFor(process, timeout);
+            } else {
+                process.waitFor();
+            }
+        } catch (InterruptedException e) {
+            killTree(process);
+            throw e;
+        }
+        if (timedOut) {
+            killTree(process);
+        }
+        awaitDrain(stdout, process.getInputStream());
+        awaitDrain(stderr, process.getErrorStream());
+
+        if (timedOut) {
+            return new ExecutionResult(ExecutionResult.RETURN_CODE_TIMEOUT,
+                    "超时（" + timeoutMillis + " ms）\n" + tail);
+        }
+        int exitCode = process.exitValue();
+        if (exitCode == 0) {
+            return ExecutionResult.success();
+        }
+        return new ExecutionResult(mapExitCode(exitCode), tail.toString());
+    }
+
+    /**
+     * ffmpeg 收到 SIGINT/SIGTERM 时通常自行退出并返回 255，来不及处理信号时 JVM 返回 128 + 信号值，
+     * 这几种情况都统一为取消；SIGKILL（如内存不足被系统结束）仍视为失败
+     */
+    static int mapExitCode(int exitCode) {
+        switch (exitCode) {
+            case EXIT_SIGINT:
+            case EXIT_SIGTERM:
+                return ExecutionResult.RETURN_CODE_CANCEL;
+            default:
+                return exitCode;
+        }
+    }
+
+    /**
+     * 等待进程退出，Process.waitFor(long, TimeUnit) 在 Android API 26 才有，这里轮询退出码
+     *
+     * @return 是否已退出
+     */
+    static boolean waitFor(Process process, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            try {
+                process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException e) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                Thread.sleep(Math.min(remaining, 20));
+            }
+        }
+    }
+
+    /**
+     * 先取得全部子孙进程再结束 ffmpeg，否则父进程退出后子进程会被过继而找不到
+     * 不支持 ProcessHandle 时只能结束 ffmpeg 本身
+     */
+    static void killTree(Process process) {
+        List<Object> descendants = new ArrayList<>();
+        if (DESCENDANTS != null) {
+            try {
+                ((Stream<?>) DESCENDANTS.invoke(process)).forEach(descendants::add);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 找不到子进程时仍然结束 ffmpeg
+            }
+        }
+        if (!invoke(PROCESS_DESTROY_FORCIBLY, process)) {
+            process.destroy();
+        }
+        for (Object handle : descendants) {
+            invoke(HANDLE_DESTROY_FORCIBLY, handle);
+        }
+        try {
+            waitFor(process, DRAIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean invoke(Method method, Object target) {
+        if (method == null) {
+            return false;
+        }
+        try {
+            method.invoke(target);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static Method method(String className, String name) {
+        try {
+            return Class.forName(className).getMethod(name);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static void awaitDrain(Future<?> drain, InputStream stream) throws InterruptedException {
+        try {
+            drain.get(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // 读取失败时已读到的日志仍然可用
+        } catch (TimeoutException e) {
+            // 脱离进程树的子进程仍持有管道时读取不会结束，关闭管道放弃剩余输出
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // 忽略
+            }
+        }
+    }
+
+    private static Void discard(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = in) {
+            while (stream.read(buffer) >= 0) {
+                // 丢弃
+            }
+        }
+        return null;
+    }
+
+    private static Void readLines(InputStream in, Tail tail) throws IOException {
+        // ffmpeg 的进度行以 \r 结尾，readLine 同样把它当作行尾
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    tail.add(line);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static File nullFile() {
+        return new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+    }
+
+    /**
+     * JDK 21 起使用虚拟线程；通过反射调用，低版本 JDK 和 Android 上也能加载本类
+     * 读取线程会一直阻塞到进程退出，固定大小的线程池在任务数超过线程数的一半时会互相等待，
+     * 因此退回到按需创建的守护线程池
+     */
+    private static ExecutorService createDrainers() {
+        try {
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(new DrainThreadFactory());
+        }
+    }
+
+    /**
+     * 解析状态行（frame=... time=00:01:02.50 bitrate=... speed=2.1x）中的进度
+     */
+    static void parseStatus(String line, JobMetrics metrics) {
+        Matcher time = STATUS_TIME.matcher(line);
+        Matcher speed = STATUS_SPEED.matcher(line);
+        long outTimeUs = -1;
+        if (time.find()) {
+            outTimeUs = (Long.parseLong(time.group(1)) * 3600 + Long.parseLong(time.group(2)) * 60) * 1_000_000L
+                    + Math.round(Double.parseDouble(time.group(3)) * 1_000_000);
+        }
+        metrics.recordProgress(outTimeUs, speed.find() ? Double.parseDouble(speed.group(1)) : Double.NaN);
+    }
+
+    /**
+     * 日志回调、指标和最后几行日志
+     */
+    private static final class Tail {
+        private final int max;
+        private final Consumer<String> listener;
+        private final JobMetrics metrics;
+        private final long startedNanos;
+        private final ArrayDeque<String> lines;
+        private boolean started;
+
+        Tail(int max, Consumer<String> listener, JobMetrics metrics, long startedNanos) {
+            this.max = max;
+            this.listener = listener;
+            this.metrics = metrics;
+            this.startedNanos = startedNanos;
+            lines = new ArrayDeque<>(max);
+        }
+
+        void add(String line) {
+            if (metrics != null) {
+                if (!started) {
+                    started = true;
+                    metrics.recordStartup(System.nanoTime() - startedNanos);
+                }
+                if (line.contains("speed=")) {
+                    parseStatus(line, metrics);
+                }
+            }
+            if (listener != null) {
+                listener.accept(line);
+            }
+            synchronized (lines) {
+                if (lines.size() == max) {
+                    lines.pollFirst();
+                }
+                lines.addLast(line);
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (lines) {
+                return String.join("\n", lines);
+            }
+        }
+    }
+
+    private static final class DrainThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ffmpeg-drain-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
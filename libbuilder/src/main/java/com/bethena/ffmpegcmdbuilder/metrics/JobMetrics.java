@@ -0,0 +1,250 @@
+package com.bethena.ffmpegcmdbuilder.metrics;
+
+import com.bethena.ffmpegcmdbuilder.EncodingProfile;
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.StreamInfo;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个任务的指标：排队、探测、进程启动、编码耗时，实时倍速和输入输出字节数
+ * 由任务队列、执行器在各阶段分别记录，未记录的耗时为 -1
+ */
+public final class JobMetrics {
+
+    /**
+     * 未设置编码配置时的分类名
+     */
+    public static final String DEFAULT_PROFILE = "default";
+
+    private final String profile;
+    private final List<String> outputs;
+    private volatile long queueWaitNanos = -1;
+    private volatile long probeNanos = -1;
+    private volatile long startupNanos = -1;
+    private volatile long encodeNanos = -1;
+    private volatile long mediaTimeUs = -1;
+    private volatile double reportedSpeed = Double.NaN;
+    private volatile double inputPixelRate = Double.NaN;
+    private volatile long bytesIn = -1;
+    private volatile long bytesOut = -1;
+    private volatile int returnCode;
+    private volatile boolean cacheHit;
+
+    /**
+     * @param profile 分类名（通常为编码配置名），为 null 时使用 {@link #DEFAULT_PROFILE}
+     */
+    public JobMetrics(String profile) {
+        this(profile, Collections.<String>emptyList());
+    }
+
+    private JobMetrics(String profile, List<String> outputs) {
+        this.profile = profile != null ? profile : DEFAULT_PROFILE;
+        this.outputs = outputs;
+    }
+
+    /**
+     * 按构建器创建：以编码配置分类，记录本地输入文件的总大小，任务结束时统计本地输出文件的大小
+     *
+     * @param builder 构建器
+     * @return 任务指标
+     */
+    public static JobMetrics of(FFmpegCommandBuilder builder) {
+        EncodingProfile profile = builder.getProfile();
+        JobMetrics metrics = new JobMetrics(profile != null ? profile.name() : null, builder.getOutputs());
+        metrics.bytesIn = localSize(builder.getInputs());
+        return metrics;
+    }
+
+    /**
+     * 本地文件的总大小，任何一个不是本地文件（管道、网络地址）时返回 -1
+     */
+    private static long localSize(List<String> paths) {
+        if (paths.isEmpty()) {
+            return -1;
+        }
+        long total = 0;
+        for (String path : paths) {
+            File file = new File(path);
+            if (!file.isFile()) {
+                return -1;
+            }
+            total += file.length();
+        }
+        return total;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * 记录排队耗时（提交到开始执行）
+     *
+     * @param nanos 纳秒
+     */
+    public void recordQueueWait(long nanos) {
+        queueWaitNanos = nanos;
+    }
+
+    /**
+     * 记录探测源文件的耗时，探测在提交前完成，由调用方记录
+     *
+     * @param nanos 纳秒
+     */
+    public void recordProbe(long nanos) {
+        probeNanos = nanos;
+    }
+
+    /**
+     * 记录源视频每秒的像素数（宽 x 高 x 帧率），倍速乘以该值得到每秒处理的像素数，
+     * 不同分辨率的任务之间才能比较快慢
+     *
+     * @param info 源文件的探测信息，没有视频流或帧率未知时不记录
+     */
+    public void recordSource(MediaInfo info) {
+        StreamInfo video = info.getVideoStream();
+        if (video != null && video.getFrameRate() > 0 && video.getWidth() > 0 && video.getHeight() > 0) {
+            inputPixelRate = (double) video.getWidth() * video.getHeight() * video.getFrameRate();
+        }
+    }
+
+    /**
+     * 记录命中了转码缓存，没有执行 FFmpeg
+     */
+    public void recordCacheHit() {
+        cacheHit = true;
+    }
+
+    /**
+     * 记录启动耗时（开始执行到 FFmpeg 输出第一行日志）
+     *
+     * @param nanos 纳秒
+     */
+    public void recordStartup(long nanos) {
+        startupNanos = nanos;
+    }
+
+    /**
+     * 记录执行总耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void recordEncode(long nanos) {
+        encodeNanos = nanos;
+    }
+
+    /**
+     * 记录最新进度
+     *
+     * @param outTimeUs 已输出的媒体时长（微秒）
+     * @param speed     FFmpeg 报告的倍速，未知时传 NaN
+     */
+    public void recordProgress(long outTimeUs, double speed) {
+        if (outTimeUs >= 0) {
+            mediaTimeUs = outTimeUs;
+        }
+        if (!Double.isNaN(speed)) {
+            reportedSpeed = speed;
+        }
+    }
+
+    /**
+     * 记录输入、输出字节数，已知的值传 -1 时保留原值
+     *
+     * @param in  输入字节数
+     * @param out 输出字节数
+     */
+    public void recordBytes(long in, long out) {
+        if (in >= 0) {
+            bytesIn = in;
+        }
+        if (out >= 0) {
+            bytesOut = out;
+        }
+    }
+
+    /**
+     * 任务结束时调用，记录返回码并统计输出文件大小
+     *
+     * @param result 执行结果
+     */
+    public void complete(ExecutionResult result) {
+        returnCode = result.getReturnCode();
+        if (bytesOut < 0) {
+            bytesOut = localSize(outputs);
+        }
+    }
+
+    public long getQueueWaitNanos() {
+        return queueWaitNanos;
+    }
+
+    public long getProbeNanos() {
+        return probeNanos;
+    }
+
+    public long getStartupNanos() {
+        return startupNanos;
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    public long getMediaTimeUs() {
+        return mediaTimeUs;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public int getReturnCode() {
+        return returnCode;
+    }
+
+    /**
+     * @return 是否命中了转码缓存
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * 实时倍速：输出媒体时长 / 执行耗时，2.0 表示 1 秒处理 2 秒的内容
+     * 没有进度时使用 FFmpeg 最后报告的倍速
+     *
+     * @return 倍速，未知时为 NaN
+     */
+    public double getSpeedFactor() {
+        long media = mediaTimeUs;
+        long encode = encodeNanos;
+        if (media > 0 && encode > 0) {
+            return media * 1000.0 / encode;
+        }
+        return reportedSpeed;
+    }
+
+    /**
+     * @return 源视频每秒的像素数，未记录时为 NaN
+     */
+    public double getInputPixelRate() {
+        return inputPixelRate;
+    }
+
+    @Override
+    public String toString() {
+        return "JobMetrics{profile=" + profile + ", returnCode=" + returnCode
+                + ", queueWaitNanos=" + queueWaitNanos + ", encodeNanos=" + encodeNanos
+                + ", speed=" + getSpeedFactor() + "}";
+    }
+}
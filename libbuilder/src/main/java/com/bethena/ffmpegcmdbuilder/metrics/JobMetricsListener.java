@@ -0,0 +1,17 @@
+package com.bethena.ffmpegcmdbuilder.metrics;
+
+/**
+ * 任务指标监听器，每个任务结束（成功、失败或取消）时回调一次
+ * 在执行任务的线程上调用，实现需线程安全且不能阻塞
+ *
+ * @see MetricsRegistry
+ */
+public interface JobMetricsListener {
+
+    /**
+     * 任务结束
+     *
+     * @param metrics 任务指标
+     */
+    void onJobCompleted(JobMetrics metrics);
+}
@@ -0,0 +1,136 @@
+package com.bethena.ffmpegcmdbuilder.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的直方图（与 HdrHistogram 相同的分桶方式），记录非负整数值
+ * 每个 2 的幂区间再等分为 16 个子桶，分位数的相对误差不超过 1/16；
+ * 小于 16 的值精确记录。记录只做原子自增，不加锁，可在任意线程并发调用
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一个值，负数按 0 记录
+     *
+     * @param value 值
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int highest = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (highest - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (highest - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long highestInBucket(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int highest = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (index - SUB_COUNT) % SUB_COUNT;
+        int shift = highest - SUB_BITS;
+        return (1L << highest) + ((long) sub << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * 取快照，记录仍在进行时快照各字段之间可能略有出入
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long maxValue = max.get();
+        // 总和与各桶不是同一时刻读取的，均值夹在 [0, max] 内，避免并发记录时越界
+        double mean = total > 0 ? Math.min(Math.max(0, (double) sum.sum() / total), maxValue) : 0;
+        return new Snapshot(total, mean, maxValue,
+                percentile(copy, total, 0.50, maxValue),
+                percentile(copy, total, 0.90, maxValue),
+                percentile(copy, total, 0.99, maxValue));
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final double mean;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+
+        Snapshot(long count, double mean, long max, long p50, long p90, long p99) {
+            this.count = count;
+            this.mean = mean;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+    }
+}
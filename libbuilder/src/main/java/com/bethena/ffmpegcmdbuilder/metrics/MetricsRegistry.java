@@ -0,0 +1,249 @@
+package com.bethena.ffmpegcmdbuilder.metrics;
+
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内置的任务指标汇总，按编码配置分别统计任务数、字节数和各阶段耗时的直方图
+ * 记录路径只有原子自增，不加锁，可直接作为 {@link JobMetricsListener} 挂到任务队列上
+ *
+ * <pre>
+ * MetricsRegistry registry = new MetricsRegistry();
+ * queue.setMetricsListener(registry);
+ * String json = registry.toJson();
+ * </pre>
+ */
+public final class MetricsRegistry implements JobMetricsListener {
+
+    /**
+     * 倍速直方图记录的是倍速乘以该值后的整数
+     */
+    private static final int SPEED_SCALE = 1000;
+
+    private final ConcurrentMap<String, ProfileMetrics> profiles = new ConcurrentHashMap<>();
+
+    @Override
+    public void onJobCompleted(JobMetrics metrics) {
+        ProfileMetrics stats = profiles.get(metrics.getProfile());
+        if (stats == null) {
+            ProfileMetrics created = new ProfileMetrics();
+            stats = profiles.putIfAbsent(metrics.getProfile(), created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.record(metrics);
+    }
+
+    /**
+     * 获取某个编码配置的统计
+     *
+     * @param profile 编码配置名
+     * @return 统计，没有记录过时为 null
+     */
+    public ProfileMetrics get(String profile) {
+        return profiles.get(profile);
+    }
+
+    /**
+     * 导出为 JSON，耗时单位为毫秒
+     *
+     * <pre>
+     * {"MAX_THROUGHPUT": {"succeeded": 10, "failed": 0, "cancelled": 1, "timedOut": 0, "cacheHits": 3,
+     *   "bytesIn": 1048576, "bytesOut": 524288, "mediaSeconds": 600.0,
+     *   "queueWaitMs": {"count": 11, "mean": 1.5, "p50": 1, "p90": 3, "p99": 5, "max": 5}, ...
+     *   "speed": {"count": 10, "mean": 2.1, "p50": 2.0, ...}}}
+     * </pre>
+     *
+     * @return JSON 文本
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, ProfileMetrics> entry : new TreeMap<>(profiles).entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, entry.getKey());
+            sb.append(':');
+            entry.getValue().appendJson(sb);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 单个编码配置的统计，耗时直方图以微秒为单位
+     */
+    public static final class ProfileMetrics {
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder mediaTimeUs = new LongAdder();
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram probe = new LatencyHistogram();
+        private final LatencyHistogram startup = new LatencyHistogram();
+        private final LatencyHistogram encode = new LatencyHistogram();
+        private final LatencyHistogram speed = new LatencyHistogram();
+
+        ProfileMetrics() {
+        }
+
+        void record(JobMetrics metrics) {
+            switch (metrics.getReturnCode()) {
+                case 0:
+                    succeeded.increment();
+                    break;
+                case ExecutionResult.RETURN_CODE_CANCEL:
+                    cancelled.increment();
+                    break;
+                case ExecutionResult.RETURN_CODE_TIMEOUT:
+                    timedOut.increment();
+                    break;
+                default:
+                    failed.increment();
+                    break;
+            }
+            if (metrics.isCacheHit()) {
+                cacheHits.increment();
+            }
+            addIfKnown(bytesIn, metrics.getBytesIn());
+            addIfKnown(bytesOut, metrics.getBytesOut());
+            addIfKnown(mediaTimeUs, metrics.getMediaTimeUs());
+            recordMicros(queueWait, metrics.getQueueWaitNanos());
+            recordMicros(probe, metrics.getProbeNanos());
+            recordMicros(startup, metrics.getStartupNanos());
+            recordMicros(encode, metrics.getEncodeNanos());
+            // 只有成功的任务倍速才有意义
+            double factor = metrics.getSpeedFactor();
+            if (metrics.getReturnCode() == 0 && factor > 0) {
+                speed.record(Math.round(factor * SPEED_SCALE));
+            }
+        }
+
+        private static void addIfKnown(LongAdder adder, long value) {
+            if (value >= 0) {
+                adder.add(value);
+            }
+        }
+
+        private static void recordMicros(LatencyHistogram histogram, long nanos) {
+            if (nanos >= 0) {
+                histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            }
+        }
+
+        public long getSucceeded() {
+            return succeeded.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getCancelled() {
+            return cancelled.sum();
+        }
+
+        public long getTimedOut() {
+            return timedOut.sum();
+        }
+
+        /**
+         * @return 命中转码缓存的任务数，包含在成功数中
+         */
+        public long getCacheHits() {
+            return cacheHits.sum();
+        }
+
+        public long getBytesIn() {
+            return bytesIn.sum();
+        }
+
+        public long getBytesOut() {
+            return bytesOut.sum();
+        }
+
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+
+        public LatencyHistogram getProbe() {
+            return probe;
+        }
+
+        public LatencyHistogram getStartup() {
+            return startup;
+        }
+
+        public LatencyHistogram getEncode() {
+            return encode;
+        }
+
+        /**
+         * @return 倍速直方图，记录值为倍速 x 1000
+         */
+        public LatencyHistogram getSpeed() {
+            return speed;
+        }
+
+        void appendJson(StringBuilder sb) {
+            sb.append("{\"succeeded\":").append(getSucceeded())
+                    .append(",\"failed\":").append(getFailed())
+                    .append(",\"cancelled\":").append(getCancelled())
+                    .append(",\"timedOut\":").append(getTimedOut())
+                    .append(",\"cacheHits\":").append(getCacheHits())
+                    .append(",\"bytesIn\":").append(getBytesIn())
+                    .append(",\"bytesOut\":").append(getBytesOut())
+                    .append(",\"mediaSeconds\":").append(format(mediaTimeUs.sum() / 1e6));
+            appendHistogram(sb, "queueWaitMs", queueWait.snapshot(), 1000);
+            appendHistogram(sb, "probeMs", probe.snapshot(), 1000);
+            appendHistogram(sb, "startupMs", startup.snapshot(), 1000);
+            appendHistogram(sb, "encodeMs", encode.snapshot(), 1000);
+            appendHistogram(sb, "speed", speed.snapshot(), SPEED_SCALE);
+            sb.append('}');
+        }
+
+        private static void appendHistogram(StringBuilder sb, String name, LatencyHistogram.Snapshot snapshot,
+                                            double divisor) {
+            sb.append(",\"").append(name).append("\":{\"count\":").append(snapshot.getCount())
+                    .append(",\"mean\":").append(format(snapshot.getMean() / divisor))
+                    .append(",\"p50\":").append(format(snapshot.getP50() / divisor))
+                    .append(",\"p90\":").append(format(snapshot.getP90() / divisor))
+                    .append(",\"p99\":").append(format(snapshot.getP99() / divisor))
+                    .append(",\"max\":").append(format(snapshot.getMax() / divisor))
+                    .append('}');
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
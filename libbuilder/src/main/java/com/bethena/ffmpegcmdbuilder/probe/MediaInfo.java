@@ -0,0 +1,95 @@
+package com.bethena.ffmpegcmdbuilder.probe;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 媒体文件信息，对应 ffprobe -show_format -show_streams 的输出
+ */
+public final class MediaInfo {
+
+    private final String formatName;
+    private final double duration;
+    private final long size;
+    private final long bitRate;
+    private final List<StreamInfo> streams;
+
+    MediaInfo(String formatName, double duration, long size, long bitRate, List<StreamInfo> streams) {
+        this.formatName = formatName;
+        this.duration = duration;
+        this.size = size;
+        this.bitRate = bitRate;
+        this.streams = Collections.unmodifiableList(streams);
+    }
+
+    /**
+     * @return 容器格式（如 mov,mp4,m4a,3gp,3g2,mj2），未知时为 null
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * @return 时长（秒），未知时为 -1
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return 文件大小（字节），未知时为 -1
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return 总码率（bit/s），未知时为 -1
+     */
+    public long getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * @return 所有流（只读）
+     */
+    public List<StreamInfo> getStreams() {
+        return streams;
+    }
+
+    /**
+     * 获取 FFmpeg 默认会选中的视频流：分辨率最高的视频流，不含封面图片
+     *
+     * @return 视频流，没有时返回 null
+     */
+    public StreamInfo getVideoStream() {
+        StreamInfo best = null;
+        for (StreamInfo stream : streams) {
+            if (stream.isVideo() && (best == null
+                    || (long) stream.getWidth() * stream.getHeight() > (long) best.getWidth() * best.getHeight())) {
+                best = stream;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 获取 FFmpeg 默认会选中的音频流：声道数最多的音频流
+     *
+     * @return 音频流，没有时返回 null
+     */
+    public StreamInfo getAudioStream() {
+        StreamInfo best = null;
+        for (StreamInfo stream : streams) {
+            if (stream.isAudio() && (best == null || stream.getChannels() > best.getChannels())) {
+                best = stream;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return "MediaInfo{" + formatName + ", " + duration + "s, " + size + " bytes, " + streams + "}";
+    }
+}
@@ -0,0 +1,431 @@
+package com.bethena.ffmpegcmdbuilder.probe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 媒体信息缓存
+ * 以（路径, 文件大小, 修改时间）为键缓存探测结果，文件被修改后自动失效。
+ * 内存中保留最近使用的若干条，其余保存在只追加的索引文件中，索引文件以内存映射方式读取，
+ * 命中时无需再次执行 ffprobe
+ *
+ * <pre>
+ * MediaInfoCache cache = new MediaInfoCache(new File(cacheDir, "media_info.idx"), 64);
+ * MediaInfo info = cache.get(file, () -&gt; MediaProbe.parse(probe(file)));
+ * </pre>
+ * 线程安全
+ */
+public final class MediaInfoCache implements Closeable {
+
+    /**
+     * 缓存未命中时加载媒体信息，通常是执行 ffprobe 后用 {@link MediaProbe#parse(String)} 解析
+     */
+    public interface Loader {
+        /**
+         * @return 媒体信息
+         * @throws IOException 探测失败时
+         */
+        MediaInfo load() throws IOException;
+    }
+
+    private static final int MAGIC = 0x46464D49; // "FFMI"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    /**
+     * 失效记录超过此数量且多于有效记录时，打开时压缩索引文件
+     */
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private final File indexFile;
+    private final Map<String, Record> memory;
+    private final Map<String, Record> disk = new HashMap<>();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long fileSize;
+
+    /**
+     * 打开缓存，索引文件不存在时创建，损坏的尾部记录（如写入时进程被杀）会被截断
+     *
+     * @param indexFile     索引文件
+     * @param memoryEntries 内存中最多保留的条数
+     * @throws IOException 读写索引文件失败时
+     */
+    public MediaInfoCache(File indexFile, int memoryEntries) throws IOException {
+        if (memoryEntries < 1) {
+            throw new IllegalArgumentException("memoryEntries 必须大于 0");
+        }
+        this.indexFile = indexFile;
+        this.memory = new LinkedHashMap<String, Record>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        open();
+        int dead = scan();
+        if (dead > COMPACT_THRESHOLD && dead > disk.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * 获取文件的媒体信息，未命中时调用 loader 加载并写入缓存
+     *
+     * @param mediaFile 媒体文件
+     * @param loader    加载器
+     * @return 媒体信息
+     * @throws IOException 加载或写入缓存失败时
+     */
+    public MediaInfo get(File mediaFile, Loader loader) throws IOException {
+        return get(mediaFile.getAbsolutePath(), mediaFile.length(), mediaFile.lastModified(), loader);
+    }
+
+    /**
+     * 获取媒体信息，未命中时调用 loader 加载并写入缓存
+     * 加载在锁外执行，同一文件被并发请求时可能加载多次，结果相同
+     *
+     * @param path         路径或 content:// 地址
+     * @param size         文件大小
+     * @param lastModified 修改时间
+     * @param loader       加载器
+     * @return 媒体信息
+     * @throws IOException 加载或写入缓存失败时
+     */
+    public MediaInfo get(String path, long size, long lastModified, Loader loader) throws IOException {
+        MediaInfo info = getIfPresent(path, size, lastModified);
+        if (info == null) {
+            info = loader.load();
+            put(path, size, lastModified, info);
+        }
+        return info;
+    }
+
+    /**
+     * 只查询缓存，不加载
+     *
+     * @param path         路径或 content:// 地址
+     * @param size         文件大小
+     * @param lastModified 修改时间
+     * @return 媒体信息，未命中或文件已修改时返回 null
+     * @throws IOException 读取索引文件失败时
+     */
+    public synchronized MediaInfo getIfPresent(String path, long size, long lastModified) throws IOException {
+        Record entry = memory.get(path);
+        if (entry != null && entry.matches(size, lastModified)) {
+            return entry.info;
+        }
+        entry = disk.get(path);
+        if (entry == null || !entry.matches(size, lastModified)) {
+            return null;
+        }
+        if (entry.info == null) {
+            entry = new Record(entry.size, entry.lastModified, entry.offset, readInfo(entry.offset));
+        }
+        memory.put(path, entry);
+        return entry.info;
+    }
+
+    /**
+     * 写入缓存，同一路径的旧记录失效
+     *
+     * @param path         路径或 content:// 地址
+     * @param size         文件大小
+     * @param lastModified 修改时间
+     * @param info         媒体信息
+     * @throws IOException 写入索引文件失败时
+     */
+    public synchronized void put(String path, long size, long lastModified, MediaInfo info) throws IOException {
+        ensureOpen();
+        byte[] payload = encode(path, size, lastModified, info);
+        long offset = append(payload);
+        // 磁盘索引只记偏移，媒体信息按需从映射中解码
+        disk.put(path, new Record(size, lastModified, offset, null));
+        memory.put(path, new Record(size, lastModified, offset, info));
+    }
+
+    /**
+     * @return 缓存的条数（不含失效记录）
+     */
+    public synchronized int size() {
+        return disk.size();
+    }
+
+    /**
+     * 清空缓存并截断索引文件
+     *
+     * @throws IOException 写入索引文件失败时
+     */
+    public synchronized void clear() throws IOException {
+        ensureOpen();
+        memory.clear();
+        disk.clear();
+        channel.truncate(HEADER_SIZE);
+        fileSize = HEADER_SIZE;
+        mapped = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+            channel = null;
+            mapped = null;
+        }
+    }
+
+    private void open() throws IOException {
+        file = new RandomAccessFile(indexFile, "rw");
+        channel = file.getChannel();
+        fileSize = channel.size();
+        if (fileSize < HEADER_SIZE || readHeader() != MAGIC) {
+            writeHeader();
+        }
+    }
+
+    private int readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION ? MAGIC : 0;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        fileSize = HEADER_SIZE;
+    }
+
+    /**
+     * 扫描索引文件建立路径到偏移的映射，遇到不完整或校验失败的记录时从该处截断
+     *
+     * @return 失效记录数
+     */
+    private int scan() throws IOException {
+        ByteBuffer buffer = map();
+        int records = 0;
+        long pos = HEADER_SIZE;
+        while (pos + RECORD_HEADER_SIZE <= fileSize) {
+            int length = buffer.getInt((int) pos);
+            int crc = buffer.getInt((int) pos + 4);
+            long payloadOffset = pos + RECORD_HEADER_SIZE;
+            if (length <= 0 || length > MAX_RECORD_SIZE || payloadOffset + length > fileSize
+                    || crc != crc(buffer, (int) payloadOffset, length)) {
+                break;
+            }
+            ByteBuffer payload = slice(buffer, payloadOffset);
+            String path = readString(payload);
+            long size = payload.getLong();
+            long lastModified = payload.getLong();
+            disk.put(path, new Record(size, lastModified, payloadOffset, null));
+            records++;
+            pos = payloadOffset + length;
+        }
+        if (pos != fileSize) {
+            channel.truncate(pos);
+            fileSize = pos;
+            mapped = null;
+        }
+        return records - disk.size();
+    }
+
+    /**
+     * 只保留每个路径的最新记录，写入临时文件后替换
+     */
+    private void compact() throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        Map<String, Record> live = new HashMap<>(disk);
+        List<byte[]> payloads = new ArrayList<>(live.size());
+        for (Map.Entry<String, Record> item : live.entrySet()) {
+            Record entry = item.getValue();
+            payloads.add(encode(item.getKey(), entry.size, entry.lastModified, readInfo(entry.offset)));
+        }
+        close();
+        disk.clear();
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (byte[] payload : payloads) {
+                out.writeInt(payload.length);
+                out.writeInt(crc(payload));
+                out.write(payload);
+            }
+        }
+        if (!temp.renameTo(indexFile)) {
+            temp.delete();
+            throw new IOException("无法替换索引文件 " + indexFile);
+        }
+        open();
+        scan();
+    }
+
+    private long append(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length)
+                .putInt(crc(payload))
+                .put(payload)
+                .flip();
+        long offset = fileSize;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        fileSize = offset + buffer.limit();
+        return offset + RECORD_HEADER_SIZE;
+    }
+
+    private MediaInfo readInfo(long offset) throws IOException {
+        ByteBuffer payload = slice(map(), offset);
+        readString(payload);
+        payload.position(payload.position() + 16);
+        return decode(payload);
+    }
+
+    /**
+     * 映射整个索引文件，文件追加后映射范围不够时重新映射
+     */
+    private MappedByteBuffer map() throws IOException {
+        ensureOpen();
+        if (mapped == null || mapped.capacity() < fileSize) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        return mapped;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (file == null) {
+            throw new IOException("缓存已关闭");
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        return view;
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = slice(buffer, offset);
+        view.get(bytes);
+        return crc(bytes);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(String path, long size, long lastModified, MediaInfo info) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, path);
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        writeString(out, info.getFormatName());
+        out.writeDouble(info.getDuration());
+        out.writeLong(info.getSize());
+        out.writeLong(info.getBitRate());
+        out.writeShort(info.getStreams().size());
+        for (StreamInfo stream : info.getStreams()) {
+            out.writeInt(stream.getIndex());
+            writeString(out, stream.getCodecType());
+            writeString(out, stream.getCodecName());
+            out.writeInt(stream.getWidth());
+            out.writeInt(stream.getHeight());
+            out.writeShort(stream.getRotation());
+            out.writeDouble(stream.getFrameRate());
+            writeString(out, stream.getPixelFormat());
+            out.writeInt(stream.getSampleRate());
+            out.writeInt(stream.getChannels());
+            out.writeLong(stream.getBitRate());
+            out.writeBoolean(stream.isAttachedPicture());
+            writeString(out, stream.getProfile());
+            out.writeInt(stream.getLevel());
+            writeString(out, stream.getTimeBase());
+            writeString(out, stream.getSampleFormat());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static MediaInfo decode(ByteBuffer in) {
+        String formatName = readString(in);
+        double duration = in.getDouble();
+        long size = in.getLong();
+        long bitRate = in.getLong();
+        int count = in.getShort();
+        List<StreamInfo> streams = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            streams.add(new StreamInfo(in.getInt(), readString(in), readString(in), in.getInt(), in.getInt(),
+                    in.getShort(), in.getDouble(), readString(in), in.getInt(), in.getInt(), in.getLong(),
+                    in.get() != 0, readString(in), in.getInt(), readString(in), readString(in)));
+        }
+        return new MediaInfo(formatName, duration, size, bitRate, streams);
+    }
+
+    /**
+     * 字符串以 2 字节长度加 UTF-8 字节保存，长度 -1 表示 null
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IOException("字符串过长: " + bytes.length);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Record {
+        final long size;
+        final long lastModified;
+        final long offset;
+        final MediaInfo info;
+
+        Record(long size, long lastModified, long offset, MediaInfo info) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.offset = offset;
+            this.info = info;
+        }
+
+        boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.bethena.ffmpegcmdbuilder.probe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ffprobe 输出解析
+ * 用 {@link #args(String)} 生成的参数执行 ffprobe（如 FFprobeKit.executeWithArguments），
+ * 再把标准输出交给 {@link #parse(String)} 得到 {@link MediaInfo}
+ *
+ * <pre>
+ * FFprobeSession session = FFprobeKit.executeWithArguments(MediaProbe.args(path));
+ * MediaInfo info = MediaProbe.parse(session.getOutput());
+ * </pre>
+ */
+public final class MediaProbe {
+
+    private MediaProbe() {
+    }
+
+    /**
+     * 生成 ffprobe 参数，只输出容器和流信息，不逐帧读取
+     *
+     * @param input 输入文件路径或地址
+     * @return ffprobe 参数数组
+     */
+    public static String[] args(String input) {
+        return new String[]{"-v", "error", "-show_format", "-show_streams", "-of", "json", input};
+    }
+
+    /**
+     * 解析 ffprobe 的 JSON 输出
+     *
+     * @param json ffprobe -of json 的输出
+     * @return 媒体文件信息
+     * @throws IllegalArgumentException 不是合法的 JSON 时
+     */
+    public static MediaInfo parse(String json) {
+        Object root = JsonReader.parse(json);
+        if (!(root instanceof Map)) {
+            throw new IllegalArgumentException("ffprobe 输出不是 JSON 对象");
+        }
+        Map<?, ?> map = (Map<?, ?>) root;
+        List<StreamInfo> streams = new ArrayList<>();
+        for (Object item : list(map.get("streams"))) {
+            if (item instanceof Map) {
+                streams.add(parseStream((Map<?, ?>) item));
+            }
+        }
+        Map<?, ?> format = object(map.get("format"));
+        return new MediaInfo(string(format.get("format_name")),
+                number(format.get("duration")),
+                (long) number(format.get("size")),
+                (long) number(format.get("bit_rate")),
+                streams);
+    }
+
+    private static StreamInfo parseStream(Map<?, ?> stream) {
+        Map<?, ?> disposition = object(stream.get("disposition"));
+        double frameRate = rational(stream.get("avg_frame_rate"));
+        if (Double.isNaN(frameRate)) {
+            frameRate = rational(stream.get("r_frame_rate"));
+        }
+        return new StreamInfo((int) number(stream.get("index")),
+                string(stream.get("codec_type")),
+                string(stream.get("codec_name")),
+                (int) number(stream.get("width")),
+                (int) number(stream.get("height")),
+                rotation(stream),
+                frameRate,
+                string(stream.get("pix_fmt")),
+                (int) number(stream.get("sample_rate")),
+                (int) number(stream.get("channels")),
+                (long) number(stream.get("bit_rate")),
+                number(disposition.get("attached_pic")) == 1,
+                string(stream.get("profile")),
+                level(stream),
+                timeBase(stream),
+                string(stream.get("sample_fmt")));
+    }
+
+    /**
+     * 未知级别 ffprobe 输出 -99
+     */
+    private static int level(Map<?, ?> stream) {
+        int level = (int) number(stream.get("level"));
+        return level < 0 ? -1 : level;
+    }
+
+    /**
+     * 0/1 表示未知
+     */
+    private static String timeBase(Map<?, ?> stream) {
+        String timeBase = string(stream.get("time_base"));
+        return timeBase == null || timeBase.startsWith("0/") ? null : timeBase;
+    }
+
+    /**
+     * 新版 ffprobe 把旋转角度放在 Display Matrix 附加数据中，旧版放在 rotate 标签中
+     */
+    private static int rotation(Map<?, ?> stream) {
+        Object degrees = object(stream.get("tags")).get("rotate");
+        for (Object item : list(stream.get("side_data_list"))) {
+            Object rotation = object(item).get("rotation");
+            if (rotation != null) {
+                degrees = rotation;
+                break;
+            }
+        }
+        if (degrees == null) {
+            return 0;
+        }
+        return ((int) Math.round(number(degrees)) % 360 + 360) % 360;
+    }
+
+    private static List<?> list(Object value) {
+        return value instanceof List ? (List<?>) value : Collections.emptyList();
+    }
+
+    private static Map<?, ?> object(Object value) {
+        return value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+    }
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * ffprobe 输出的数值有的是数字有的是字符串（如 "bit_rate": "1205959"），缺失或为 N/A 时返回 -1
+     */
+    private static double number(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException ignored) {
+                // N/A 等
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析 30000/1001 形式的有理数，0/0 表示未知
+     */
+    private static double rational(Object value) {
+        if (!(value instanceof String)) {
+            return Double.NaN;
+        }
+        String text = (String) value;
+        int slash = text.indexOf('/');
+        try {
+            if (slash < 0) {
+                return Double.parseDouble(text);
+            }
+            double num = Double.parseDouble(text.substring(0, slash));
+            double den = Double.parseDouble(text.substring(slash + 1));
+            return den != 0 && num != 0 ? num / den : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
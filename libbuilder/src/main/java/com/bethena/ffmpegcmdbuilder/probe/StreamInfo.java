@@ -0,0 +1,211 @@
+package com.bethena.ffmpegcmdbuilder.probe;
+
+/**
+ * 媒体流信息，对应 ffprobe -show_streams 输出中的一个流
+ * 数值未知时为 -1（帧率为 NaN）
+ */
+public final class StreamInfo {
+
+    /**
+     * 视频流
+     */
+    public static final String TYPE_VIDEO = "video";
+    /**
+     * 音频流
+     */
+    public static final String TYPE_AUDIO = "audio";
+
+    private final int index;
+    private final String codecType;
+    private final String codecName;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final double frameRate;
+    private final String pixelFormat;
+    private final int sampleRate;
+    private final int channels;
+    private final long bitRate;
+    private final boolean attachedPicture;
+    private final String profile;
+    private final int level;
+    private final String timeBase;
+    private final String sampleFormat;
+
+    StreamInfo(int index, String codecType, String codecName, int width, int height, int rotation,
+               double frameRate, String pixelFormat, int sampleRate, int channels, long bitRate,
+               boolean attachedPicture, String profile, int level, String timeBase, String sampleFormat) {
+        this.index = index;
+        this.codecType = codecType;
+        this.codecName = codecName;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.frameRate = frameRate;
+        this.pixelFormat = pixelFormat;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitRate = bitRate;
+        this.attachedPicture = attachedPicture;
+        this.profile = profile;
+        this.level = level;
+        this.timeBase = timeBase;
+        this.sampleFormat = sampleFormat;
+    }
+
+    /**
+     * @return 流序号
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 流类型（video、audio、subtitle 等）
+     */
+    public String getCodecType() {
+        return codecType;
+    }
+
+    /**
+     * @return 编码格式（如 h264、aac），未知时为 null
+     */
+    public String getCodecName() {
+        return codecName;
+    }
+
+    /**
+     * @return 编码宽度
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return 编码高度
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return 旋转角度（0、90、180、270），手机竖拍的视频通常为 90
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * FFmpeg 默认会按旋转角度自动旋转画面，缩放等操作针对的是旋转后的尺寸
+     *
+     * @return 显示宽度
+     */
+    public int getDisplayWidth() {
+        return isRotated() ? height : width;
+    }
+
+    /**
+     * @return 显示高度
+     */
+    public int getDisplayHeight() {
+        return isRotated() ? width : height;
+    }
+
+    /**
+     * @return 平均帧率，未知时为 NaN
+     */
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * @return 像素格式（如 yuv420p），未知时为 null
+     */
+    public String getPixelFormat() {
+        return pixelFormat;
+    }
+
+    /**
+     * @return 采样率
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return 声道数
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * 部分容器（如 mkv）不记录单个流的码率，此时为 -1
+     *
+     * @return 码率（bit/s）
+     */
+    public long getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * @return 编码档次（如 High、Main、LC），未知或编码格式没有档次时为 null
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return 编码级别（如 H.264 的 40 表示 4.0），未知时为 -1
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return 时间基（如 1/15360），未知时为 null
+     */
+    public String getTimeBase() {
+        return timeBase;
+    }
+
+    /**
+     * @return 音频采样格式（如 fltp、s16），未知时为 null
+     */
+    public String getSampleFormat() {
+        return sampleFormat;
+    }
+
+    /**
+     * @return 是否为封面图片（以视频流形式存储的专辑封面等）
+     */
+    public boolean isAttachedPicture() {
+        return attachedPicture;
+    }
+
+    /**
+     * @return 是否为视频流（不含封面图片）
+     */
+    public boolean isVideo() {
+        return TYPE_VIDEO.equals(codecType) && !attachedPicture;
+    }
+
+    /**
+     * @return 是否为音频流
+     */
+    public boolean isAudio() {
+        return TYPE_AUDIO.equals(codecType);
+    }
+
+    private boolean isRotated() {
+        return rotation == 90 || rotation == 270;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamInfo{" + index + ", " + codecType + ", " + codecName
+                + (isVideo() ? ", " + width + "x" + height : "")
+                + (isAudio() ? ", " + sampleRate + "Hz, " + channels + "ch" : "")
+                + ", " + bitRate + "bps}";
+    }
+}
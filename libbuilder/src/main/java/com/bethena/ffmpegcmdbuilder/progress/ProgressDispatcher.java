@@ -0,0 +1,60 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 限速的进度分发器
+ * 两次分发之间至少间隔 minInterval，期间到达的进度直接丢弃，下次分发时监听器拿到的就是最新进度；
+ * 最后一次进度（progress=end）总是立即分发；用于避免每条进度都刷新界面或写日志
+ */
+public final class ProgressDispatcher implements ProgressListener {
+
+    private final long minIntervalNanos;
+    private final LongSupplier clock;
+    private final List<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+    private long lastDispatch;
+    private boolean dispatched;
+
+    /**
+     * @param minInterval 最短分发间隔
+     * @param unit        时间单位
+     */
+    public ProgressDispatcher(long minInterval, TimeUnit unit) {
+        this(minInterval, unit, System::nanoTime);
+    }
+
+    /**
+     * @param minInterval 最短分发间隔
+     * @param unit        时间单位
+     * @param clock       纳秒时钟，测试时可替换
+     */
+    public ProgressDispatcher(long minInterval, TimeUnit unit, LongSupplier clock) {
+        this.minIntervalNanos = unit.toNanos(minInterval);
+        this.clock = clock;
+    }
+
+    public ProgressDispatcher addListener(ProgressListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(ProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void onProgress(ProgressEvent event) {
+        long now = clock.getAsLong();
+        if (!event.isEnd() && dispatched && now - lastDispatch < minIntervalNanos) {
+            return;
+        }
+        lastDispatch = now;
+        dispatched = true;
+        for (ProgressListener listener : listeners) {
+            listener.onProgress(event);
+        }
+    }
+}
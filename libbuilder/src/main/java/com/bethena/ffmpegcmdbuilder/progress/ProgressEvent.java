@@ -0,0 +1,150 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+/**
+ * 转码进度
+ * 解析器为避免每行分配对象会复用同一个实例，监听器需要在回调之外保留数据时请调用 {@link #copy()}
+ */
+public final class ProgressEvent {
+
+    private long frame = -1;
+    private double fps = Double.NaN;
+    private double bitrateKbps = Double.NaN;
+    private long totalSize = -1;
+    private long outTimeUs = -1;
+    private double speed = Double.NaN;
+    private boolean end;
+
+    /**
+     * 用 FFmpegKit 的 Statistics 等来源的数据更新进度
+     *
+     * @param outTimeUs   已输出时长（微秒）
+     * @param speed       转码速度（相对实时的倍数）
+     * @param fps         当前帧率
+     * @param bitrateKbps 当前码率（kbit/s）
+     * @param totalSize   已输出字节数
+     */
+    public void update(long outTimeUs, double speed, double fps, double bitrateKbps, long totalSize) {
+        this.outTimeUs = outTimeUs;
+        this.speed = speed;
+        this.fps = fps;
+        this.bitrateKbps = bitrateKbps;
+        this.totalSize = totalSize;
+    }
+
+    /**
+     * @return 已处理帧数，未知时为 -1
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return 当前帧率，未知时为 NaN
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * @return 当前码率（kbit/s），未知时为 NaN
+     */
+    public double getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    /**
+     * @return 已输出字节数，未知时为 -1
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return 已输出时长（微秒），未知时为 -1
+     */
+    public long getOutTimeUs() {
+        return outTimeUs;
+    }
+
+    /**
+     * @return 转码速度（相对实时的倍数），未知时为 NaN
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return 是否为最后一次进度（progress=end）
+     */
+    public boolean isEnd() {
+        return end;
+    }
+
+    /**
+     * 按总时长计算百分比
+     *
+     * @param durationUs 输入总时长（微秒）
+     * @return 0~100，未知时为 -1
+     */
+    public int percent(long durationUs) {
+        if (end) {
+            return 100;
+        }
+        if (outTimeUs < 0 || durationUs <= 0) {
+            return -1;
+        }
+        return (int) Math.min(100, outTimeUs * 100 / durationUs);
+    }
+
+    /**
+     * @return 当前数据的副本
+     */
+    public ProgressEvent copy() {
+        ProgressEvent copy = new ProgressEvent();
+        copy.frame = frame;
+        copy.fps = fps;
+        copy.bitrateKbps = bitrateKbps;
+        copy.totalSize = totalSize;
+        copy.outTimeUs = outTimeUs;
+        copy.speed = speed;
+        copy.end = end;
+        return copy;
+    }
+
+    void setFrame(long frame) {
+        this.frame = frame;
+    }
+
+    void setFps(double fps) {
+        this.fps = fps;
+    }
+
+    void setBitrateKbps(double bitrateKbps) {
+        this.bitrateKbps = bitrateKbps;
+    }
+
+    void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    void setOutTimeUs(long outTimeUs) {
+        this.outTimeUs = outTimeUs;
+    }
+
+    void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @param end 是否为最后一次进度
+     */
+    public void setEnd(boolean end) {
+        this.end = end;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgressEvent{frame=" + frame + ", fps=" + fps + ", bitrateKbps=" + bitrateKbps
+                + ", totalSize=" + totalSize + ", outTimeUs=" + outTimeUs + ", speed=" + speed + ", end=" + end + "}";
+    }
+}
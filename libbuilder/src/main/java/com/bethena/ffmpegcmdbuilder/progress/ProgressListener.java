@@ -0,0 +1,14 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+/**
+ * 进度监听器
+ */
+public interface ProgressListener {
+
+    /**
+     * 收到进度，event 会被复用，需要保留时请调用 {@link ProgressEvent#copy()}
+     *
+     * @param event 进度
+     */
+    void onProgress(ProgressEvent event);
+}
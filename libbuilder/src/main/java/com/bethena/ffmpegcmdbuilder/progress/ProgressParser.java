@@ -0,0 +1,185 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+/**
+ * -progress 输出的流式解析器
+ * 逐字节解析 key=value 行，数值在字节数组上直接解析，每收到一个 progress=continue/end
+ * 回调一次监听器；解析过程不分配对象，可直接喂入从管道读到的原始字节
+ * 非线程安全，每个任务使用独立的实例
+ */
+public final class ProgressParser {
+
+    private static final int MAX_TOKEN = 64;
+
+    private static final byte[] FRAME = ascii("frame");
+    private static final byte[] FPS = ascii("fps");
+    private static final byte[] BITRATE = ascii("bitrate");
+    private static final byte[] TOTAL_SIZE = ascii("total_size");
+    private static final byte[] OUT_TIME_US = ascii("out_time_us");
+    private static final byte[] SPEED = ascii("speed");
+    private static final byte[] PROGRESS = ascii("progress");
+    private static final byte[] END = ascii("end");
+
+    private final ProgressListener listener;
+    private final ProgressEvent event = new ProgressEvent();
+    private final byte[] key = new byte[MAX_TOKEN];
+    private final byte[] value = new byte[MAX_TOKEN];
+    private int keyLength;
+    private int valueLength;
+    private boolean inValue;
+
+    public ProgressParser(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 喂入一段原始输出，可以在任意位置断开
+     *
+     * @param buffer 数据
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public void feed(byte[] buffer, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(buffer[i]);
+        }
+    }
+
+    /**
+     * 喂入一行（不含换行符），用于日志回调等按行输出的来源
+     *
+     * @param line 一行输出
+     */
+    public void feedLine(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            accept(c < 0x80 ? (byte) c : (byte) '?');
+        }
+        endLine();
+    }
+
+    private void accept(byte b) {
+        if (b == '\n') {
+            endLine();
+        } else if (b == '\r') {
+            return;
+        } else if (!inValue && b == '=') {
+            inValue = true;
+        } else if (inValue) {
+            if (valueLength < MAX_TOKEN) {
+                value[valueLength++] = b;
+            }
+        } else if (keyLength < MAX_TOKEN) {
+            key[keyLength++] = b;
+        }
+    }
+
+    private void endLine() {
+        if (inValue) {
+            if (keyIs(OUT_TIME_US)) {
+                event.setOutTimeUs(parseLong());
+            } else if (keyIs(SPEED)) {
+                event.setSpeed(parseDouble());
+            } else if (keyIs(FPS)) {
+                event.setFps(parseDouble());
+            } else if (keyIs(BITRATE)) {
+                event.setBitrateKbps(parseDouble());
+            } else if (keyIs(TOTAL_SIZE)) {
+                event.setTotalSize(parseLong());
+            } else if (keyIs(FRAME)) {
+                event.setFrame(parseLong());
+            } else if (keyIs(PROGRESS)) {
+                event.setEnd(valueIs(END));
+                listener.onProgress(event);
+            }
+        }
+        keyLength = 0;
+        valueLength = 0;
+        inValue = false;
+    }
+
+    private boolean keyIs(byte[] expected) {
+        return equals(key, keyLength, expected);
+    }
+
+    private boolean valueIs(byte[] expected) {
+        return equals(value, valueLength, expected);
+    }
+
+    private static boolean equals(byte[] actual, int length, byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (actual[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析整数，非数字（如 N/A）返回 -1
+     */
+    private long parseLong() {
+        int i = skipSpaces();
+        boolean negative = i < valueLength && value[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == valueLength || !isDigit(value[i])) {
+            return -1;
+        }
+        long result = 0;
+        for (; i < valueLength && isDigit(value[i]); i++) {
+            result = result * 10 + (value[i] - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * 解析小数，忽略数字后的单位（如 1.02x、1234.5kbits/s），非数字返回 NaN
+     */
+    private double parseDouble() {
+        int i = skipSpaces();
+        boolean negative = i < valueLength && value[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == valueLength || !(isDigit(value[i]) || value[i] == '.')) {
+            return Double.NaN;
+        }
+        long integer = 0;
+        for (; i < valueLength && isDigit(value[i]); i++) {
+            integer = integer * 10 + (value[i] - '0');
+        }
+        double result = integer;
+        if (i < valueLength && value[i] == '.') {
+            double scale = 0.1;
+            for (i++; i < valueLength && isDigit(value[i]); i++) {
+                result += (value[i] - '0') * scale;
+                scale /= 10;
+            }
+        }
+        return negative ? -result : result;
+    }
+
+    private int skipSpaces() {
+        int i = 0;
+        while (i < valueLength && value[i] == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,21 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+/**
+ * 分段输出监听器，回调时文件已写完，可以直接对外提供
+ */
+public interface SegmentListener {
+
+    /**
+     * 一个分段写完
+     *
+     * @param path 分段文件路径（FFmpeg 日志中的路径）
+     */
+    void onSegment(String path);
+
+    /**
+     * 播放列表（m3u8 / mpd）更新完毕
+     *
+     * @param path 播放列表路径
+     */
+    void onPlaylist(String path);
+}
@@ -0,0 +1,79 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 从 hls / dash 复用器的日志中识别分段和播放列表的写出
+ * 复用器每打开一个文件会输出 "Opening 'xxx' for writing"（日志级别需不低于 info），
+ * 分段在播放列表更新前关闭，因此播放列表开始写入时之前打开的分段都已完成；
+ * 播放列表本身在下一个文件打开或任务结束时才算写完
+ * 非线程安全，每个任务使用独立的实例
+ */
+public final class SegmentLogParser {
+
+    private static final Pattern OPENING = Pattern.compile("Opening '(.+)' for writing");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final SegmentListener listener;
+    private final List<String> pendingSegments = new ArrayList<>();
+    private String pendingPlaylist;
+
+    public SegmentLogParser(SegmentListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 喂入一行日志
+     *
+     * @param line 一行日志
+     */
+    public void feedLine(CharSequence line) {
+        Matcher matcher = OPENING.matcher(line);
+        if (!matcher.find()) {
+            return;
+        }
+        String path = matcher.group(1);
+        // temp_file 模式下先写 .tmp 再改名，对外报告改名后的路径
+        if (path.endsWith(TEMP_SUFFIX)) {
+            path = path.substring(0, path.length() - TEMP_SUFFIX.length());
+        }
+        flushPlaylist();
+        if (isPlaylist(path)) {
+            flushSegments();
+            pendingPlaylist = path;
+        } else {
+            pendingSegments.add(path);
+        }
+    }
+
+    /**
+     * 任务结束时调用，报告最后一批分段和最终的播放列表
+     * 任务失败时不应调用，最后打开的分段可能不完整
+     */
+    public void finish() {
+        flushPlaylist();
+        flushSegments();
+    }
+
+    private void flushPlaylist() {
+        if (pendingPlaylist != null) {
+            String path = pendingPlaylist;
+            pendingPlaylist = null;
+            listener.onPlaylist(path);
+        }
+    }
+
+    private void flushSegments() {
+        for (int i = 0; i < pendingSegments.size(); i++) {
+            listener.onSegment(pendingSegments.get(i));
+        }
+        pendingSegments.clear();
+    }
+
+    private static boolean isPlaylist(String path) {
+        return path.endsWith(".m3u8") || path.endsWith(".mpd");
+    }
+}
@@ -0,0 +1,123 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CommandSerializerTest {
+
+    @Test
+    public void plainArgs_areJoinedWithoutQuotes() {
+        String[] args = {"-y", "-i", "/sdcard/in.mp4", "-c:v", "h264", "/sdcard/out.mp4"};
+        assertEquals("-y -i /sdcard/in.mp4 -c:v h264 /sdcard/out.mp4",
+                CommandSerializer.toFFmpegKitCommand(args));
+    }
+
+    @Test
+    public void ffmpegKitCommand_roundTripsUnsafeArgs() {
+        String[] args = {
+                "-i", "/sdcard/My Videos/clip 1.mp4",
+                "-metadata", "title=It's \"quoted\"",
+                "-vf", "drawtext=text='a b'",
+                "C:\\out dir\\",
+                "back\\\"slash",
+                "\"leading"
+        };
+        String command = CommandSerializer.toFFmpegKitCommand(args);
+        assertArrayEquals(args, parseLikeFFmpegKit(command));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ffmpegKitCommand_rejectsEmptyArg() {
+        CommandSerializer.toFFmpegKitCommand(new String[]{"-metadata", ""});
+    }
+
+    @Test
+    public void shellCommand_quotesWithSingleQuotes() {
+        String[] args = {"-i", "my file.mp4", "-metadata", "title=it's", ""};
+        assertEquals("-i 'my file.mp4' -metadata 'title=it'\\''s' ''",
+                CommandSerializer.toShellCommand(args));
+    }
+
+    @Test
+    public void builder_buildArgsKeepsPathsIntact() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("/sdcard/My Videos/in.mp4")
+                .videoCodec("h264")
+                .output("/sdcard/out put.mp4");
+        String[] args = builder.buildArgs();
+        assertEquals("/sdcard/My Videos/in.mp4", args[2]);
+        assertEquals("/sdcard/out put.mp4", args[args.length - 1]);
+        assertArrayEquals(args, parseLikeFFmpegKit(builder.build()));
+    }
+
+    @Test
+    public void compact_roundTripsAndIsSmallerThanString() {
+        String[] args = FFmpegCommandBuilder.create()
+                .input("/sdcard/My Videos/in.mp4")
+                .videoCodec("libx264")
+                .audioCodec("aac")
+                .profile(EncodingProfile.MAX_THROUGHPUT, 2)
+                .option("-metadata", "title=视频 \"1\"")
+                .output("/sdcard/out.mp4")
+                .buildArgs();
+        byte[] compact = CommandSerializer.toCompact(args);
+        assertArrayEquals(args, CommandSerializer.fromCompact(compact));
+        assertTrue(compact.length < CommandSerializer.toShellCommand(args).length());
+        assertArrayEquals(new String[]{""}, CommandSerializer.fromCompact(CommandSerializer.toCompact(new String[]{""})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compact_rejectsTruncatedData() {
+        byte[] compact = CommandSerializer.toCompact(new String[]{"-i", "/sdcard/in.mp4"});
+        CommandSerializer.fromCompact(Arrays.copyOf(compact, compact.length - 1));
+    }
+
+    /**
+     * 与 FFmpegKitConfig.parseArguments 相同的切分规则
+     */
+    private static String[] parseLikeFFmpegKit(String command) {
+        List<String> list = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean single = false;
+        boolean dbl = false;
+        for (int i = 0; i < command.length(); i++) {
+            Character previous = i > 0 ? command.charAt(i - 1) : null;
+            char c = command.charAt(i);
+            if (c == ' ') {
+                if (single || dbl) {
+                    current.append(c);
+                } else if (current.length() > 0) {
+                    list.add(current.toString());
+                    current = new StringBuilder();
+                }
+            } else if (c == '\'' && (previous == null || previous != '\\')) {
+                if (single) {
+                    single = false;
+                } else if (dbl) {
+                    current.append(c);
+                } else {
+                    single = true;
+                }
+            } else if (c == '"' && (previous == null || previous != '\\')) {
+                if (dbl) {
+                    dbl = false;
+                } else if (single) {
+                    current.append(c);
+                } else {
+                    dbl = true;
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            list.add(current.toString());
+        }
+        return list.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,53 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CommandTemplateTest {
+
+    private static FFmpegCommandBuilder chain(String input, String bitrate, String output) {
+        return FFmpegCommandBuilder.create()
+                .input(input)
+                .videoCodec("h264")
+                .audioCodec("aac")
+                .videoBitRate(bitrate)
+                .resolution(640, 360)
+                .output(output);
+    }
+
+    @Test
+    public void bind_matchesFreshBuilder() {
+        CommandTemplate template = chain(CommandTemplate.INPUT, CommandTemplate.param("vb"), CommandTemplate.OUTPUT)
+                .compile();
+        assertEquals(Arrays.asList("input", "vb", "output"), template.getParameterNames());
+
+        String[] args = template.bind("/sdcard/a b.mp4", "1M", "/sdcard/out.mp4");
+        assertArrayEquals(chain("/sdcard/a b.mp4", "1M", "/sdcard/out.mp4").buildArgs(), args);
+    }
+
+    @Test
+    public void binding_isReusableAndDoesNotLeakBetweenJobs() {
+        CommandTemplate template = chain(CommandTemplate.INPUT, "1M", CommandTemplate.OUTPUT).compile();
+        CommandTemplate.Binding binding = template.newBinding();
+        String[] first = binding.set("input", "a.mp4").set("output", "a_out.mp4").toArgs();
+        String[] second = binding.set("input", "b.mp4").set("output", "b_out.mp4").toArgs();
+        assertEquals("a.mp4", first[2]);
+        assertEquals("b.mp4", second[2]);
+        assertNotSame(first, second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bind_rejectsMissingValue() {
+        chain(CommandTemplate.INPUT, "1M", CommandTemplate.OUTPUT).compile().newBinding()
+                .set("input", "a.mp4")
+                .toArgs();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_rejectsEmbeddedPlaceholder() {
+        CommandTemplate.compile(new String[]{"-i", "dir/" + CommandTemplate.INPUT});
+    }
+}
@@ -0,0 +1,113 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.MediaProbe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ConcatBuilderTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("concat").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static MediaInfo probe(int width, int height, String frameRate, int sampleRate) {
+        return probe(width, height, frameRate, sampleRate, "\"profile\": \"High\", \"level\": 31");
+    }
+
+    private static MediaInfo probe(int width, int height, String frameRate, int sampleRate, String videoCodec) {
+        return MediaProbe.parse("{\"streams\": ["
+                + "{\"index\": 0, \"codec_type\": \"video\", \"codec_name\": \"h264\","
+                + " \"width\": " + width + ", \"height\": " + height + ", \"avg_frame_rate\": \"" + frameRate + "\","
+                + " \"pix_fmt\": \"yuv420p\", \"time_base\": \"1/15360\", " + videoCodec + "},"
+                + "{\"index\": 1, \"codec_type\": \"audio\", \"codec_name\": \"aac\", \"profile\": \"LC\","
+                + " \"sample_fmt\": \"fltp\", \"time_base\": \"1/" + sampleRate + "\","
+                + " \"sample_rate\": \"" + sampleRate + "\", \"channels\": 2}],"
+                + " \"format\": {\"duration\": \"10.0\"}}");
+    }
+
+    @Test
+    public void matchingClips_useDemuxerStreamCopy() throws Exception {
+        File list = new File(dir, "list.txt");
+        ConcatBuilder concat = ConcatBuilder.create()
+                .add("/sdcard/a.mp4", probe(1280, 720, "30/1", 44100))
+                .add("/sdcard/it's.mp4", probe(1280, 720, "30/1", 44100))
+                .listFile(list);
+        assertEquals(ConcatBuilder.Mode.DEMUXER, concat.getMode());
+
+        String command = concat.build().output("out.mp4").build();
+        assertEquals("-y -f concat -safe 0 -i " + list.getAbsolutePath() + " -c:v copy -c:a copy out.mp4", command);
+        assertEquals("ffconcat version 1.0\nfile '/sdcard/a.mp4'\nfile '/sdcard/it'\\''s.mp4'\n",
+                new String(Files.readAllBytes(list.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void mismatchedClips_fallBackToFilter() throws Exception {
+        ConcatBuilder concat = ConcatBuilder.create()
+                .add("a.mp4", probe(1280, 720, "30/1", 44100))
+                .add("b.mp4", probe(1920, 1080, "30/1", 48000));
+        assertEquals(ConcatBuilder.Mode.FILTER, concat.getMode());
+
+        FFmpegCommandBuilder builder = concat.build().videoCodec("libx264").output("out.mp4");
+        String[] args = builder.buildArgs();
+        String graph = args[Arrays.asList(args).indexOf("-filter_complex") + 1];
+        assertTrue(graph, graph.startsWith("[0:v]scale=w=1280:h=720:force_original_aspect_ratio=decrease,"
+                + "pad=w=1280:h=720:x=(ow-iw)/2:y=(oh-ih)/2,setsar=1,fps=fps=30[v0];"
+                + "[0:a]aresample=osr=44100,aformat=channel_layouts=stereo[a0];"));
+        assertTrue(graph, graph.endsWith("[v0][a0][v1][a1]concat=n=2:v=1:a=1[v][a]"));
+        assertEquals(2, builder.getInputs().size());
+        assertFalse(new File(dir, "list.txt").exists());
+    }
+
+    @Test
+    public void frameRateMismatch_needsFilter() {
+        ConcatBuilder concat = ConcatBuilder.create()
+                .add("a.mp4", probe(1280, 720, "30/1", 44100))
+                .add("b.mp4", probe(1280, 720, "25/1", 44100));
+        assertFalse(concat.canStreamCopy());
+        assertEquals(ConcatBuilder.Mode.DEMUXER, concat.mode(ConcatBuilder.Mode.DEMUXER).getMode());
+    }
+
+    @Test
+    public void profileOrLevelMismatch_needsFilter() {
+        assertFalse(ConcatBuilder.create()
+                .add("a.mp4", probe(1280, 720, "30/1", 44100, "\"profile\": \"High\", \"level\": 31"))
+                .add("b.mp4", probe(1280, 720, "30/1", 44100, "\"profile\": \"Main\", \"level\": 31"))
+                .canStreamCopy());
+        assertFalse(ConcatBuilder.create()
+                .add("a.mp4", probe(1280, 720, "30/1", 44100, "\"profile\": \"High\", \"level\": 31"))
+                .add("b.mp4", probe(1280, 720, "30/1", 44100, "\"profile\": \"High\", \"level\": 40"))
+                .canStreamCopy());
+    }
+
+    @Test
+    public void unknownLevel_needsFilter() {
+        ConcatBuilder concat = ConcatBuilder.create()
+                .add("a.mp4", probe(1280, 720, "30/1", 44100, "\"profile\": \"High\", \"level\": -99"))
+                .add("b.mp4", probe(1280, 720, "30/1", 44100, "\"profile\": \"High\", \"level\": -99"));
+        assertEquals(ConcatBuilder.Mode.FILTER, concat.getMode());
+    }
+}
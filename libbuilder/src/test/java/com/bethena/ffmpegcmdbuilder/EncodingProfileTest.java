@@ -0,0 +1,87 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EncodingProfileTest {
+
+    @Test
+    public void threads_areSplitAcrossJobs() {
+        assertEquals(8, EncodingProfile.threadsPerJob(8, 1));
+        assertEquals(2, EncodingProfile.threadsPerJob(8, 3));
+        assertEquals(1, EncodingProfile.threadsPerJob(4, 16));
+        assertEquals(4, EncodingProfile.threadsPerJob(4, 0));
+    }
+
+    @Test
+    public void lowLatency_setsGlobalAndOutputOptions() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("libx264")
+                .output("out.mp4");
+        EncodingProfile.LOW_LATENCY.applyTo(builder, 2, 8);
+        assertEquals("-y -filter_threads 4 -filter_complex_threads 4 -i in.mp4 -c:v libx264"
+                + " -preset ultrafast -tune zerolatency -threads 4 out.mp4", builder.build());
+    }
+
+    @Test
+    public void switchingProfile_replacesPreviousValues() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create().videoCodec("libx264");
+        EncodingProfile.LOW_LATENCY.applyTo(builder, 1, 4);
+        EncodingProfile.SMALLEST_OUTPUT.applyTo(builder, 1, 4);
+        assertEquals("slow", builder.get(Option.PRESET));
+        assertNull(builder.get(Option.TUNE));
+        assertEquals("+faststart", builder.get("-movflags"));
+    }
+
+    @Test
+    public void hardwareEncoder_skipsX264Options() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create().videoCodec("h264_mediacodec");
+        EncodingProfile.MAX_THROUGHPUT.applyTo(builder, 1, 4);
+        assertNull(builder.get(Option.PRESET));
+        assertEquals("4", builder.get(Option.THREADS));
+    }
+
+    @Test
+    public void unspecifiedEncoder_skipsX264Options() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create();
+        EncodingProfile.LOW_LATENCY.applyTo(builder, 1, 4);
+        assertNull(builder.get(Option.PRESET));
+        builder.videoCodec("h264");
+        EncodingProfile.LOW_LATENCY.applyTo(builder, 1, 4);
+        assertNull(builder.get(Option.PRESET));
+        assertNull(builder.get(Option.TUNE));
+    }
+
+    @Test
+    public void movflags_onlyForMp4Outputs() {
+        FFmpegCommandBuilder before = FFmpegCommandBuilder.create().input("in.mp4")
+                .profile(EncodingProfile.SMALLEST_OUTPUT, 1);
+        assertEquals("+faststart", before.get(Option.MOVFLAGS));
+        before.output("out.mkv");
+        assertNull(before.get(Option.MOVFLAGS));
+        before.output("/sdcard/My.Videos/out.MOV");
+        assertEquals("+faststart", before.get(Option.MOVFLAGS));
+
+        FFmpegCommandBuilder after = FFmpegCommandBuilder.create().input("in.mp4").output("out.mkv")
+                .profile(EncodingProfile.SMALLEST_OUTPUT, 1);
+        assertFalse(after.build(), after.build().contains("-movflags"));
+    }
+
+    @Test
+    public void movflags_skippedForSegmentedOutput() {
+        FFmpegCommandBuilder after = FFmpegCommandBuilder.create().input("in.mp4").videoCodec("libx264")
+                .output(HlsOutput.create("out/index.m3u8"))
+                .profile(EncodingProfile.SMALLEST_OUTPUT, 1);
+        assertFalse(after.build(), after.build().contains("-movflags"));
+
+        FFmpegCommandBuilder before = FFmpegCommandBuilder.create().input("in.mp4").videoCodec("libx264")
+                .profile(EncodingProfile.SMALLEST_OUTPUT, 1)
+                .output(HlsOutput.create("out/index.m3u8"));
+        assertFalse(before.build(), before.build().contains("-movflags"));
+        // 之后按当前并发数重新应用配置（如 AdaptiveConcurrencyController）也不会再加上
+        EncodingProfile.SMALLEST_OUTPUT.applyTo(before, 2, 8);
+        assertFalse(before.build(), before.build().contains("-movflags"));
+    }
+}
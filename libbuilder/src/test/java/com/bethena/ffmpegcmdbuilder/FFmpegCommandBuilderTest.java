@@ -0,0 +1,110 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FFmpegCommandBuilderTest {
+
+    private static FFmpegCommandBuilder base() {
+        return FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("h264")
+                .audioCodec("aac")
+                .videoBitRate("1M")
+                .audioBitRate("128k")
+                .resolution(640, 360)
+                .frameRate(30)
+                .output("out.mp4");
+    }
+
+    @Test
+    public void build_keepsDeclarationOrder() {
+        assertEquals("-y -i in.mp4 -c:v h264 -c:a aac -b:v 1M -b:a 128k -s 640x360 -r 30 out.mp4",
+                base().build());
+    }
+
+    @Test
+    public void setters_lastValueWins() {
+        String command = base()
+                .videoBitRate("2M")
+                .resolution(1280, 720)
+                .option("-c:v", "libx264")
+                .build();
+        assertEquals("-y -i in.mp4 -c:v libx264 -c:a aac -b:v 2M -b:a 128k -s 1280x720 -r 30 out.mp4", command);
+    }
+
+    @Test
+    public void customOptions_areDeduplicatedAndRemovable() {
+        FFmpegCommandBuilder builder = base()
+                .option("-preset", "fast")
+                .option("-an", null)
+                .option("-preset", "slow");
+        assertEquals("slow", builder.get("-preset"));
+        assertTrue(builder.build().endsWith("-r 30 -preset slow -an out.mp4"));
+
+        builder.removeOption("-preset").removeOption("-b:v");
+        assertNull(builder.get(Option.VIDEO_BITRATE));
+        assertTrue(builder.build().endsWith("-s 640x360 -r 30 -an out.mp4"));
+    }
+
+    @Test
+    public void fork_isolatesBothSides() {
+        FFmpegCommandBuilder source = base();
+        String before = source.build();
+
+        FFmpegCommandBuilder variant = source.fork()
+                .videoBitRate("3M")
+                .resolution(1280, 720)
+                .option("-preset", "fast")
+                .input("logo.png")
+                .output("out_720.mp4");
+        assertEquals(before, source.build());
+        assertEquals("-y -i in.mp4 -i logo.png -c:v h264 -c:a aac -b:v 3M -b:a 128k -s 1280x720 -r 30"
+                + " -preset fast out_720.mp4", variant.build());
+
+        source.audioBitRate("96k");
+        assertEquals("128k", variant.get(Option.AUDIO_BITRATE));
+        assertEquals(1, source.getInputs().size());
+    }
+
+    @Test
+    public void seek_fastPlacesSsBeforeItsInput() {
+        String command = FFmpegCommandBuilder.create()
+                .input("logo.png")
+                .input("in.mp4")
+                .seek("00:01:00", SeekMode.FAST)
+                .duration("10")
+                .output("clip.mp4")
+                .build();
+        assertEquals("-y -i logo.png -ss 00:01:00 -i in.mp4 -t 10 clip.mp4", command);
+    }
+
+    @Test
+    public void seek_modesReplaceEachOther() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .seek("5", SeekMode.FAST)
+                .input("in.mp4")
+                .output("clip.mp4");
+        assertEquals("-y -ss 5 -i in.mp4 clip.mp4", builder.build());
+        builder.seek("7", SeekMode.ACCURATE);
+        assertEquals("-y -i in.mp4 -ss 7 clip.mp4", builder.build());
+    }
+
+    @Test
+    public void inputOptions_beforeFirstInputAreKeptForIt() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .inputOption("-f", "concat")
+                .inputOption("-safe", "0")
+                .input("list.txt")
+                .input("audio.m4a")
+                .inputOption(Option.DURATION, "30")
+                .option("-c", "copy")
+                .output("out.mp4");
+        assertEquals("-y -f concat -safe 0 -i list.txt -t 30 -i audio.m4a -c copy out.mp4", builder.build());
+
+        FFmpegCommandBuilder variant = builder.fork().inputOption(Option.DURATION, "20");
+        assertEquals("30", builder.getInputOption("-t"));
+        assertEquals("20", variant.getInputOption("-t"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class FilterGraphTest {
+
+    @Test
+    public void adjacentChains_areFused() {
+        FilterGraph graph = FilterGraph.create();
+        graph.chain().in("0:v").filter(Filter.crop(1280, 720, 0, 0)).out("c");
+        graph.chain().in("c").filter(Filter.scale(640, 360, "lanczos")).out("s");
+        graph.chain().in("s").filter(Filter.fps(30)).out("v");
+        assertEquals("[0:v]crop=w=1280:h=720:x=0:y=0,scale=w=640:h=360:flags=lanczos,fps=fps=30[v]",
+                graph.compile());
+    }
+
+    @Test
+    public void labelsUsedTwice_areNotFused() {
+        FilterGraph graph = FilterGraph.create();
+        graph.chain().in("0:v").filter(Filter.of("split")).out("a").out("b");
+        graph.chain().in("a").filter(Filter.scale(1280, 720)).out("hd");
+        graph.chain().in("b").filter(Filter.scale(640, 360)).out("sd");
+        assertEquals("[0:v]split[a][b];[a]scale=w=1280:h=720[hd];[b]scale=w=640:h=360[sd]", graph.compile());
+    }
+
+    @Test
+    public void scaleBeforeAbsoluteScale_isDropped() {
+        FilterGraph graph = FilterGraph.create();
+        graph.chain().in("0:v").filter(Filter.scale(1920, 1080)).out("a");
+        graph.chain().in("a").filter(Filter.scale(640, 360)).filter(Filter.scale(-2, 240)).out("v");
+        assertEquals("[0:v]scale=w=640:h=360,scale=w=-2:h=240[v]", graph.compile());
+    }
+
+    @Test
+    public void scaleWithExtraOptions_isKept() {
+        FilterGraph graph = FilterGraph.create();
+        graph.chain().in("0:v")
+                .filter(Filter.scale(1920, 1080).arg("out_range", "tv"))
+                .filter(Filter.scale(1280, 720))
+                .filter(Filter.scale(640, 360, "lanczos"))
+                .filter(Filter.scale(640, 360).arg("out_color_matrix", "bt709"))
+                .out("v");
+        assertEquals("[0:v]scale=w=1920:h=1080:out_range=tv,scale=w=1280:h=720,scale=w=640:h=360:flags=lanczos,"
+                + "scale=w=640:h=360:out_color_matrix=bt709[v]", graph.compile());
+    }
+
+    @Test
+    public void argValues_areEscapedForBothLevels() {
+        Filter filter = Filter.of("drawtext").arg("text", "a:b, it's").arg("x", "(w-tw)/2");
+        assertEquals("drawtext=text=a\\\\:b\\, it\\\\\\'s:x=(w-tw)/2", filter.toString());
+        assertEquals("select=expr=eq(pict_type\\,I)",
+                Filter.of("select").arg("expr", "eq(pict_type,I)").toString());
+    }
+
+    @Test
+    public void builder_emitsFilterComplexAndMaps() {
+        FilterGraph graph = FilterGraph.create();
+        graph.chain().in("0:v").filter(Filter.scale(640, 360, "bicubic")).out("v");
+        String command = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .filterGraph(graph)
+                .map("[v]")
+                .map("0:a?")
+                .videoCodec("h264")
+                .output("out.mp4")
+                .build();
+        assertEquals("-y -i in.mp4 -filter_complex [0:v]scale=w=640:h=360:flags=bicubic[v]"
+                + " -map [v] -map 0:a? -c:v h264 out.mp4", command);
+    }
+
+    @Test
+    public void largeGraph_switchesToScriptFile() throws Exception {
+        File dir = Files.createTempDirectory("filter").toFile();
+        FilterGraph graph = FilterGraph.create();
+        graph.chain().in("0:v").filter(Filter.scale(640, 360)).out("v");
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .filterGraph(graph)
+                .filterScript(dir, 10)
+                .output("out.mp4");
+        String[] args = builder.buildArgs();
+        assertEquals("-filter_complex_script", args[3]);
+        assertEquals(graph.compile(), new String(Files.readAllBytes(new File(args[4]).toPath()), StandardCharsets.UTF_8));
+        assertEquals(args[4], builder.buildArgs()[4]);
+        assertEquals(1, dir.listFiles().length);
+    }
+}
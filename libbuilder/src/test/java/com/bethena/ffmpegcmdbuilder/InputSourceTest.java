@@ -0,0 +1,96 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class InputSourceTest {
+
+    @Test
+    public void nonPathInputs_mapToFFmpegUrls() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input(InputSource.fileDescriptor(42))
+                .input(InputSource.pipe(0))
+                .input(InputSource.url("saf:3.mp4"))
+                .output("out.mp4");
+        assertEquals("-y -i /proc/self/fd/42 -i pipe:0 -i saf:3.mp4 out.mp4", builder.build());
+        assertTrue(builder.getInputSources().isEmpty());
+    }
+
+    @Test
+    public void channelSource_pumpsAllBytes() throws Exception {
+        byte[] data = new byte[3 * InputSource.DEFAULT_BUFFER_SIZE + 17];
+        new Random(1).nextBytes(data);
+        Pipe pipe = Pipe.open();
+        InputSource source = InputSource.channel(Channels.newChannel(new ByteArrayInputStream(data)),
+                pipe.sink(), "pipe:0");
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .inputOption("-f", "mpegts")
+                .input(source)
+                .output("out.mp4");
+        assertEquals("-y -f mpegts -i pipe:0 out.mp4", builder.build());
+        assertEquals(1, builder.fork().getInputSources().size());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> pumped = pool.submit(() -> builder.getInputSources().get(0).pump());
+            byte[] read = readAll(Channels.newInputStream(pipe.source()));
+            assertEquals(data.length, (long) pumped.get());
+            assertArrayEquals(data, read);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void fileChannelSource_usesTransfer() throws Exception {
+        File file = Files.createTempFile("input", ".ts").toFile();
+        try {
+            byte[] data = new byte[100_000];
+            new Random(2).nextBytes(data);
+            Files.write(file.toPath(), data);
+            Pipe pipe = Pipe.open();
+            InputSource source = InputSource.channel(new FileInputStream(file).getChannel(), pipe.sink(), "pipe:0");
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                Future<Long> pumped = pool.submit(source::pump);
+                assertArrayEquals(data, readAll(Channels.newInputStream(pipe.source())));
+                assertEquals(data.length, (long) pumped.get());
+            } finally {
+                pool.shutdownNow();
+            }
+            try {
+                source.pump();
+                fail();
+            } catch (IllegalStateException expected) {
+                // 只能写入一次
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
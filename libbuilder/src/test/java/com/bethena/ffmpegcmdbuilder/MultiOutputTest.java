@@ -0,0 +1,66 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MultiOutputTest {
+
+    private static FFmpegCommandBuilder ladder() {
+        return FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("h264")
+                .audioCodec("aac")
+                .addOutput("1080.mp4", o -> o.resolution(1920, 1080).videoBitRate("5M").scaleFlags("lanczos"))
+                .addOutput("720.mp4", o -> o.resolution(1280, 720).videoBitRate("3M"))
+                .addOutput("360.mp4", o -> o.resolution(640, 360).videoBitRate("1M").audioBitRate("64k"));
+    }
+
+    @Test
+    public void differentResolutions_useSplitWithPerBranchScale() {
+        assertEquals("-y -i in.mp4 -filter_complex [0:v]split=3[s0][s1][s2];"
+                        + "[s0]scale=w=1920:h=1080:flags=lanczos[v0];[s1]scale=w=1280:h=720[v1];[s2]scale=w=640:h=360[v2]"
+                        + " -map [v0] -map 0:a? -c:v h264 -c:a aac -b:v 5M 1080.mp4"
+                        + " -map [v1] -map 0:a? -c:v h264 -c:a aac -b:v 3M 720.mp4"
+                        + " -map [v2] -map 0:a? -c:v h264 -c:a aac -b:v 1M -b:a 64k 360.mp4",
+                ladder().build());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void split_rejectsUserMaps() {
+        ladder().map("0:a:1").build();
+    }
+
+    @Test
+    public void identicalOptions_useTee() {
+        String command = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("h264")
+                .output("local.mp4")
+                .addOutput("rtmp://live/key", o -> o.format("flv"))
+                .build();
+        assertEquals("-y -i in.mp4 -map 0:v? -map 0:a? -c:v h264 -flags +global_header -f tee"
+                + " local.mp4|[f=flv]rtmp://live/key", command);
+    }
+
+    @Test
+    public void sameGeometry_keepsSeparateOutputs() {
+        String command = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .resolution(640, 360)
+                .addOutput("a.mp4", o -> o.videoBitRate("1M"))
+                .addOutput("b.mp4", o -> o.videoBitRate("2M"))
+                .build();
+        assertEquals("-y -i in.mp4 -b:v 1M -s 640x360 a.mp4 -b:v 2M -s 640x360 b.mp4", command);
+    }
+
+    @Test
+    public void fork_copiesOutputScopes() {
+        FFmpegCommandBuilder source = ladder();
+        FFmpegCommandBuilder variant = source.fork().videoCodec("libx265");
+        assertNotEquals(source.build(), variant.build());
+        assertEquals(Arrays.asList("1080.mp4", "720.mp4", "360.mp4"), variant.getOutputs());
+    }
+}
@@ -0,0 +1,87 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class OutputSinkTest {
+
+    @Test
+    public void fragmentedMp4_setsFormatAndMovflags() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("libx264")
+                .output(OutputSink.pipe(1), StreamFormat.FRAGMENTED_MP4)
+                .profile(EncodingProfile.SMALLEST_OUTPUT, 1);
+        String command = builder.build();
+        assertTrue(command, command.endsWith(" -movflags frag_keyframe+empty_moov+default_base_moof -f mp4 pipe:1"));
+        assertFalse(builder.getOutputSink().needsPump());
+    }
+
+    @Test
+    public void mpegTs_clearsMovflags() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .option(Option.MOVFLAGS, "+faststart")
+                .output(OutputSink.pipe(1), StreamFormat.MPEG_TS);
+        assertEquals("-y -i in.mp4 -f mpegts pipe:1", builder.build());
+
+        builder.output("out.mp4");
+        assertNull(builder.getOutputSink());
+    }
+
+    @Test
+    public void switchingBackToFile_dropsStreamFormat() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .output(OutputSink.pipe(3), StreamFormat.FRAGMENTED_MP4)
+                .output("out.mkv");
+        assertEquals("-y -i in.mp4 out.mkv", builder.build());
+
+        builder.profile(EncodingProfile.SMALLEST_OUTPUT, 1)
+                .output(OutputSink.pipe(3), StreamFormat.FRAGMENTED_MP4)
+                .output("out.mp4");
+        String command = builder.build();
+        assertTrue(command, command.endsWith(" -movflags +faststart out.mp4"));
+        assertFalse(command, command.contains("-f mp4"));
+    }
+
+    @Test
+    public void channelSink_copiesFFmpegOutputToTarget() throws Exception {
+        byte[] data = new byte[2 * InputSource.DEFAULT_BUFFER_SIZE + 5];
+        new Random(3).nextBytes(data);
+        Pipe ffmpegStdout = Pipe.open();
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        OutputSink sink = OutputSink.channel(ffmpegStdout.source(), Channels.newChannel(target), "pipe:1");
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .output(sink, StreamFormat.MPEG_TS);
+        assertEquals("pipe:1", builder.getOutput());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> pumped = pool.submit(builder.getOutputSink()::pump);
+            // 模拟 FFmpeg 分多次写出
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                buffer.limit(Math.min(data.length, buffer.position() + 65536));
+                ffmpegStdout.sink().write(buffer);
+                buffer.limit(data.length);
+            }
+            ffmpegStdout.sink().close();
+            assertEquals(data.length, (long) pumped.get());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertArrayEquals(data, target.toByteArray());
+    }
+}
@@ -0,0 +1,189 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ParallelSegmentPlannerTest {
+
+    private static FFmpegCommandBuilder builder(File dir) {
+        return FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("libx264")
+                .audioCodec("aac")
+                .audioBitRate("128k")
+                .output(new File(dir, "out.mp4").getAbsolutePath());
+    }
+
+    @Test
+    public void boundaries_snapToNearestKeyframe() {
+        double[] bounds = ParallelSegmentPlanner.create()
+                .segments(4)
+                .keyframes(new double[]{0, 2, 24, 26, 49, 52, 74, 77, 98})
+                .boundaries(100);
+        assertEquals("[0.0, 24.0, 49.0, 74.0, 100.0]", Arrays.toString(bounds));
+    }
+
+    @Test
+    public void defaultSegmentCount_respectsCoresAndMinimumLength() {
+        assertEquals(5, ParallelSegmentPlanner.create().cores(4).boundaries(600).length);
+        assertEquals(3, ParallelSegmentPlanner.create().cores(16).boundaries(25).length);
+        assertEquals(2, ParallelSegmentPlanner.create().cores(16).boundaries(3).length);
+    }
+
+    @Test
+    public void segmentCommands_seekOnInputAndDropAudio() throws Exception {
+        File dir = Files.createTempDirectory("seg").toFile();
+        SegmentPlan plan = ParallelSegmentPlanner.create().segments(2).cores(8).plan(builder(dir), 60);
+        List<SegmentPlan.Segment> segments = plan.getSegments();
+        assertEquals(2, segments.size());
+        String command = String.join(" ", segments.get(1).getArgs());
+        assertTrue(command, command.startsWith("-y -ss 30.000 -t 30.000 -i in.mp4 -c:v libx264 -threads 4 -an "));
+        assertFalse(command.contains("-c:a"));
+
+        String concat = String.join(" ", plan.getConcatArgs());
+        assertTrue(concat, concat.contains("-map 0:v -map 1:a? -c:v copy -c:a aac -b:a 128k -t 60.000"));
+    }
+
+    @Test
+    public void execute_runsSegmentsThenConcat() throws Exception {
+        File dir = Files.createTempDirectory("seg").toFile();
+        SegmentPlan plan = ParallelSegmentPlanner.create().segments(3).plan(builder(dir), 90);
+        ConcurrentLinkedQueue<String[]> executed = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            ExecutionResult result = plan.execute(args -> {
+                executed.add(args);
+                if (Arrays.asList(args).contains("concat")) {
+                    assertTrue(readList(args[6]).startsWith("ffconcat version 1.0\nfile '"));
+                }
+                return ExecutionResult.success();
+            }, pool);
+            assertTrue(result.isSuccess());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(4, executed.size());
+        assertFalse(new File(plan.getConcatArgs()[6]).exists());
+    }
+
+    @Test
+    public void execute_reportsMetricsForSegmentsAndConcat() throws Exception {
+        File dir = Files.createTempDirectory("seg").toFile();
+        SegmentPlan plan = ParallelSegmentPlanner.create().segments(3)
+                .plan(builder(dir).profile(EncodingProfile.MAX_THROUGHPUT, 1), 90);
+        ConcurrentLinkedQueue<JobMetrics> reported = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            assertTrue(plan.execute(args -> ExecutionResult.success(), pool, reported::add).isSuccess());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(4, reported.size());
+        long segments = reported.stream()
+                .filter(m -> EncodingProfile.MAX_THROUGHPUT.name().equals(m.getProfile()))
+                .count();
+        assertEquals(3, segments);
+        assertTrue(reported.stream().anyMatch(m -> SegmentPlan.CONCAT_PROFILE.equals(m.getProfile())));
+        assertTrue(reported.stream().allMatch(m -> m.getReturnCode() == 0));
+    }
+
+    private static String readList(String path) {
+        try {
+            return new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void execute_stopsOnFailedSegment() throws Exception {
+        File dir = Files.createTempDirectory("seg").toFile();
+        SegmentPlan plan = ParallelSegmentPlanner.create().segments(2).plan(builder(dir), 60);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ExecutionResult result = plan.execute(args -> new ExecutionResult(1, "boom"), pool);
+            assertEquals(1, result.getReturnCode());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void execute_waitsForCancelledSegmentsBeforeCleanup() throws Exception {
+        File dir = Files.createTempDirectory("seg").toFile();
+        SegmentPlan plan = ParallelSegmentPlanner.create().segments(2).plan(builder(dir), 60);
+        File slowOutput = plan.getSegments().get(1).getOutput();
+        AtomicBoolean slowExited = new AtomicBoolean();
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ExecutionResult result = plan.execute(args -> {
+                if (!args[args.length - 1].equals(slowOutput.getAbsolutePath())) {
+                    slowStarted.await();
+                    return new ExecutionResult(1, "boom");
+                }
+                slowStarted.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    // 模拟被取消的分段退出前还在写文件
+                    try {
+                        Files.write(slowOutput.toPath(), new byte[]{1});
+                    } catch (IOException io) {
+                        throw new AssertionError(io);
+                    }
+                }
+                slowExited.set(true);
+                return new ExecutionResult(ExecutionResult.RETURN_CODE_CANCEL, null);
+            }, pool);
+            assertEquals(1, result.getReturnCode());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(slowExited.get());
+        assertFalse(slowOutput.exists());
+    }
+
+    @Test
+    public void execute_cleansUpWhenConcatFails() throws Exception {
+        File dir = Files.createTempDirectory("seg").toFile();
+        SegmentPlan plan = ParallelSegmentPlanner.create().segments(2).plan(builder(dir), 60);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ExecutionResult result = plan.execute(args -> {
+                if (Arrays.asList(args).contains("concat")) {
+                    return new ExecutionResult(1, "concat failed");
+                }
+                try {
+                    Files.write(new File(args[args.length - 1]).toPath(), new byte[]{1});
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                return ExecutionResult.success();
+            }, pool);
+            assertEquals(1, result.getReturnCode());
+        } finally {
+            pool.shutdownNow();
+        }
+        for (SegmentPlan.Segment segment : plan.getSegments()) {
+            assertFalse(segment.getOutput().exists());
+        }
+        assertFalse(new File(plan.getConcatArgs()[6]).exists());
+    }
+}
@@ -0,0 +1,60 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SegmentedOutputTest {
+
+    @Test
+    public void hls_defaults() {
+        String command = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("libx264")
+                .output(HlsOutput.create("/sdcard/live/index.m3u8").segmentDuration(4))
+                .build();
+        assertEquals("-y -i in.mp4 -c:v libx264 -force_key_frames expr:gte(t,n_forced*4) -f hls -hls_time 4"
+                + " -hls_list_size 0 -hls_segment_type mpegts -hls_segment_filename /sdcard/live/index_%05d.ts"
+                + " -hls_playlist_type event -hls_flags temp_file+independent_segments /sdcard/live/index.m3u8",
+                command);
+    }
+
+    @Test
+    public void hls_liveFmp4() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("copy")
+                .option(Option.MOVFLAGS, "+faststart")
+                .output(HlsOutput.create("out/live.m3u8")
+                        .segmentDuration(2.5)
+                        .playlistType(HlsOutput.PlaylistType.LIVE)
+                        .listSize(3)
+                        .segmentType(HlsOutput.SegmentType.FMP4)
+                        .independentSegments(false));
+        assertNull(builder.get(Option.MOVFLAGS));
+        assertNull(builder.get("-force_key_frames"));
+        assertNull(builder.get("-hls_playlist_type"));
+        assertEquals("3", builder.get("-hls_list_size"));
+        assertEquals("2.5", builder.get("-hls_time"));
+        assertEquals("out/live_%05d.m4s", builder.get("-hls_segment_filename"));
+        assertEquals("live_init.mp4", builder.get("-hls_fmp4_init_filename"));
+        assertEquals("temp_file+delete_segments", builder.get("-hls_flags"));
+        assertEquals("out/live.m3u8", builder.getOutput());
+    }
+
+    @Test
+    public void dash_streaming() {
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .output(DashOutput.create("manifest.mpd").streaming(true));
+        assertEquals("dash", builder.get("-f"));
+        assertEquals("6", builder.get("-seg_duration"));
+        assertEquals("expr:gte(t,n_forced*6)", builder.get("-force_key_frames"));
+        assertEquals("1", builder.get("-ldash"));
+        assertEquals("chunk-$RepresentationID$-$Number%05d$.m4s", builder.get("-media_seg_name"));
+
+        builder.output(DashOutput.create("manifest.mpd"));
+        assertNull(builder.get("-ldash"));
+        assertFalse(builder.build().contains("-streaming"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.MediaProbe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StreamCopyDecisionTest {
+
+    private static MediaInfo probe(String videoCodec, int width, int height, String videoBitRate,
+                                   String audioCodec, String audioBitRate) {
+        return MediaProbe.parse("{\"streams\": ["
+                + "{\"index\": 0, \"codec_type\": \"video\", \"codec_name\": \"" + videoCodec + "\","
+                + " \"width\": " + width + ", \"height\": " + height + ", \"avg_frame_rate\": \"30/1\","
+                + (videoBitRate != null ? " \"bit_rate\": \"" + videoBitRate + "\"," : "")
+                + " \"pix_fmt\": \"yuv420p\"},"
+                + "{\"index\": 1, \"codec_type\": \"audio\", \"codec_name\": \"" + audioCodec + "\","
+                + " \"sample_rate\": \"44100\", \"channels\": 2, \"bit_rate\": \"" + audioBitRate + "\"}],"
+                + " \"format\": {\"bit_rate\": \"1200000\"}}");
+    }
+
+    private static FFmpegCommandBuilder target() {
+        return FFmpegCommandBuilder.create()
+                .input("in.mp4")
+                .videoCodec("libx264")
+                .audioCodec("aac")
+                .videoBitRate("1M")
+                .audioBitRate("128k")
+                .resolution(640, 360)
+                .frameRate(30)
+                .option(Option.PRESET, "veryfast")
+                .output("out.mp4");
+    }
+
+    @Test
+    public void compliantSource_isRemuxed() {
+        FFmpegCommandBuilder builder = target()
+                .copyCompliantStreams(probe("h264", 640, 360, "900000", "aac", "96000"));
+        assertEquals("-y -i in.mp4 -c:v copy -c:a copy out.mp4", builder.build());
+    }
+
+    @Test
+    public void onlyCompliantStreamIsCopied() {
+        StreamCopyDecision decision = StreamCopyDecision.decide(target(),
+                probe("h264", 1280, 720, "900000", "aac", "96000"));
+        assertFalse(decision.isCopyVideo());
+        assertTrue(decision.isCopyAudio());
+
+        FFmpegCommandBuilder builder = target();
+        decision.applyTo(builder);
+        assertEquals("-y -i in.mp4 -c:v libx264 -c:a copy -b:v 1M -s 640x360 -r 30 -preset veryfast out.mp4",
+                builder.build());
+    }
+
+    @Test
+    public void bitRateAboveTarget_isReencoded() {
+        StreamCopyDecision decision = StreamCopyDecision.decide(target(),
+                probe("h264", 640, 360, "2500000", "aac", "256000"));
+        assertFalse(decision.isCopyVideo());
+        assertFalse(decision.isCopyAudio());
+    }
+
+    @Test
+    public void unknownStreamBitRate_fallsBackToFormatBitRate() {
+        FFmpegCommandBuilder builder = target().videoBitRate("1.5M");
+        assertTrue(StreamCopyDecision.decide(builder, probe("h264", 640, 360, null, "aac", "96000")).isCopyVideo());
+        builder.videoBitRate("1M");
+        assertFalse(StreamCopyDecision.decide(builder, probe("h264", 640, 360, null, "aac", "96000")).isCopyVideo());
+    }
+
+    @Test
+    public void differentCodecOrFilters_areReencoded() {
+        MediaInfo hevc = probe("hevc", 640, 360, "900000", "opus", "96000");
+        assertFalse(StreamCopyDecision.decide(target(), hevc).isCopyVideo());
+        assertFalse(StreamCopyDecision.decide(target(), hevc).isCopyAudio());
+
+        MediaInfo h264 = probe("h264", 640, 360, "900000", "aac", "96000");
+        FFmpegCommandBuilder filtered = target().videoFilters(Filter.fps(24));
+        assertFalse(StreamCopyDecision.decide(filtered, h264).isCopyVideo());
+        FFmpegCommandBuilder accurateSeek = target().seek("10", SeekMode.ACCURATE);
+        assertFalse(StreamCopyDecision.decide(accurateSeek, h264).isCopyVideo());
+        FFmpegCommandBuilder fastSeek = target().seek("10", SeekMode.FAST);
+        assertTrue(StreamCopyDecision.decide(fastSeek, h264).isCopyVideo());
+    }
+
+    @Test
+    public void parseNumber_supportsSuffixes() {
+        assertEquals(1_500_000, StreamCopyDecision.parseNumber("1.5M"), 1e-6);
+        assertEquals(128_000, StreamCopyDecision.parseNumber("128k"), 1e-6);
+        assertEquals(44_100, StreamCopyDecision.parseNumber("44100"), 1e-6);
+        assertTrue(Double.isNaN(StreamCopyDecision.parseNumber("fast")));
+    }
+}
@@ -0,0 +1,43 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailBuilderTest {
+
+    @Test
+    public void spriteSheet_singlePassOverKeyframes() {
+        String command = ThumbnailBuilder.create("in.mp4")
+                .every(10)
+                .size(160, -2)
+                .spriteSheet("sprite.jpg", 5, 4)
+                .build()
+                .build();
+        assertEquals("-y -skip_frame nokey -i in.mp4"
+                + " -vf select=isnan(prev_selected_t)+gte(t-prev_selected_t\\,10.000),scale=w=160:h=-2,tile=5x4"
+                + " -fps_mode vfr -an -frames:v 1 sprite.jpg", command);
+    }
+
+    @Test
+    public void timestamps_selectFirstFrameAtOrAfterEach() {
+        ThumbnailBuilder thumbnails = ThumbnailBuilder.create("in.mp4").at(30, 1);
+        assertEquals("gte(t,1.000)*not(gte(prev_selected_t,1.000))+gte(t,30.000)*not(gte(prev_selected_t,30.000))",
+                thumbnails.selectExpression());
+        FFmpegCommandBuilder builder = thumbnails.quality(3).images("thumb_%03d.jpg").build();
+        assertEquals("3", builder.get("-q:v"));
+        assertNull(builder.get("-frames:v"));
+        assertEquals("thumb_%03d.jpg", builder.getOutput());
+    }
+
+    @Test
+    public void singleTimestamp_seeksInsteadOfSelecting() {
+        String command = ThumbnailBuilder.create("in.mp4")
+                .at(12.5)
+                .keyframesOnly(false)
+                .images("poster.jpg")
+                .build()
+                .build();
+        assertEquals("-y -ss 12.500 -i in.mp4 -fps_mode vfr -an -frames:v 1 poster.jpg", command);
+    }
+}
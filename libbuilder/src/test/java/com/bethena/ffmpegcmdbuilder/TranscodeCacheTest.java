@@ -0,0 +1,218 @@
+package com.bethena.ffmpegcmdbuilder;
+
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+import com.bethena.ffmpegcmdbuilder.exec.FFmpegExecutor;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TranscodeCacheTest {
+
+    private File dir;
+    private File source;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    /**
+     * 把参数（输出路径除外）写入输出文件的假执行器
+     */
+    private final FFmpegExecutor executor = args -> {
+        runs.incrementAndGet();
+        String content = String.join(" ", Arrays.copyOf(args, args.length - 1));
+        try {
+            Files.write(new File(args[args.length - 1]).toPath(), content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return new ExecutionResult(1, e.getMessage());
+        }
+        return ExecutionResult.success();
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("transcode").toFile();
+        source = new File(dir, "in.mp4");
+        Files.write(source.toPath(), new byte[]{1, 2, 3, 4});
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private FFmpegCommandBuilder builder(String output) {
+        return FFmpegCommandBuilder.create()
+                .input(source.getAbsolutePath())
+                .videoCodec("libx264")
+                .videoBitRate("1M")
+                .output(new File(dir, output).getAbsolutePath());
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void canonicalArgs_excludePathsAndProgress() {
+        FFmpegCommandBuilder builder = builder("a.mp4").progress("pipe:1");
+        assertArrayEquals(new String[]{"-i", "<input0>", "-c:v", "libx264", "-b:v", "1M", "<output.mp4>"},
+                TranscodeCache.canonicalArgs(builder));
+    }
+
+    @Test
+    public void sameContentAndSettings_hitsCache() throws Exception {
+        TranscodeCache cache = new TranscodeCache(new File(dir, "cache"), 1024);
+        assertTrue(cache.execute(builder("a.mp4"), executor).isSuccess());
+        File copy = new File(dir, "copy.mp4");
+        Files.copy(source.toPath(), copy.toPath());
+        assertTrue(cache.execute(FFmpegCommandBuilder.create()
+                .input(copy.getAbsolutePath())
+                .videoCodec("libx264")
+                .videoBitRate("1M")
+                .output(new File(dir, "b.mp4").getAbsolutePath()), executor).isSuccess());
+        assertEquals(1, runs.get());
+        assertEquals(read(new File(dir, "a.mp4")), read(new File(dir, "b.mp4")));
+
+        cache.execute(builder("c.mp4").videoBitRate("2M"), executor);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void metrics_reportRunsAndCacheHits() throws Exception {
+        TranscodeCache cache = new TranscodeCache(new File(dir, "cache"), 1024);
+        MetricsRegistry registry = new MetricsRegistry();
+        List<JobMetrics> reported = new CopyOnWriteArrayList<>();
+        cache.setMetricsListener(metrics -> {
+            reported.add(metrics);
+            registry.onJobCompleted(metrics);
+        });
+        cache.execute(builder("a.mp4"), executor);
+        cache.execute(builder("b.mp4"), executor);
+        assertEquals(2, reported.size());
+        assertFalse(reported.get(0).isCacheHit());
+        assertTrue(reported.get(1).isCacheHit());
+        assertEquals(0, reported.get(1).getReturnCode());
+        assertEquals(2, registry.get(JobMetrics.DEFAULT_PROFILE).getSucceeded());
+        assertEquals(1, registry.get(JobMetrics.DEFAULT_PROFILE).getCacheHits());
+    }
+
+    @Test
+    public void overwritingLinkedOutput_keepsCacheIntact() throws Exception {
+        TranscodeCache cache = new TranscodeCache(new File(dir, "cache"), 1024);
+        cache.execute(builder("a.mp4"), executor);
+        cache.execute(builder("a.mp4"), executor);
+        String cached = read(new File(dir, "a.mp4"));
+        cache.execute(builder("a.mp4").videoBitRate("2M"), executor);
+        cache.execute(builder("b.mp4"), executor);
+        assertEquals(2, runs.get());
+        assertEquals(cached, read(new File(dir, "b.mp4")));
+    }
+
+    @Test
+    public void totalSize_isBoundedByEviction() throws Exception {
+        TranscodeCache cache = new TranscodeCache(new File(dir, "cache"), 100);
+        for (int i = 0; i < 5; i++) {
+            cache.execute(builder("out" + i + ".mp4").videoBitRate(i + "M"), executor);
+        }
+        assertTrue(cache.getTotalBytes() <= 100);
+        // 最近使用的条目仍然命中
+        cache.execute(builder("again.mp4").videoBitRate("4M"), executor);
+        assertEquals(5, runs.get());
+
+        TranscodeCache reopened = new TranscodeCache(new File(dir, "cache"), 100);
+        assertEquals(cache.getTotalBytes(), reopened.getTotalBytes());
+
+        // 以更小的上限重新打开时立即淘汰
+        TranscodeCache shrunk = new TranscodeCache(new File(dir, "cache"), 40);
+        assertTrue(shrunk.getTotalBytes() <= 40);
+        assertTrue(new File(dir, "cache").listFiles().length < 5);
+    }
+
+    @Test
+    public void duplicateSubmissions_runOnce() throws Exception {
+        TranscodeCache cache = new TranscodeCache(new File(dir, "cache"), 1024);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FFmpegExecutor slow = args -> {
+            started.countDown();
+            release.await();
+            return executor.execute(args);
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ExecutionResult> first = pool.submit(() -> cache.execute(builder("a.mp4"), slow));
+            started.await();
+            Future<ExecutionResult> second = pool.submit(() -> cache.execute(builder("b.mp4"), slow));
+            Thread.sleep(50);
+            release.countDown();
+            assertTrue(first.get().isSuccess());
+            assertTrue(second.get().isSuccess());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void differentKeys_doNotWaitForEachOther() throws Exception {
+        TranscodeCache cache = new TranscodeCache(new File(dir, "cache"), 1024);
+        CountDownLatch release = new CountDownLatch(1);
+        FFmpegExecutor blocking = args -> {
+            release.await();
+            return executor.execute(args);
+        };
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<ExecutionResult> blocked = pool.submit(() -> cache.execute(builder("a.mp4"), blocking));
+            // 任何缓存键都不会被正在转码的其他键挡住
+            for (int i = 0; i < 40; i++) {
+                assertTrue(cache.execute(builder("b" + i + ".mp4").videoBitRate(i + "k"), executor).isSuccess());
+            }
+            assertFalse(blocked.isDone());
+            release.countDown();
+            assertTrue(blocked.get().isSuccess());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+        assertEquals(41, runs.get());
+    }
+
+    @Test
+    public void fingerprint_coversWholeFile() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        File a = new File(dir, "a.bin");
+        Files.write(a.toPath(), data);
+        String original = TranscodeCache.fingerprint(a);
+        // 只改动一个字节，大小不变
+        data[data.length / 4] = 1;
+        Files.write(a.toPath(), data);
+        assertNotEquals(original, TranscodeCache.fingerprint(a));
+    }
+}
@@ -0,0 +1,167 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.EncodingProfile;
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+import com.bethena.ffmpegcmdbuilder.Option;
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+import com.bethena.ffmpegcmdbuilder.probe.MediaInfo;
+import com.bethena.ffmpegcmdbuilder.probe.MediaProbe;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveConcurrencyControllerTest {
+
+    private final FFmpegJobQueue queue = new FFmpegJobQueue(args -> ExecutionResult.success(), 2, 10);
+
+    private double load = 0.5;
+
+    private AdaptiveConcurrencyController controller(int cores) {
+        return new AdaptiveConcurrencyController(queue, cores).cpuLoad(() -> load);
+    }
+
+    private static JobMetrics finished(String profile, double speed) {
+        JobMetrics metrics = new JobMetrics(profile);
+        metrics.recordEncode(TimeUnit.SECONDS.toNanos(10));
+        metrics.recordProgress(Math.round(speed * 10_000_000), Double.NaN);
+        metrics.complete(ExecutionResult.success());
+        return metrics;
+    }
+
+    @Test
+    public void idleCpu_increasesAdditively() {
+        AdaptiveConcurrencyController controller = controller(8);
+        assertEquals(2, controller.getConcurrency());
+        // 每个任务加 1/limit：2 -> 2.5 -> 2.9 -> 3.24
+        controller.onJobCompleted(finished("p", 2));
+        controller.onJobCompleted(finished("p", 2));
+        assertEquals(2, controller.getConcurrency());
+        controller.onJobCompleted(finished("p", 2));
+        assertEquals(3, controller.getConcurrency());
+        assertEquals(3, queue.getMaxConcurrency());
+        for (int i = 0; i < 300; i++) {
+            controller.onJobCompleted(finished("p", 2));
+        }
+        assertEquals(8, controller.getConcurrency());
+        assertEquals(1, controller.getThreadsPerJob());
+    }
+
+    @Test
+    public void saturatedCpu_decreasesMultiplicatively() {
+        AdaptiveConcurrencyController controller = controller(16).limits(1, 16).backoff(0.5);
+        for (int i = 0; i < 300; i++) {
+            controller.onJobCompleted(finished("p", 2));
+        }
+        assertEquals(16, controller.getConcurrency());
+        load = 1.2;
+        controller.onJobCompleted(finished("p", 2));
+        assertEquals(8, controller.getConcurrency());
+        controller.onJobCompleted(finished("p", 2));
+        assertEquals(4, controller.getConcurrency());
+        assertEquals(4, controller.getThreadsPerJob());
+    }
+
+    private static MediaInfo source(int width, int height) {
+        return MediaProbe.parse("{\"streams\": [{\"index\": 0, \"codec_type\": \"video\","
+                + " \"codec_name\": \"h264\", \"width\": " + width + ", \"height\": " + height + ","
+                + " \"avg_frame_rate\": \"30/1\"}], \"format\": {\"duration\": \"10\"}}");
+    }
+
+    private static JobMetrics finished(int width, int height, double speed) {
+        JobMetrics metrics = finished(EncodingProfile.MAX_THROUGHPUT.name(), speed);
+        metrics.recordSource(source(width, height));
+        return metrics;
+    }
+
+    @Test
+    public void slowdown_isComparedByPixelThroughput() {
+        AdaptiveConcurrencyController controller = controller(8).limits(2, 8).backoff(0.5);
+        load = Double.NaN;
+        // 第一个任务只建立基准：2 -> 2 -> 2.5 -> 2.9 -> 3.24
+        for (int i = 0; i < 4; i++) {
+            controller.onJobCompleted(finished(1920, 1080, 4));
+        }
+        assertEquals(3, controller.getConcurrency());
+        // 4K 的像素是 1080p 的 4 倍，倍速 1 时每秒处理的像素数相同，不是变慢
+        controller.onJobCompleted(finished(3840, 2160, 1));
+        assertEquals(3, controller.getConcurrency());
+        // 没有源信息的任务不参与比较
+        controller.onJobCompleted(finished(EncodingProfile.MAX_THROUGHPUT.name(), 0.1));
+        assertEquals(3, controller.getConcurrency());
+        controller.onJobCompleted(finished(1920, 1080, 1.5));
+        assertEquals(2, controller.getConcurrency());
+
+        // 失败的任务不参与调整
+        JobMetrics failed = new JobMetrics("small");
+        failed.complete(new ExecutionResult(1, "boom"));
+        controller.onJobCompleted(failed);
+        assertEquals(2, controller.getConcurrency());
+    }
+
+    @Test
+    public void unknownLoadAndThroughput_holdsConcurrency() throws Exception {
+        // 执行器按固定倍速上报进度，和真实任务一样经过队列回调控制器
+        FFmpegJobQueue speedQueue = new FFmpegJobQueue(new FFmpegExecutor() {
+            @Override
+            public ExecutionResult execute(String[] args) {
+                return ExecutionResult.success();
+            }
+
+            @Override
+            public ExecutionResult execute(String[] args, JobMetrics metrics) {
+                // 队列会用实际耗时覆盖执行耗时，只上报倍速，倍速按上报值计算
+                metrics.recordProgress(-1, 2);
+                return ExecutionResult.success();
+            }
+        }, 2, 10);
+        List<JobMetrics> completed = new CopyOnWriteArrayList<>();
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(speedQueue, 8)
+                .cpuLoad(() -> Double.NaN)
+                .forwardTo(completed::add);
+        speedQueue.setMetricsListener(controller);
+
+        for (int i = 0; i < 10; i++) {
+            runThrough(controller, completed, null);
+        }
+        assertEquals(2, controller.getConcurrency());
+
+        // 有源信息后吞吐量有了基准，倍速稳定时逐步增加
+        for (int i = 0; i < 4; i++) {
+            runThrough(controller, completed, source(1280, 720));
+        }
+        assertTrue(completed.get(completed.size() - 1).getInputPixelRate() > 0);
+        assertEquals(3, controller.getConcurrency());
+    }
+
+    private static void runThrough(AdaptiveConcurrencyController controller, List<JobMetrics> completed,
+                                   MediaInfo source) throws Exception {
+        int before = completed.size();
+        FFmpegCommandBuilder builder = FFmpegCommandBuilder.create().input("in.mp4").output("out.mp4");
+        assertTrue(controller.submit(builder, JobPriority.NORMAL, source).await(5, TimeUnit.SECONDS).isSuccess());
+        FFmpegJobQueueTest.waitFor(() -> completed.size() == before + 1);
+    }
+
+    @Test
+    public void applyTo_setsThreadsAndForwardsMetrics() throws Exception {
+        List<JobMetrics> forwarded = new ArrayList<>();
+        AdaptiveConcurrencyController controller = controller(8).forwardTo(forwarded::add);
+        FFmpegCommandBuilder plain = FFmpegCommandBuilder.create().input("in.mp4").output("out.mp4");
+        controller.applyTo(plain);
+        assertEquals("4", plain.get(Option.THREADS));
+
+        FFmpegCommandBuilder profiled = FFmpegCommandBuilder.create().input("in.mp4")
+                .profile(EncodingProfile.MAX_THROUGHPUT, 1).output("out.mp4");
+        queue.setMetricsListener(controller);
+        FFmpegJob job = controller.submit(profiled, JobPriority.NORMAL);
+        assertEquals("4", profiled.get(Option.THREADS));
+        assertTrue(job.await(5, TimeUnit.SECONDS).isSuccess());
+        FFmpegJobQueueTest.waitFor(() -> forwarded.size() == 1);
+        assertSame(job.getMetrics(), forwarded.get(0));
+    }
+}
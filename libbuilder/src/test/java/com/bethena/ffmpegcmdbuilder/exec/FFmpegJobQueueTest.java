@@ -0,0 +1,168 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FFmpegJobQueueTest {
+
+    /**
+     * 假执行器：阻塞到 release 被调用，记录执行顺序和最大并发
+     */
+    private static final class FakeExecutor implements FFmpegExecutor {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> started = new CopyOnWriteArrayList<>();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        @Override
+        public ExecutionResult execute(String[] args) throws InterruptedException {
+            started.add(args[0]);
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } finally {
+                active.decrementAndGet();
+            }
+            return "fail".equals(args[0]) ? new ExecutionResult(1, "boom") : ExecutionResult.success();
+        }
+    }
+
+    @Test
+    public void concurrency_isBounded() throws Exception {
+        FakeExecutor executor = new FakeExecutor();
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 2, 10);
+        FFmpegJob[] jobs = new FFmpegJob[5];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = queue.submit(new String[]{"job" + i}, JobPriority.NORMAL);
+        }
+        waitFor(() -> executor.started.size() == 2);
+        assertEquals(2, queue.getRunningCount());
+        assertEquals(3, queue.getQueuedCount());
+        executor.release.countDown();
+        for (FFmpegJob job : jobs) {
+            assertTrue(job.await(5, TimeUnit.SECONDS).isSuccess());
+            assertEquals(FFmpegJob.State.SUCCEEDED, job.getState());
+        }
+        assertEquals(2, executor.maxActive.get());
+    }
+
+    @Test
+    public void higherPriority_startsFirst() throws Exception {
+        FakeExecutor executor = new FakeExecutor();
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 10);
+        queue.submit(new String[]{"first"}, JobPriority.LOW);
+        waitFor(() -> executor.started.size() == 1);
+        queue.submit(new String[]{"low"}, JobPriority.LOW);
+        queue.submit(new String[]{"normal"}, JobPriority.NORMAL);
+        FFmpegJob last = queue.submit(new String[]{"high"}, JobPriority.HIGH);
+        executor.release.countDown();
+        queue.shutdown();
+        assertTrue(queue.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals("[first, high, normal, low]", executor.started.toString());
+        assertTrue(last.isDone());
+    }
+
+    @Test
+    public void fullQueue_appliesBackpressure() throws Exception {
+        FakeExecutor executor = new FakeExecutor();
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 1);
+        assertNotNull(queue.trySubmit(new String[]{"running"}, JobPriority.NORMAL));
+        waitFor(() -> executor.started.size() == 1);
+        assertNotNull(queue.trySubmit(new String[]{"queued"}, JobPriority.NORMAL));
+        assertNull(queue.trySubmit(new String[]{"rejected"}, JobPriority.NORMAL));
+        assertNull(queue.submit(new String[]{"timeout"}, JobPriority.NORMAL, 10, TimeUnit.MILLISECONDS));
+        executor.release.countDown();
+        queue.shutdown();
+        assertTrue(queue.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancel_queuedAndRunningJobs() throws Exception {
+        FakeExecutor executor = new FakeExecutor();
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 10);
+        FFmpegJob running = queue.submit(new String[]{"running"}, JobPriority.NORMAL);
+        FFmpegJob queued = queue.submit(new String[]{"queued"}, JobPriority.NORMAL);
+        waitFor(() -> running.getState() == FFmpegJob.State.RUNNING && executor.started.size() == 1);
+
+        assertTrue(queued.cancel());
+        assertEquals(FFmpegJob.State.CANCELLED, queued.getState());
+        assertTrue(running.cancel());
+        assertTrue(running.await(5, TimeUnit.SECONDS).isCancelled());
+        assertEquals(FFmpegJob.State.CANCELLED, running.getState());
+        assertFalse(running.cancel());
+        assertEquals("[running]", executor.started.toString());
+    }
+
+    @Test
+    public void failedResult_marksJobFailed() throws Exception {
+        FakeExecutor executor = new FakeExecutor();
+        executor.release.countDown();
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 1);
+        FFmpegJob job = queue.submit(new String[]{"fail"}, JobPriority.NORMAL);
+        assertEquals(1, job.await(5, TimeUnit.SECONDS).getReturnCode());
+        assertEquals(FFmpegJob.State.FAILED, job.getState());
+    }
+
+    @Test
+    public void executorError_stillFinishesJob() throws Exception {
+        FFmpegJobQueue queue = new FFmpegJobQueue(args -> {
+            if ("error".equals(args[0])) {
+                throw new AssertionError("boom");
+            }
+            return ExecutionResult.success();
+        }, 1, 10);
+        FFmpegJob failed = queue.submit(new String[]{"error"}, JobPriority.NORMAL);
+        assertEquals(-1, failed.await(5, TimeUnit.SECONDS).getReturnCode());
+        assertEquals(FFmpegJob.State.FAILED, failed.getState());
+        waitFor(() -> queue.getRunningCount() == 0);
+        // 并发名额已释放，后续任务照常执行
+        assertTrue(queue.submit(new String[]{"next"}, JobPriority.NORMAL).await(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    public void metricsListener_receivesCompletedJobs() throws Exception {
+        FakeExecutor executor = new FakeExecutor();
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 10);
+        List<JobMetrics> reported = new CopyOnWriteArrayList<>();
+        queue.setMetricsListener(reported::add);
+        FFmpegJob running = queue.submit(new String[]{"running"}, JobPriority.NORMAL, new JobMetrics("hls"));
+        FFmpegJob queued = queue.submit(new String[]{"queued"}, JobPriority.NORMAL);
+        waitFor(() -> executor.started.size() == 1);
+        assertTrue(queued.cancel());
+        executor.release.countDown();
+        assertTrue(running.await(5, TimeUnit.SECONDS).isSuccess());
+        waitFor(() -> reported.size() == 2);
+
+        JobMetrics cancelled = reported.get(0);
+        assertSame(queued.getMetrics(), cancelled);
+        assertEquals(ExecutionResult.RETURN_CODE_CANCEL, cancelled.getReturnCode());
+        JobMetrics done = reported.get(1);
+        assertEquals("hls", done.getProfile());
+        assertEquals(0, done.getReturnCode());
+        assertTrue(done.getQueueWaitNanos() >= 0);
+        assertTrue(done.getEncodeNanos() > 0);
+    }
+
+    interface Condition {
+        boolean met();
+    }
+
+    static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.met()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class JobJournalTest {
+
+    private File dir;
+    private File file;
+
+    /**
+     * 名为 block 的任务阻塞到 release，其余直接成功
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    private final FFmpegExecutor executor = args -> {
+        executed.add(args[0]);
+        if ("block".equals(args[0])) {
+            release.await();
+        }
+        return ExecutionResult.success();
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal").toFile();
+        file = new File(dir, "jobs.journal");
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private FFmpegJobQueue queue(JobJournal journal) {
+        FFmpegJobQueue queue = new FFmpegJobQueue(executor, 1, 10);
+        queue.setMetricsListener(journal);
+        return queue;
+    }
+
+    @Test
+    public void restart_resumesOnlyUnfinishedJobs() throws Exception {
+        JobJournal journal = JobJournal.open(file);
+        FFmpegJobQueue queue = queue(journal);
+        FFmpegJob done = journal.submit(queue, new String[]{"done", "-i", "a b.mp4"}, JobPriority.HIGH);
+        assertTrue(done.await(5, TimeUnit.SECONDS).isSuccess());
+        journal.submit(queue, new String[]{"block"}, JobPriority.NORMAL);
+        journal.submit(queue, new String[]{"queued", "-c:v", "copy"}, JobPriority.LOW);
+        FFmpegJobQueueTest.waitFor(() -> executed.contains("block"));
+        // 模拟进程退出：日志先关闭，之后结束的任务不再记录
+        journal.close();
+        queue.shutdownNow();
+
+        JobJournal reopened = JobJournal.open(file);
+        List<JobJournal.Entry> pending = reopened.getPending();
+        assertEquals(2, pending.size());
+        assertArrayEquals(new String[]{"block"}, pending.get(0).getArgs());
+        assertArrayEquals(new String[]{"queued", "-c:v", "copy"}, pending.get(1).getArgs());
+        assertEquals(JobPriority.LOW, pending.get(1).getPriority());
+
+        release.countDown();
+        executed.clear();
+        FFmpegJobQueue next = queue(reopened);
+        List<FFmpegJob> resumed = reopened.resume(next);
+        assertEquals(2, resumed.size());
+        assertTrue(reopened.resume(next).isEmpty());
+        for (FFmpegJob job : resumed) {
+            assertTrue(job.await(5, TimeUnit.SECONDS).isSuccess());
+        }
+        FFmpegJobQueueTest.waitFor(() -> reopened.getPending().isEmpty());
+        FFmpegJob added = reopened.submit(next, new String[]{"new"}, JobPriority.NORMAL);
+        assertTrue(added.await(5, TimeUnit.SECONDS).isSuccess());
+        // await() 在队列回调监听器之前返回，等完成记录写入后再关闭
+        FFmpegJobQueueTest.waitFor(() -> reopened.getPending().isEmpty());
+        reopened.close();
+        assertEquals("[block, queued, new]", executed.toString());
+        try (JobJournal again = JobJournal.open(file)) {
+            assertTrue(again.getPending().isEmpty());
+        }
+    }
+
+    @Test
+    public void tornTail_isTruncated() throws Exception {
+        JobJournal journal = JobJournal.open(file);
+        FFmpegJobQueue queue = queue(journal);
+        journal.submit(queue, new String[]{"block"}, JobPriority.NORMAL);
+        journal.close();
+        long length = file.length();
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            // 写了一半的记录：长度和校验值之后内容不全
+            out.write(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 1, 0});
+        }
+
+        JobJournal reopened = JobJournal.open(file);
+        assertEquals(1, reopened.getPending().size());
+        assertEquals(length, file.length());
+        reopened.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void foreignFile_isRejected() throws Exception {
+        Files.write(file.toPath(), "not a journal".getBytes("UTF-8"));
+        JobJournal.open(file);
+    }
+
+    @Test
+    public void finishedRecords_areCompacted() throws Exception {
+        JobJournal journal = JobJournal.open(file, 10, TimeUnit.MILLISECONDS).compactAfter(2);
+        FFmpegJobQueue queue = queue(journal);
+        journal.submit(queue, new String[]{"block"}, JobPriority.NORMAL);
+        for (int i = 0; i < 5; i++) {
+            journal.submit(queue, new String[]{"job" + i}, JobPriority.LOW);
+        }
+        // 还有任务未完成时重写只保留它们
+        FFmpegJobQueueTest.waitFor(() -> executed.contains("block"));
+        assertEquals(6, journal.getPending().size());
+        release.countDown();
+        FFmpegJobQueueTest.waitFor(() -> journal.getPending().isEmpty());
+        // 全部完成后只剩文件头
+        FFmpegJobQueueTest.waitFor(() -> file.length() == 4);
+        journal.close();
+        assertFalse(new File(dir, "jobs.journal.tmp").exists());
+        try (JobJournal again = JobJournal.open(file)) {
+            assertTrue(again.getPending().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.bethena.ffmpegcmdbuilder.exec;
+
+import com.bethena.ffmpegcmdbuilder.metrics.JobMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LocalProcessExecutorTest {
+
+    /**
+     * 假 ffmpeg：按第一个参数决定行为
+     */
+    private static final String SCRIPT = "#!/bin/sh\n"
+            + "case \"$1\" in\n"
+            + "  ok) echo 'frame=1 fps=0.0' >&2; printf 'frame=2\\r' >&2; exit 0 ;;\n"
+            + "  loud) i=0; while [ $i -lt 5000 ]; do echo \"line $i of a rather long log message\" >&2;"
+            + " echo \"stdout $i\"; i=$((i+1)); done; exit 0 ;;\n"
+            + "  fail) echo 'Input #0' >&2; echo 'in.mp4: Invalid data found when processing input' >&2; exit 1 ;;\n"
+            + "  hang) sleep 30 & echo $! > \"$2\"; wait ;;\n"
+            + "esac\n";
+
+    private File dir;
+    private File ffmpeg;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("local-exec").toFile();
+        ffmpeg = new File(dir, "ffmpeg");
+        Files.write(ffmpeg.toPath(), SCRIPT.getBytes(StandardCharsets.UTF_8));
+        assertTrue(ffmpeg.setExecutable(true));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void success_forwardsLogLines() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        ExecutionResult result = new LocalProcessExecutor(ffmpeg.getPath())
+                .logListener(lines::add)
+                .execute(new String[]{"ok"});
+        assertTrue(result.toString(), result.isSuccess());
+        assertEquals(2, lines.size());
+        assertEquals("frame=2", lines.get(1));
+    }
+
+    @Test
+    public void statusLine_recordsProgress() {
+        JobMetrics metrics = new JobMetrics(null);
+        LocalProcessExecutor.parseStatus(
+                "frame=  300 fps=60 q=28.0 size=    1024kB time=00:01:02.50 bitrate=1342.2kbits/s speed=2.5x",
+                metrics);
+        assertEquals(62_500_000, metrics.getMediaTimeUs());
+        assertEquals(2.5, metrics.getSpeedFactor(), 1e-9);
+
+        LocalProcessExecutor.parseStatus("frame=0 time=N/A bitrate=N/A speed=N/A", metrics);
+        assertEquals(62_500_000, metrics.getMediaTimeUs());
+    }
+
+    @Test
+    public void largeOutput_isDrained() throws Exception {
+        ExecutionResult result = new LocalProcessExecutor(ffmpeg.getPath())
+                .timeout(20, TimeUnit.SECONDS)
+                .execute(new String[]{"loud"});
+        assertTrue(result.toString(), result.isSuccess());
+    }
+
+    @Test
+    public void failure_reportsLogTail() throws Exception {
+        ExecutionResult result = new LocalProcessExecutor(ffmpeg.getPath()).execute(new String[]{"fail"});
+        assertEquals(1, result.getReturnCode());
+        assertTrue(result.getMessage(), result.getMessage().endsWith("Invalid data found when processing input"));
+
+        ExecutionResult missing = new LocalProcessExecutor(new File(dir, "missing").getPath())
+                .execute(new String[]{"ok"});
+        assertEquals(-1, missing.getReturnCode());
+    }
+
+    @Test
+    public void timeout_killsProcessTree() throws Exception {
+        File pidFile = new File(dir, "child.pid");
+        ExecutionResult result = new LocalProcessExecutor(ffmpeg.getPath())
+                .timeout(500, TimeUnit.MILLISECONDS)
+                .execute(new String[]{"hang", pidFile.getPath()});
+        assertTrue(result.toString(), result.isTimedOut());
+        assertChildKilled(pidFile);
+    }
+
+    @Test
+    public void interrupt_cancelsProcess() throws Exception {
+        File pidFile = new File(dir, "child.pid");
+        LocalProcessExecutor executor = new LocalProcessExecutor(ffmpeg.getPath());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<ExecutionResult> future = pool.submit(() -> executor.execute(new String[]{"hang", pidFile.getPath()}));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pidFile.length() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            future.cancel(true);
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertChildKilled(pidFile);
+    }
+
+    @Test
+    public void signalExitCodes_mapToCancel() {
+        assertEquals(ExecutionResult.RETURN_CODE_CANCEL, LocalProcessExecutor.mapExitCode(130));
+        assertEquals(ExecutionResult.RETURN_CODE_CANCEL, LocalProcessExecutor.mapExitCode(143));
+        assertEquals(137, LocalProcessExecutor.mapExitCode(137));
+        assertEquals(1, LocalProcessExecutor.mapExitCode(1));
+    }
+
+    private static void assertChildKilled(File pidFile) throws Exception {
+        long pid = Long.parseLong(new String(Files.readAllBytes(pidFile.toPath()), StandardCharsets.US_ASCII).trim());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false));
+    }
+}
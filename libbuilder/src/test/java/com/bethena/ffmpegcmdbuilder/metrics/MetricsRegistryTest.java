@@ -0,0 +1,84 @@
+package com.bethena.ffmpegcmdbuilder.metrics;
+
+import com.bethena.ffmpegcmdbuilder.exec.ExecutionResult;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void histogram_percentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500, snapshot.getMean(), 1e-6);
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(500_000, snapshot.getP50(), 500_000 / 16.0);
+        assertEquals(990_000, snapshot.getP99(), 990_000 / 16.0);
+        assertTrue(snapshot.getP50() >= 500_000);
+    }
+
+    @Test
+    public void histogram_meanStaysWithinRangeWhileRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                histogram.record(1_000_000_000L);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            assertFalse(Double.isNaN(snapshot.getMean()));
+            assertTrue(snapshot.getMean() <= snapshot.getMax());
+        }
+        writer.join();
+        assertEquals(1_000_000_000L, histogram.snapshot().getMean(), 1e-6);
+    }
+
+    @Test
+    public void histogram_bucketBoundsAreContiguous() {
+        for (long v : new long[]{0, 15, 16, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(v + " > bucket max", v <= LatencyHistogram.highestInBucket(index));
+            if (index > 0) {
+                assertTrue(v + " <= previous bucket max", v > LatencyHistogram.highestInBucket(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void registry_groupsByProfileAndExportsJson() {
+        MetricsRegistry registry = new MetricsRegistry();
+        JobMetrics ok = new JobMetrics("MAX_THROUGHPUT");
+        ok.recordQueueWait(TimeUnit.MILLISECONDS.toNanos(5));
+        ok.recordEncode(TimeUnit.SECONDS.toNanos(10));
+        ok.recordProgress(20_000_000, 1.9);
+        ok.recordBytes(1000, 400);
+        ok.complete(ExecutionResult.success());
+        registry.onJobCompleted(ok);
+
+        JobMetrics cancelled = new JobMetrics(null);
+        cancelled.complete(new ExecutionResult(ExecutionResult.RETURN_CODE_CANCEL, "cancelled"));
+        registry.onJobCompleted(cancelled);
+
+        MetricsRegistry.ProfileMetrics stats = registry.get("MAX_THROUGHPUT");
+        assertEquals(1, stats.getSucceeded());
+        assertEquals(1000, stats.getBytesIn());
+        assertEquals(2000, stats.getSpeed().snapshot().getMax());
+        assertEquals(1, registry.get(JobMetrics.DEFAULT_PROFILE).getCancelled());
+
+        String json = registry.toJson();
+        assertTrue(json, json.startsWith("{\"MAX_THROUGHPUT\":{\"succeeded\":1,\"failed\":0,"));
+        assertTrue(json, json.contains("\"mediaSeconds\":20.000"));
+        assertTrue(json, json.contains("\"speed\":{\"count\":1,\"mean\":2.000,"));
+        assertTrue(json, json.contains("\"default\":{\"succeeded\":0,\"failed\":0,\"cancelled\":1"));
+    }
+}
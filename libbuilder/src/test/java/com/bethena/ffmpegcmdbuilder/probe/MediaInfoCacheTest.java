@@ -0,0 +1,121 @@
+package com.bethena.ffmpegcmdbuilder.probe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MediaInfoCacheTest {
+
+    private static final String JSON = "{\"streams\": [{\"index\": 0, \"codec_type\": \"video\", \"codec_name\": \"h264\","
+            + " \"width\": 1280, \"height\": 720, \"avg_frame_rate\": \"25/1\", \"pix_fmt\": \"yuv420p\","
+            + " \"side_data_list\": [{\"rotation\": 90}]},"
+            + " {\"index\": 1, \"codec_type\": \"audio\", \"codec_name\": \"aac\", \"sample_rate\": \"44100\","
+            + " \"profile\": \"LC\", \"sample_fmt\": \"fltp\", \"time_base\": \"1/44100\","
+            + " \"channels\": 2, \"bit_rate\": \"128000\"}],"
+            + " \"format\": {\"format_name\": \"mov,mp4\", \"duration\": \"61.5\", \"size\": \"1000\", \"bit_rate\": \"800000\"}}";
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private File dir;
+    private File index;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("media-cache").toFile();
+        index = new File(dir, "media.idx");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private MediaInfo load() {
+        loads.incrementAndGet();
+        return MediaProbe.parse(JSON);
+    }
+
+    @Test
+    public void hit_survivesReopen() throws IOException {
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            cache.get("/sdcard/a.mp4", 1000, 42, this::load);
+            cache.get("/sdcard/a.mp4", 1000, 42, this::load);
+        }
+        assertEquals(1, loads.get());
+
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            MediaInfo info = cache.get("/sdcard/a.mp4", 1000, 42, this::load);
+            assertEquals(1, loads.get());
+            assertEquals("mov,mp4", info.getFormatName());
+            assertEquals(61.5, info.getDuration(), 0);
+            StreamInfo video = info.getVideoStream();
+            assertEquals(720, video.getDisplayWidth());
+            assertEquals(25.0, video.getFrameRate(), 0);
+            assertEquals("yuv420p", video.getPixelFormat());
+            assertEquals(128000L, info.getAudioStream().getBitRate());
+            assertNull(info.getAudioStream().getPixelFormat());
+            assertEquals("LC", info.getAudioStream().getProfile());
+            assertEquals("fltp", info.getAudioStream().getSampleFormat());
+            assertEquals("1/44100", info.getAudioStream().getTimeBase());
+            assertEquals(-1, info.getAudioStream().getLevel());
+        }
+    }
+
+    @Test
+    public void modifiedFile_isReloaded() throws IOException {
+        try (MediaInfoCache cache = new MediaInfoCache(index, 1)) {
+            cache.get("/sdcard/a.mp4", 1000, 42, this::load);
+            assertNull(cache.getIfPresent("/sdcard/a.mp4", 1000, 43));
+            cache.get("/sdcard/a.mp4", 1000, 43, this::load);
+            cache.get("/sdcard/b.mp4", 10, 1, this::load);
+            assertEquals(3, loads.get());
+            assertEquals(2, cache.size());
+            // 内存只保留 1 条，a 需要从索引文件读回
+            assertNotNull(cache.getIfPresent("/sdcard/a.mp4", 1000, 43));
+        }
+    }
+
+    @Test
+    public void truncatedTail_isDropped() throws IOException {
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            cache.get("/sdcard/a.mp4", 1000, 42, this::load);
+            cache.get("/sdcard/b.mp4", 1000, 42, this::load);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            assertNotNull(cache.getIfPresent("/sdcard/a.mp4", 1000, 42));
+            assertNull(cache.getIfPresent("/sdcard/b.mp4", 1000, 42));
+            cache.get("/sdcard/b.mp4", 1000, 42, this::load);
+        }
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            assertEquals(2, cache.size());
+            assertNotNull(cache.getIfPresent("/sdcard/b.mp4", 1000, 42));
+        }
+    }
+
+    @Test
+    public void staleRecords_areCompactedOnOpen() throws IOException {
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            for (int i = 0; i < 100; i++) {
+                cache.put("/sdcard/a.mp4", 1000, i, MediaProbe.parse(JSON));
+            }
+        }
+        long before = index.length();
+        try (MediaInfoCache cache = new MediaInfoCache(index, 4)) {
+            assertTrue(index.length() < before / 10);
+            assertNotNull(cache.getIfPresent("/sdcard/a.mp4", 1000, 99));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.bethena.ffmpegcmdbuilder.probe;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class MediaProbeTest {
+
+    private static final String PHONE_VIDEO = "{\n"
+            + "  \"streams\": [\n"
+            + "    {\"index\": 0, \"codec_name\": \"h264\", \"codec_type\": \"video\", \"width\": 1920, \"height\": 1080,\n"
+            + "     \"pix_fmt\": \"yuv420p\", \"r_frame_rate\": \"30/1\", \"avg_frame_rate\": \"30000/1001\",\n"
+            + "     \"profile\": \"High\", \"level\": 40, \"time_base\": \"1/90000\",\n"
+            + "     \"bit_rate\": \"8000000\", \"disposition\": {\"default\": 1, \"attached_pic\": 0},\n"
+            + "     \"side_data_list\": [{\"side_data_type\": \"Display Matrix\", \"rotation\": -90}]},\n"
+            + "    {\"index\": 1, \"codec_name\": \"aac\", \"codec_type\": \"audio\", \"sample_rate\": \"48000\",\n"
+            + "     \"profile\": \"LC\", \"sample_fmt\": \"fltp\", \"time_base\": \"1/48000\",\n"
+            + "     \"channels\": 2, \"bit_rate\": \"128000\", \"tags\": {\"handler_name\": \"Sound \\\"Handler\\\" \\u00e9\"}},\n"
+            + "    {\"index\": 2, \"codec_name\": \"mjpeg\", \"codec_type\": \"video\", \"width\": 3000, \"height\": 3000,\n"
+            + "     \"disposition\": {\"attached_pic\": 1}}\n"
+            + "  ],\n"
+            + "  \"format\": {\"format_name\": \"mov,mp4,m4a,3gp,3g2,mj2\", \"duration\": \"12.345000\",\n"
+            + "             \"size\": \"12582912\", \"bit_rate\": \"8154000\", \"probe_score\": 100}\n"
+            + "}";
+
+    @Test
+    public void parse_readsFormatAndStreams() {
+        MediaInfo info = MediaProbe.parse(PHONE_VIDEO);
+        assertEquals("mov,mp4,m4a,3gp,3g2,mj2", info.getFormatName());
+        assertEquals(12.345, info.getDuration(), 1e-9);
+        assertEquals(12582912L, info.getSize());
+        assertEquals(8154000L, info.getBitRate());
+        assertEquals(3, info.getStreams().size());
+
+        StreamInfo video = info.getVideoStream();
+        assertEquals(0, video.getIndex());
+        assertEquals("h264", video.getCodecName());
+        assertEquals(270, video.getRotation());
+        assertEquals(1080, video.getDisplayWidth());
+        assertEquals(1920, video.getDisplayHeight());
+        assertEquals(29.97, video.getFrameRate(), 0.001);
+        assertEquals(8000000L, video.getBitRate());
+        assertEquals("High", video.getProfile());
+        assertEquals(40, video.getLevel());
+        assertEquals("1/90000", video.getTimeBase());
+        assertNull(video.getSampleFormat());
+
+        StreamInfo audio = info.getAudioStream();
+        assertEquals("aac", audio.getCodecName());
+        assertEquals(48000, audio.getSampleRate());
+        assertEquals(2, audio.getChannels());
+        assertEquals("LC", audio.getProfile());
+        assertEquals("fltp", audio.getSampleFormat());
+        assertEquals(-1, audio.getLevel());
+    }
+
+    @Test
+    public void parse_missingValuesAreUnknown() {
+        MediaInfo info = MediaProbe.parse("{\"streams\": [{\"index\": 0, \"codec_type\": \"video\","
+                + " \"codec_name\": \"vp9\", \"avg_frame_rate\": \"0/0\", \"tags\": {\"rotate\": \"90\"}}],"
+                + " \"format\": {\"bit_rate\": \"N/A\"}}");
+        StreamInfo video = info.getVideoStream();
+        assertEquals(-1, video.getBitRate());
+        assertTrue(Double.isNaN(video.getFrameRate()));
+        assertEquals(90, video.getRotation());
+        assertNull(video.getProfile());
+        assertEquals(-1, video.getLevel());
+        assertNull(video.getTimeBase());
+        assertNull(info.getAudioStream());
+        assertEquals(-1, info.getBitRate());
+        assertNull(info.getFormatName());
+    }
+
+    @Test
+    public void jsonReader_handlesEscapesAndNumbers() {
+        assertEquals("a\"b\\c/\u00e9\n", JsonReader.parse("\"a\\\"b\\\\c\\/\\u00e9\\n\""));
+        assertEquals(-12L, JsonReader.parse(" -12 "));
+        assertEquals(1.5e3, JsonReader.parse("1.5e3"));
+        assertNull(JsonReader.parse("null"));
+        assertEquals(Collections.singletonList(true), JsonReader.parse("[true]"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jsonReader_rejectsTruncatedInput() {
+        JsonReader.parse("{\"streams\": [");
+    }
+}
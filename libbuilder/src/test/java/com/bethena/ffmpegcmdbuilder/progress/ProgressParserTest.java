@@ -0,0 +1,83 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+import com.bethena.ffmpegcmdbuilder.FFmpegCommandBuilder;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ProgressParserTest {
+
+    private static final String BLOCK = "frame=120\nfps=29.97\nstream_0_0_q=28.0\nbitrate=1234.5kbits/s\n"
+            + "total_size=524336\nout_time_us=4004000\nout_time_ms=4004000\nout_time=00:00:04.004000\n"
+            + "dup_frames=0\ndrop_frames=0\nspeed=1.52x\nprogress=continue\n";
+
+    @Test
+    public void parsesBlockSplitAtArbitraryPositions() {
+        List<ProgressEvent> events = new ArrayList<>();
+        ProgressParser parser = new ProgressParser(event -> events.add(event.copy()));
+        byte[] bytes = (BLOCK + "out_time_us=N/A\nspeed=N/A\nprogress=end\n").getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i += 7) {
+            parser.feed(bytes, i, Math.min(7, bytes.length - i));
+        }
+        assertEquals(2, events.size());
+        ProgressEvent first = events.get(0);
+        assertEquals(120, first.getFrame());
+        assertEquals(29.97, first.getFps(), 1e-9);
+        assertEquals(1234.5, first.getBitrateKbps(), 1e-9);
+        assertEquals(524336, first.getTotalSize());
+        assertEquals(4004000, first.getOutTimeUs());
+        assertEquals(1.52, first.getSpeed(), 1e-9);
+        assertFalse(first.isEnd());
+        assertEquals(40, first.percent(10_000_000));
+
+        ProgressEvent last = events.get(1);
+        assertTrue(last.isEnd());
+        assertEquals(-1, last.getOutTimeUs());
+        assertTrue(Double.isNaN(last.getSpeed()));
+        assertEquals(100, last.percent(10_000_000));
+    }
+
+    @Test
+    public void feedLine_handlesCrlfAndLongValues() {
+        List<ProgressEvent> events = new ArrayList<>();
+        ProgressParser parser = new ProgressParser(event -> events.add(event.copy()));
+        parser.feedLine("out_time_us=123\r");
+        parser.feedLine("unknown=" + new String(new char[500]).replace('\0', 'x'));
+        parser.feedLine("progress=continue");
+        assertEquals(1, events.size());
+        assertEquals(123, events.get(0).getOutTimeUs());
+    }
+
+    @Test
+    public void dispatcher_coalescesToConfiguredRate() {
+        AtomicLong now = new AtomicLong();
+        List<Long> delivered = new ArrayList<>();
+        ProgressDispatcher dispatcher = new ProgressDispatcher(500, TimeUnit.MILLISECONDS, now::get)
+                .addListener(event -> delivered.add(event.getOutTimeUs()));
+        ProgressParser parser = new ProgressParser(dispatcher);
+        for (int i = 1; i <= 10; i++) {
+            now.set(TimeUnit.MILLISECONDS.toNanos(i * 100));
+            parser.feedLine("out_time_us=" + i);
+            parser.feedLine("progress=continue");
+        }
+        parser.feedLine("progress=end");
+        assertEquals("[1, 6, 10]", delivered.toString());
+    }
+
+    @Test
+    public void builder_progressAddsGlobalOptions() {
+        String command = FFmpegCommandBuilder.create()
+                .progress("pipe:1")
+                .input("in.mp4")
+                .output("out.mp4")
+                .build();
+        assertEquals("-y -progress pipe:1 -nostats -i in.mp4 out.mp4", command);
+    }
+}
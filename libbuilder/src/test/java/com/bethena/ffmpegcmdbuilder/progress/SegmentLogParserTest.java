@@ -0,0 +1,41 @@
+package com.bethena.ffmpegcmdbuilder.progress;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentLogParserTest {
+
+    @Test
+    public void hlsLog_reportsSegmentsBeforePlaylist() {
+        List<String> events = new ArrayList<>();
+        SegmentLogParser parser = new SegmentLogParser(new SegmentListener() {
+            @Override
+            public void onSegment(String path) {
+                events.add("segment " + path);
+            }
+
+            @Override
+            public void onPlaylist(String path) {
+                events.add("playlist " + path);
+            }
+        });
+        parser.feedLine("[hls @ 0x7f] Opening 'live/index_00000.ts.tmp' for writing");
+        parser.feedLine("frame=  120 fps= 60 q=28.0 size=N/A time=00:00:04.00 bitrate=N/A speed=2x");
+        assertTrue(events.isEmpty());
+        parser.feedLine("[hls @ 0x7f] Opening 'live/index.m3u8.tmp' for writing");
+        // 播放列表要等下一个文件打开后才算写完
+        assertEquals(Arrays.asList("segment live/index_00000.ts"), events);
+        parser.feedLine("[hls @ 0x7f] Opening 'live/index_00001.ts.tmp' for writing");
+        parser.finish();
+
+        assertEquals(Arrays.asList(
+                "segment live/index_00000.ts",
+                "playlist live/index.m3u8",
+                "segment live/index_00001.ts"), events);
+    }
+}